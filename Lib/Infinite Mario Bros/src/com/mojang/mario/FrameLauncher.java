@@ -1,13 +1,36 @@
 package com.mojang.mario;
 
 import java.awt.*;
+import java.io.*;
 import javax.swing.*;
 
 public class FrameLauncher
 {
-    public static void main(String[] args)
+    /**
+     * @param args optional file to record the play to, see {@link ObservationRecorder}
+     */
+    public static void main(String[] args) throws IOException
     {
         MarioComponent mario = new MarioComponent(640, 480, 2238077255106243788L);
+        if (args.length > 0)
+        {
+            final ObservationRecorder recorder = new ObservationRecorder(new BufferedOutputStream(new FileOutputStream(args[0])), mario.sensors);
+            mario.recorder = recorder;
+            Runtime.getRuntime().addShutdownHook(new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        recorder.close();
+                    }
+                    catch (IOException e)
+                    {
+                        System.err.println("recording failed: " + e.getMessage());
+                    }
+                }
+            });
+        }
         JFrame frame = new JFrame("Mario Test");
         frame.setContentPane(mario);
         frame.pack();
@@ -1,7 +1,6 @@
 package com.mojang.mario;
 
 import java.awt.*;
-import java.util.Random;
 import com.mojang.mario.level.*;
 
 
@@ -14,7 +13,6 @@ public class LevelRenderer
     private static final Color transparent = new Color(0, 0, 0, 0);
     private Level level;
 
-    private Random random = new Random();
     public boolean renderBehaviors = false;
 
     int width;
@@ -12,6 +12,7 @@ import java.util.*;
 import com.mojang.mario.sprites.*;
 import com.mojang.sonar.FixedSoundSource;
 import com.mojang.mario.level.*;
+import com.mojang.mario.sensors.*;
 
 
 public class LevelScene extends Scene implements SpriteContext
@@ -19,8 +20,11 @@ public class LevelScene extends Scene implements SpriteContext
     private List<Sprite> sprites = new ArrayList<Sprite>();
     private List<Sprite> spritesToAdd = new ArrayList<Sprite>();
     private List<Sprite> spritesToRemove = new ArrayList<Sprite>();
+    private SpriteGrid spriteGrid = new SpriteGrid();
+    private TileWindow tileWindow = new TileWindow();
 
     public Level level;
+    public TerrainProfile terrain;
     public Mario mario;
     public float xCam, yCam, xCamO, yCamO;
     public static Image tmpImage;
@@ -36,10 +40,12 @@ public class LevelScene extends Scene implements SpriteContext
     public int timeLeft;
 
     public int enemyKillCount; 
+    public String levelString = "none";
     //    private Recorder recorder = new Recorder();
     //    private Replayer replayer = null;
     
     private long levelSeed;
+    public Random random;
     private MarioComponent renderer;
     private int levelType;
     private int levelDifficulty;    
@@ -96,22 +102,40 @@ public class LevelScene extends Scene implements SpriteContext
     public double numEmptySpace; 
     public double yBlockSensor; 
     
-    private static double D1SensorX;
-    private static double D2SensorX;  
-    private static double D3SensorX;  
-    private static double D4SensorX;  
-    private static double D5SensorX;
+    private SensorSchema sensors = SensorSchema.DEFAULT_SCHEMA;
     
-    private static double D1SensorY;
-    private static double D2SensorY;  
-    private static double D3SensorY;  
-    private static double D4SensorY;  
-    private static double D5SensorY;
+    /**
+     * Sensor values of the last tick in network input order, rewritten in place at the end of
+     * every tick. Controllers read it directly; it exists with or without rendering. Its layout
+     * is given by the sensor schema, see {@link #setSensors(SensorSchema)}.
+     */
+    public double[] observation = new double[sensors.size()];
+    
+    private double D1SensorX;
+    private double D2SensorX;  
+    private double D3SensorX;  
+    private double D4SensorX;  
+    private double D5SensorX;
+    
+    private double D1SensorY;
+    private double D2SensorY;  
+    private double D3SensorY;  
+    private double D4SensorY;  
+    private double D5SensorY;
     
     public boolean isLose = false; 
     public boolean isWon = false;
     private int generation ;
     private int genomeNum; 
+    
+    /**
+     * Headless scenes have no renderer, no graphics configuration and no music. They tick
+     * physics, sprites and sensors only, so they can run on machines without a display.
+     */
+    private boolean headless;
+    
+    private boolean sensing = true;
+    
     public LevelScene(GraphicsConfiguration graphicsConfiguration, MarioComponent renderer, long seed, int levelDifficulty, int type, int generation, int genomeNum)
     {
         this.graphicsConfiguration = graphicsConfiguration;
@@ -124,8 +148,29 @@ public class LevelScene extends Scene implements SpriteContext
         this.enemyKillCount = 0; 
     }
 
-    public void init()
+    /**
+     * Creates a headless scene, see {@link #isHeadless()}.
+     */
+    public LevelScene(long seed, int levelDifficulty, int type, int generation, int genomeNum)
     {
+        this(null, null, seed, levelDifficulty, type, generation, genomeNum);
+        this.headless = true;
+    }
+
+    public boolean isHeadless()
+    {
+        return headless;
+    }
+
+    private static boolean behaviorsLoaded = false;
+
+    /**
+     * Tile behaviors are the same for every level, so they are read once and then only read
+     * by scenes, which may be running on several threads.
+     */
+    private static synchronized void loadBehaviors()
+    {
+        if (behaviorsLoaded) return;
         try
         {
             Level.loadBehaviors(new DataInputStream(LevelScene.class.getResourceAsStream("/tiles.dat")));
@@ -135,6 +180,12 @@ public class LevelScene extends Scene implements SpriteContext
             e.printStackTrace();
             System.exit(0);
         }
+        behaviorsLoaded = true;
+    }
+
+    public void init()
+    {
+        loadBehaviors();
         /*        if (replayer!=null)
          {
          level = LevelGenerator.createLevel(2048, 15, replayer.nextLong());
@@ -144,38 +195,48 @@ public class LevelScene extends Scene implements SpriteContext
 //        level = LevelGenerator.createLevel(320, 15, levelSeed);
         
         level = LevelGenerator.createLevel(320, 15, levelSeed, levelDifficulty, levelType);
+        terrain = new TerrainProfile(level);
+        // every other random choice of the episode comes from here, so a seed always replays the same
+        random = new Random(levelSeed * 31871 + 21871);
         isLose = false; 
         isWon = false;
         //        }
 
         /*        if (recorder != null)
          {
-         recorder.addLong(LevelGenerator.lastSeed);
+         recorder.addLong(levelSeed);
          }*/
 
-        if (levelType==LevelGenerator.TYPE_OVERGROUND)
-            Art.startMusic(1);
-        else if (levelType==LevelGenerator.TYPE_UNDERGROUND)
-            Art.startMusic(2);
-        else if (levelType==LevelGenerator.TYPE_CASTLE)
-            Art.startMusic(3);
+        if (!headless)
+        {
+            if (levelType==LevelGenerator.TYPE_OVERGROUND)
+                Art.startMusic(1);
+            else if (levelType==LevelGenerator.TYPE_UNDERGROUND)
+                Art.startMusic(2);
+            else if (levelType==LevelGenerator.TYPE_CASTLE)
+                Art.startMusic(3);
+        }
         
         paused = false;
-        Sprite.spriteContext = this;
         sprites.clear();
-        layer = new LevelRenderer(level, graphicsConfiguration, 320, 240);
-        for (int i = 0; i < 2; i++)
+        if (!headless)
         {
-            int scrollSpeed = 4 >> i;
-            int w = ((level.width * 16) - 320) / scrollSpeed + 320;
-            int h = ((level.height * 16) - 240) / scrollSpeed + 240;
-            Level bgLevel = BgLevelGenerator.createLevel(w / 32 + 1, h / 32 + 1, i == 0, levelType);
-            bgLayer[i] = new BgRenderer(bgLevel, graphicsConfiguration, 320, 240, scrollSpeed);
+            layer = new LevelRenderer(level, graphicsConfiguration, 320, 240);
+            for (int i = 0; i < 2; i++)
+            {
+                int scrollSpeed = 4 >> i;
+                int w = ((level.width * 16) - 320) / scrollSpeed + 320;
+                int h = ((level.height * 16) - 240) / scrollSpeed + 240;
+                Level bgLevel = BgLevelGenerator.createLevel(w / 32 + 1, h / 32 + 1, i == 0, levelType, levelSeed + i + 1);
+                bgLayer[i] = new BgRenderer(bgLevel, graphicsConfiguration, 320, 240, scrollSpeed);
+            }
         }
         mario = new Mario(this);
         ;
         
+        mario.spriteContext = this;
         sprites.add(mario);
+        spriteGrid.build(sprites, level.width * 16);
         startTime = 1;
         
         //KANN time change
@@ -278,8 +339,8 @@ public class LevelScene extends Scene implements SpriteContext
             boolean hasShotCannon = false;
             int xCannon = 0;
 
-            for (int x = (int) xCam / 16 - 1; x <= (int) (xCam + layer.width) / 16 + 1; x++)
-                for (int y = (int) yCam / 16 - 1; y <= (int) (yCam + layer.height) / 16 + 1; y++)
+            for (int x = (int) xCam / 16 - 1; x <= (int) (xCam + 320) / 16 + 1; x++)
+                for (int y = (int) yCam / 16 - 1; y <= (int) (yCam + 240) / 16 + 1; y++)
                 {
                     int dir = 0;
 
@@ -313,7 +374,7 @@ public class LevelScene extends Scene implements SpriteContext
                                     xCannon = x;
                                     for (int i = 0; i < 8; i++)
                                     {
-                                        addSprite(new Sparkle(x * 16 + 8, y * 16 + (int) (Math.random() * 16), (float) Math.random() * dir, 0, 0, 1, 5));
+                                        addSprite(new Sparkle(x * 16 + 8, y * 16 + (int) (random.nextDouble() * 16), (float) random.nextDouble() * dir, 0, 0, 1, 5, random));
                                     }
                                     addSprite(new BulletBill(this, x * 16 + 8 + dir * 8, y * 16 + 15, dir));
                                     hasShotCannon = true;
@@ -338,10 +399,17 @@ public class LevelScene extends Scene implements SpriteContext
                 sprite.collideCheck();
             }
 
+            if (!shellsToCheck.isEmpty() || !fireballsToCheck.isEmpty())
+            {
+                spriteGrid.update();
+            }
+
             for (Shell shell : shellsToCheck)
             {
-                for (Sprite sprite : sprites)
+                int found = spriteGrid.query(shell.x - 16, shell.x + 16);
+                for (int i = 0; i < found; i++)
                 {
+                    Sprite sprite = spriteGrid.get(i);
                     if (sprite != shell && !shell.dead)
                     {
                         if (sprite.shellCollideCheck(shell))
@@ -359,8 +427,10 @@ public class LevelScene extends Scene implements SpriteContext
 
             for (Fireball fireball : fireballsToCheck)
             {
-                for (Sprite sprite : sprites)
+                int found = spriteGrid.query(fireball.x - 16, fireball.x + 16);
+                for (int i = 0; i < found; i++)
                 {
+                    Sprite sprite = spriteGrid.get(i);
                     if (sprite != fireball && !fireball.dead)
                     {
                         if (sprite.fireballCollideCheck(fireball))
@@ -396,14 +466,203 @@ public class LevelScene extends Scene implements SpriteContext
 
         sprites.addAll(0, spritesToAdd);
         sprites.removeAll(spritesToRemove);
+        spriteGrid.addAll(spritesToAdd);
+        spriteGrid.removeAll(spritesToRemove);
         spritesToAdd.clear();
         spritesToRemove.clear();
+
+        if (mario.winTime > 0) isWon = true;
+        if (mario.deathTime > 0) isLose = true;
+
+        if (sensing) observe();
+    }
+
+    /**
+     * Runs the sensor passes the schema reads and copies the sensors into {@link #observation}.
+     * Sensors are refreshed once per tick so controllers always observe a complete tick.
+     */
+    private void observe()
+    {
+        int needs = sensors.needs();
+        if ((needs & (MarioSensor.NEEDS_SPRITE_RINGS | MarioSensor.NEEDS_SPRITE_INDEX | MarioSensor.NEEDS_TILE_WINDOW)) != 0)
+        {
+            spriteGrid.update();
+        }
+        if ((needs & MarioSensor.NEEDS_SPRITE_RINGS) != 0)
+        {
+            updateSpriteSensors();
+        }
+        if ((needs & MarioSensor.NEEDS_TILE_RINGS) != 0)
+        {
+            int xSensorCam = (int) mario.x - 160;
+            int ySensorCam = (int) mario.y - 120;
+            if (xSensorCam < 0) xSensorCam = 0;
+            if (ySensorCam < 0) ySensorCam = 0;
+            if (xSensorCam > level.width * 16 - 320) xSensorCam = level.width * 16 - 320;
+            if (ySensorCam > level.height * 16 - 240) ySensorCam = level.height * 16 - 240;
+            updateTileSensors(xSensorCam, ySensorCam);
+        }
+        if ((needs & MarioSensor.NEEDS_TILE_WINDOW) != 0)
+        {
+            GridSensor grid = sensors.getWindow();
+            int left = grid.left(mario.x);
+            int top = grid.top(mario.y);
+            tileWindow.fill(level, left, top, left + grid.getColumns() - 1, top + grid.getRows() - 1);
+            tileWindow.markSprites(spriteGrid);
+        }
+        sensors.sense(this, observation);
+    }
+
+    /**
+     * Selects the sensors that make up {@link #observation}. Call before {@link #init()}; the
+     * default is {@link SensorSchema#DEFAULT_SCHEMA}.
+     */
+    public void setSensors(SensorSchema sensors)
+    {
+        this.sensors = sensors;
+        if (observation.length != sensors.size()) observation = new double[sensors.size()];
+    }
+
+    /**
+     * @param sensing false to skip the sensors at the end of the following ticks, leaving
+     * {@link #observation} as it was; for ticks whose observation nobody reads
+     */
+    public void setSensing(boolean sensing)
+    {
+        this.sensing = sensing;
+    }
+
+    public SensorSchema getSensors()
+    {
+        return sensors;
+    }
+
+    /**
+     * @return the sprite index of the last tick, up to date when a sensor needs
+     * {@link MarioSensor#NEEDS_SPRITE_INDEX}
+     */
+    public SpriteGrid getSpriteGrid()
+    {
+        return spriteGrid;
+    }
+
+    /**
+     * @return the tiles around Mario in the last tick, filled when a sensor needs
+     * {@link MarioSensor#NEEDS_TILE_WINDOW}
+     */
+    public TileWindow getTileWindow()
+    {
+        return tileWindow;
     }
     
     private DecimalFormat df = new DecimalFormat("00");
     private DecimalFormat df2 = new DecimalFormat("000");
 
     public void render(Graphics g, float alpha)
+    {
+        int xCam = (int) (mario.xOld + (mario.x - mario.xOld) * alpha) - 160;
+        int yCam = (int) (mario.yOld + (mario.y - mario.yOld) * alpha) - 120;
+        //int xCam = (int) (xCamO + (this.xCam - xCamO) * alpha);
+        //        int yCam = (int) (yCamO + (this.yCam - yCamO) * alpha);
+        if (xCam < 0) xCam = 0;
+        if (yCam < 0) yCam = 0;
+        if (xCam > level.width * 16 - 320) xCam = level.width * 16 - 320;
+        if (yCam > level.height * 16 - 240) yCam = level.height * 16 - 240;
+
+        //      g.drawImage(Art.background, 0, 0, null);
+        
+        for (int i = 0; i < 2; i++)
+        {
+            bgLayer[i].setCam(xCam, yCam);
+            bgLayer[i].render(g, tick, alpha);
+        }
+
+        g.translate(-xCam, -yCam);
+        for (Sprite sprite : sprites)
+        {
+            if (sprite.layer == 0)
+            { 
+            	sprite.render(g, alpha);   
+            }
+        }
+
+        
+        
+        g.translate(xCam, yCam);
+
+        layer.setCam(xCam, yCam);
+        layer.render(g, tick, paused?0:alpha);
+
+        
+        
+        layer.renderExit0(g, tick, paused?0:alpha, mario.winTime==0);
+        
+        g.translate(-xCam, -yCam);
+        for (Sprite sprite : sprites)
+        {
+            if (sprite.layer == 1) sprite.render(g, alpha);
+        }
+        g.translate(xCam, yCam);
+        g.setColor(Color.BLACK);
+        layer.renderExit1(g, tick, paused?0:alpha);
+        
+        //drawStringDropShadow(g, "Generation " + df.format(this.generation), 0, 0, 7);
+        drawStringDropShadow(g, "Genome " + df.format(this.genomeNum), 0, 0, 7);
+//        drawStringDropShadow(g, "00000000", 0, 1, 7);
+        
+        drawStringDropShadow(g, "COIN", 14, 0, 7);
+        drawStringDropShadow(g, " "+df.format(mario.coins), 14, 1, 7);
+
+        drawStringDropShadow(g, "WORLD", 24, 0, 7);
+        drawStringDropShadow(g, " "+levelString, 24, 1, 7);
+
+        drawStringDropShadow(g, "TIME", 35, 0, 7);
+        int time = (timeLeft+15-1)/15;
+        if (time<0) time = 0;
+        drawStringDropShadow(g, " "+df2.format(time), 35, 1, 7);
+
+
+        if (startTime > 0)
+        {
+            float t = startTime + alpha - 2;
+            t = t * t * 0.6f;
+            //renderBlackout(g, 160, 120, (int) (t));
+        }
+//        mario.x>level.xExit*16
+        if (mario.winTime > 0)
+        {
+        	this.isWon = true; 
+            float t = mario.winTime + alpha;
+            t = t * t * 0.2f;
+
+            if (t > 900)
+            {
+                renderer.levelWon();
+                //              replayer = new Replayer(recorder.getBytes());
+//                init();
+            }
+
+            //renderBlackout(g, (int) (mario.xDeathPos - xCam), (int) (mario.yDeathPos - yCam), (int) (320 - t));
+        }
+
+        if (mario.deathTime > 0)
+        {
+        	this.isLose = true; 
+            float t = mario.deathTime + alpha;
+            t = t * t * 0.4f;
+
+            if (t > 1800)
+            {
+                renderer.levelFailed();
+                //              replayer = new Replayer(recorder.getBytes());
+//                init();
+            }
+
+            //renderBlackout(g, (int) (mario.xDeathPos - xCam), (int) (mario.yDeathPos - yCam), (int) (320 - t));
+        }
+    }
+
+    private void updateSpriteSensors()
     {
     	D1SensorX =  mario.wPic;
         D2SensorX =  D1SensorX*2; 
@@ -417,76 +676,19 @@ public class LevelScene extends Scene implements SpriteContext
         D4SensorY =  D1SensorY*4; 
         D5SensorY =  D1SensorY*5;
         		
-    	//clear out all stimuli 
+    	//clear out the enemy stimuli 
     	enemyD1LeftRight = 0; 
     	enemyD2LeftRight = 0; 
         enemyD3LeftRight = 0; 
         enemyD4LeftRight = 0; 
         enemyD5LeftRight = 0; 
         
-        goodItemD1LeftRight = 0;
-        goodItemD2LeftRight = 0;
-        goodItemD3LeftRight = 0;
-        goodItemD4LeftRight = 0;
-        goodItemD5LeftRight = 0;
-        
-        holeD1LeftRight = 0; 
-        holeD2LeftRight = 0; 
-        holeD3LeftRight = 0; 
-        holeD4LeftRight = 0; 
-        holeD5LeftRight = 0; 
-       
-        obstacleD1LeftRight = 0; 
-        obstacleD2LeftRight = 0; 
-        obstacleD3LeftRight = 0; 
-        obstacleD4LeftRight = 0; 
-        obstacleD5LeftRight = 0; 
-        
         enemyD1UpDown = 0; 
     	enemyD2UpDown = 0; 
         enemyD3UpDown = 0; 
         enemyD4UpDown = 0; 
         enemyD5UpDown = 0; 
         
-        goodItemD1UpDown = 0;
-        goodItemD2UpDown = 0;
-        goodItemD3UpDown = 0;
-        goodItemD4UpDown = 0;
-        goodItemD5UpDown = 0;
-        
-        holeD1UpDown = 0; 
-        holeD2UpDown = 0; 
-        holeD3UpDown = 0; 
-        holeD4UpDown = 0; 
-        holeD5UpDown = 0; 
-       
-        obstacleD1UpDown = 0; 
-        obstacleD2UpDown = 0; 
-        obstacleD3UpDown = 0; 
-        obstacleD4UpDown = 0; 
-        obstacleD5UpDown = 0; 
-        
-        numEmptySpace = 0; 
-        yBlockSensor = 0; 
-    	
-        int xCam = (int) (mario.xOld + (mario.x - mario.xOld) * alpha) - 160;
-        int yCam = (int) (mario.yOld + (mario.y - mario.yOld) * alpha) - 120;
-        //int xCam = (int) (xCamO + (this.xCam - xCamO) * alpha);
-        //        int yCam = (int) (yCamO + (this.yCam - yCamO) * alpha);
-        if (xCam < 0) xCam = 0;
-        if (yCam < 0) yCam = 0;
-        if (xCam > level.width * 16 - 320) xCam = level.width * 16 - 320;
-        if (yCam > level.height * 16 - 240) yCam = level.height * 16 - 240;
-
-        //      g.drawImage(Art.background, 0, 0, null);
-        
-        for (int i = 0; i < 2; i++)
-        {
-            bgLayer[i].setCam(xCam, yCam);
-            bgLayer[i].render(g, tick, alpha);
-        }
-
-        g.translate(-xCam, -yCam);
         boolean inD1X;
         boolean inD2X; 
         boolean inD3X; 
@@ -499,13 +701,11 @@ public class LevelScene extends Scene implements SpriteContext
         boolean inD4Y; 
         boolean inD5Y; 
         
-        
-        for (Sprite sprite : sprites)
+
+        int found = spriteGrid.query((float) (mario.x - D5SensorX), (float) (mario.x + D5SensorX));
+        for (int i = 0; i < found; i++)
         {
-            if (sprite.layer == 0)
-            { 
-            	sprite.render(g, alpha);   
-            }
+            Sprite sprite = spriteGrid.get(i);
             inD1X = sprite.x >= mario.x - D1SensorX && sprite.x <= mario.x + D1SensorX; 
             inD2X = sprite.x >= mario.x - D2SensorX && sprite.x <= mario.x + D2SensorX;
             inD3X = sprite.x >= mario.x - D3SensorX && sprite.x <= mario.x + D3SensorX;
@@ -826,14 +1026,49 @@ public class LevelScene extends Scene implements SpriteContext
             
             }
         }
+    }
 
-        
-        
-        g.translate(xCam, yCam);
+    private void updateTileSensors(int xCam, int yCam)
+    {
+        goodItemD1LeftRight = 0;
+        goodItemD2LeftRight = 0;
+        goodItemD3LeftRight = 0;
+        goodItemD4LeftRight = 0;
+        goodItemD5LeftRight = 0;
+
+        holeD1LeftRight = 0;
+        holeD2LeftRight = 0;
+        holeD3LeftRight = 0;
+        holeD4LeftRight = 0;
+        holeD5LeftRight = 0;
+
+        obstacleD1LeftRight = 0;
+        obstacleD2LeftRight = 0;
+        obstacleD3LeftRight = 0;
+        obstacleD4LeftRight = 0;
+        obstacleD5LeftRight = 0;
+
+        goodItemD1UpDown = 0;
+        goodItemD2UpDown = 0;
+        goodItemD3UpDown = 0;
+        goodItemD4UpDown = 0;
+        goodItemD5UpDown = 0;
+
+        holeD1UpDown = 0;
+        holeD2UpDown = 0;
+        holeD3UpDown = 0;
+        holeD4UpDown = 0;
+        holeD5UpDown = 0;
+
+        obstacleD1UpDown = 0;
+        obstacleD2UpDown = 0;
+        obstacleD3UpDown = 0;
+        obstacleD4UpDown = 0;
+        obstacleD5UpDown = 0;
+
+        numEmptySpace = 0;
+        yBlockSensor = 0;
 
-        layer.setCam(xCam, yCam);
-        layer.render(g, tick, paused?0:alpha);
-        
         D1SensorX =  mario.wPic;
         D2SensorX =  D1SensorX*2; 
         D3SensorX =  D1SensorX*3; 
@@ -845,611 +1080,136 @@ public class LevelScene extends Scene implements SpriteContext
         D3SensorY =  D1SensorY*3; 
         D4SensorY =  D1SensorY*4; 
         D5SensorY =  D1SensorY*5;
-        		
-        boolean colYBoxExist;
-        boolean foundPathEmpty;
-        boolean getFirstPlatform; 
-        boolean blockInGround; 
-        int colCountTilFull = 0; 
-        
-        boolean firstXTrigger = false; 
-        inD1X = false; 
-        inD2X = false; 
-        inD3X = false; 
-        inD4X = false; 
-        inD5X = false; 
-        
-        inD1Y = false; 
-        inD2Y = false; 
-        inD3Y = false; 
-        inD4Y = false; 
-        inD5Y = false; 
-        boolean inD0Y = false; 
-        boolean blocking = true; 
-        
-        //Renders lines between mario and items of note
-        for (int x = xCam / 16; x <= (xCam + layer.width) / 16; x++)
+
+        int marioX = (int) (mario.x - xCam);
+        int marioY = (int) (mario.y - yCam);
+        int scanned = terrain.rows(yCam / 16, (yCam + 240) / 16);
+
+        // rows close enough to Mario to block his path, and the rows at the bottom of the
+        // screen where a column without solid ground counts as a hole
+        int pathRows = 0;
+        int holeRows = 0;
+        for (int y = yCam / 16; y <= (yCam + 240) / 16; y++)
         {
-        	colYBoxExist = false; 
-        	foundPathEmpty= true; 
-        	getFirstPlatform = true; 
-        	blockInGround = false; 
-            for (int y = yCam / 16; y <= (yCam + layer.height) / 16; y++)
+            int blockY = (y << 4) - yCam;
+            if (blockY >= marioY - D2SensorY && blockY <= marioY + D2SensorY) pathRows |= terrain.rows(y, y);
+            if (y > (yCam + 240 / 1.1) / 16 && y < (yCam + 240) / 16) holeRows |= terrain.rows(y, y);
+        }
+
+        boolean firstXTrigger = false;
+        for (int x = xCam / 16; x <= (xCam + 320) / 16; x++)
+        {
+            int blockX = (x << 4) - xCam;
+            int xRing = ring(blockX, marioX, D1SensorX);
+            double behindOrFront = marioX - blockX > 0 ? 0.0 : 1.0;
+
+            for (int items = terrain.getItems(x) & scanned; items != 0; items &= items - 1)
             {
-                byte b = level.getBlock(x, y);                
-                
-                if (((Level.TILE_BEHAVIORS[b & 0xff]) & Level.BIT_ANIMATED) > 0)
+                int blockY = (Integer.numberOfTrailingZeros(items) << 4) - yCam;
+                switch (xRing)
                 {
-                    int animTime = (tick / 3) % 4;
-
-                    if ((b % 16) / 4 == 0 && b / 16 == 1)
-                    {
-                        animTime = (tick / 2 + (x + y) / 8) % 20;
-                        if (animTime > 3) animTime = 0;
-                    }
-                    if ((b % 16) / 4 == 3 && b / 16 == 0)
-                    {
-                        animTime = 2;
-                    }
-                    int yo = 0;
-                    if (x >= 0 && y >= 0 && x < level.width && y < level.height) yo = level.data[x][y];
-                    if (yo > 0) yo = (int) (Math.sin((yo - alpha) / 4.0f * Math.PI) * 8);
+                case 1: goodItemD1LeftRight = 1; break;
+                case 2: goodItemD2LeftRight = 1; break;
+                case 3: goodItemD3LeftRight = 1; break;
+                case 4: goodItemD4LeftRight = 1; break;
+                case 5: goodItemD5LeftRight = 1; break;
                 }
-                int blockX = (x << 4) - xCam; 
-                int blockY = (y << 4) - yCam; 
-                int marioX = (int) (mario.x - xCam) ;
-                int marioY = (int) (mario.y - yCam) ;
-
-                
-                inD1X = blockX >= marioX - D1SensorX && blockX <= marioX + D1SensorX; 
-                inD2X = blockX >= marioX - D2SensorX && blockX <= marioX + D2SensorX;
-                inD3X = blockX >= marioX - D3SensorX && blockX <= marioX + D3SensorX;
-                inD4X = blockX >= marioX - D4SensorX && blockX <= marioX + D4SensorX;
-                inD5X = blockX >= marioX - D5SensorX && blockX <= marioX + D5SensorX;
-                
-                inD0Y =  blockY >= marioY - D1SensorY/2 && blockY <= marioY +  D1SensorY/2 ;
-                inD1Y = blockY >= marioY - D1SensorY && blockY <= marioY + D1SensorY; 
-                inD2Y = blockY >= marioY - D2SensorY && blockY <= marioY + D2SensorY;
-                inD3Y = blockY >= marioY - D3SensorY && blockY <= marioY + D3SensorY;
-                inD4Y = blockY >= marioY - D4SensorY && blockY <= marioY + D4SensorY;
-                inD5Y = blockY >= marioY - D5SensorY && blockY <= marioY + D5SensorY;
-                
-                double behindOrFront = marioX - blockX>0?0.0:1.0;
-                double belowOrAbove = marioY - blockY>0?1.0:-1.0; 
-                
-                
-                
-                //Stimuli -1 to 1? 
-                //Scene translated
-                
-                    if (((Level.TILE_BEHAVIORS[b & 0xff]) & Level.BIT_SPECIAL) > 0)
-                    {
-                    	////g.setColor(new Color(139,69,19));
-                        if(inD1X)
-                    	{
-                    		////g.setColor(Color.GREEN);
-                    		goodItemD1LeftRight=1;
-                    	}
-                    	else if(inD2X)
-                    	{
-                    		////g.setColor(Color.CYAN);
-                    		goodItemD2LeftRight=1;
-                    	}
-                    	else if(inD3X)
-                    	{
-                    		////g.setColor(Color.BLUE);
-                    		goodItemD3LeftRight=1;
-                    	}
-                    	else if(inD4X)
-                    	{
-                    		////g.setColor(Color.MAGENTA);
-                    		goodItemD4LeftRight=1;
-                    	}
-                    	else if(inD5X)
-                    	{
-                    		////g.setColor(Color.PINK);
-                    		goodItemD5LeftRight=1;
-                    	}
-                        
-                        if(inD1Y)
-                    	{
-                    		////g.setColor(Color.GREEN);
-                    		goodItemD1UpDown=1;
-                    	}
-                    	else if(inD2Y)
-                    	{
-                    		////g.setColor(Color.CYAN);
-                    		goodItemD2UpDown=1;
-                    	}
-                    	else if(inD3Y)
-                    	{
-                    		////g.setColor(Color.BLUE);
-                    		goodItemD3UpDown=1;
-                    	}
-                    	else if(inD4Y)
-                    	{
-                    		////g.setColor(Color.MAGENTA);
-                    		goodItemD4UpDown=1;
-                    	}
-                    	else if(inD5Y)
-                    	{
-                    		////g.setColor(Color.PINK);
-                    		goodItemD5UpDown=1;
-                    	}
- 
-//                        g.fillRect((x << 4) - xCam, (y << 4) - yCam, 16, 2);
-//                        g.fillRect((x << 4) - xCam, (y << 4) - yCam + 14, 16, 2);
-//                        g.fillRect((x << 4) - xCam, (y << 4) - yCam, 2, 16);
-//                        g.fillRect((x << 4) - xCam + 14, (y << 4) - yCam, 2, 16);  
-                        //g.fillRect((x << 4) - xCam + 2 + 4, (y << 4) - yCam + 2 + 4, 4, 4);
-                        //g.drawLine((int)marioX -xCam, (int)mario.y - yCam, (x << 4) - xCam + 2 + 4, (y << 4) - yCam + 2 + 4);
-                    }
-                    else if (((Level.TILE_BEHAVIORS[b & 0xff]) & Level.BIT_BUMPABLE) > 0)
-                    {
-                    	////g.setColor(new Color(139,69,19));
-                    	if(inD1X)
-                    	{
-                    		////g.setColor(Color.GREEN);
-                    		goodItemD1LeftRight=1;
-                    	}
-                    	else if(inD2X)
-                    	{
-                    		////g.setColor(Color.CYAN);
-                    		goodItemD2LeftRight=1;
-                    	}
-                    	else if(inD3X)
-                    	{
-                    		////g.setColor(Color.BLUE);
-                    		goodItemD3LeftRight=1;
-                    	}
-                    	else if(inD4X)
-                    	{
-                    		////g.setColor(Color.MAGENTA);
-                    		goodItemD4LeftRight=1;
-                    	}
-                    	else if(inD5X)
-                    	{
-                    		////g.setColor(Color.PINK);
-                    		goodItemD5LeftRight=1;
-                    	}
-                    	
-                    	if(inD1Y)
-                    	{
-                    		////g.setColor(Color.GREEN);
-                    		goodItemD1UpDown=1;
-                    	}
-                    	else if(inD2Y)
-                    	{
-                    		////g.setColor(Color.CYAN);
-                    		goodItemD2UpDown=1;
-                    	}
-                    	else if(inD3Y)
-                    	{
-                    		////g.setColor(Color.BLUE);
-                    		goodItemD3UpDown=1;
-                    	}
-                    	else if(inD4Y)
-                    	{
-                    		////g.setColor(Color.MAGENTA);
-                    		goodItemD4UpDown=1;
-                    	}
-                    	else if(inD5Y)
-                    	{
-                    		////g.setColor(Color.PINK);
-                    		goodItemD5UpDown=1;
-                    	}
-                    	
-                        ////g.setColor(Color.BLUE);
-                        //g.fillRect((x << 4) - xCam + 2, (y << 4) - yCam + 2, 4, 4);
-                        //g.drawLine((int)marioX -xCam, (int)mario.y - yCam, (x << 4) - xCam + 2, (y << 4) - yCam + 2);
-//                    	g.fillRect((x << 4) - xCam, (y << 4) - yCam, 16, 2);
-//                        g.fillRect((x << 4) - xCam, (y << 4) - yCam + 14, 16, 2);
-//                        g.fillRect((x << 4) - xCam, (y << 4) - yCam, 2, 16);
-//                        g.fillRect((x << 4) - xCam + 14, (y << 4) - yCam, 2, 16);  
-                    }
-                    else if (((Level.TILE_BEHAVIORS[b & 0xff]) & Level.BIT_BREAKABLE) > 0)
+                switch (ring(blockY, marioY, D1SensorY))
+                {
+                case 1: goodItemD1UpDown = 1; break;
+                case 2: goodItemD2UpDown = 1; break;
+                case 3: goodItemD3UpDown = 1; break;
+                case 4: goodItemD4UpDown = 1; break;
+                case 5: goodItemD5UpDown = 1; break;
+                }
+            }
+
+            int solid = terrain.getSolid(x) & scanned;
+            if (xRing == 1 || (xRing == 2 && !firstXTrigger))
+            {
+                for (int obstacles = solid; obstacles != 0; obstacles &= obstacles - 1)
+                {
+                    int blockY = (Integer.numberOfTrailingZeros(obstacles) << 4) - yCam;
+                    if (blockY > marioY || blockY < level.height) continue;
+
+                    if (xRing == 1)
                     {
-                        ////g.setColor(Color.GREEN);
-                        //g.fillRect((x << 4) - xCam + 2 + 4, (y << 4) - yCam + 2, 4, 4);
+                        firstXTrigger = true;
+                        obstacleD1LeftRight = 1 * behindOrFront;
                     }
-                    else if (((Level.TILE_BEHAVIORS[b & 0xff]) & Level.BIT_PICKUPABLE) > 0)
+                    else
                     {
-                    	////g.setColor(new Color(139,69,19));
-                    	if(inD1X)
-                    	{
-                    		////g.setColor(Color.GREEN);
-                    		goodItemD1LeftRight=1;
-                    	}
-                    	else if(inD2X)
-                    	{
-                    		////g.setColor(Color.CYAN);
-                    		goodItemD2LeftRight=1;
-                    	}
-                    	else if(inD3X)
-                    	{
-                    		////g.setColor(Color.BLUE);
-                    		goodItemD3LeftRight=1;
-                    	}
-                    	else if(inD4X)
-                    	{
-                    		////g.setColor(Color.MAGENTA);
-                    		goodItemD4LeftRight=1;
-                    	}
-                    	else if(inD5X)
-                    	{
-                    		////g.setColor(Color.PINK);
-                    		goodItemD5LeftRight=1;
-                    	}
-                    	
-                    	if(inD1Y)
-                    	{
-                    		////g.setColor(Color.GREEN);
-                    		goodItemD1UpDown=1;
-                    	}
-                    	else if(inD2Y)
-                    	{
-                    		////g.setColor(Color.CYAN);
-                    		goodItemD2UpDown=1;
-                    	}
-                    	else if(inD3Y)
-                    	{
-                    		////g.setColor(Color.BLUE);
-                    		goodItemD3UpDown=1;
-                    	}
-                    	else if(inD4Y)
-                    	{
-                    		////g.setColor(Color.MAGENTA);
-                    		goodItemD4UpDown=1;
-                    	}
-                    	else if(inD5Y)
-                    	{
-                    		////g.setColor(Color.PINK);
-                    		goodItemD5UpDown=1;
-                    	}
-
-                        ////g.setColor(Color.YELLOW);
-                    	//g.drawLine((int)marioX -xCam, (int)mario.y - yCam, ((x << 4) - xCam + 2), ((y << 4) - yCam + 2 + 4));
-//                    	g.fillRect((x << 4) - xCam, (y << 4) - yCam, 16, 2);
-//                        g.fillRect((x << 4) - xCam, (y << 4) - yCam + 14, 16, 2);
-//                        g.fillRect((x << 4) - xCam, (y << 4) - yCam, 2, 16);
-//                        g.fillRect((x << 4) - xCam + 14, (y << 4) - yCam, 2, 16);  
+                        obstacleD2LeftRight = 1 * behindOrFront;
                     }
-                    else if (((Level.TILE_BEHAVIORS[b & 0xff]) & Level.BIT_ANIMATED) > 0)
+                    double belowOrAbove = marioY - blockY > 0 ? 1.0 : -1.0;
+                    switch (ring(blockY, marioY, D1SensorY))
                     {
-                    }                    
-                    else if (((Level.TILE_BEHAVIORS[b & 0xff]) & Level.BIT_BLOCK_ALL) > 0)
-                	{
-                    
-                        
-                    	
-                    	if(blockY  <= marioY && blockY  >= level.height)
-                    	{
-                    		////g.setColor(new Color(139,69,19));
-	                    	if(inD1X)
-	                    	{
-	                    		firstXTrigger = true; 
-	                    		////g.setColor(Color.BLACK);
-	                    		obstacleD1LeftRight=1*behindOrFront;
-	                    		
-	                    		if(inD1Y)
-		                    	{
-		                    		//g.setColor(Color.BLACK);
-		                    		obstacleD1UpDown=1*belowOrAbove;
-		                    	}
-		                    	else if(inD2Y)
-		                    	{
-		                    		//g.setColor(Color.DARK_GRAY);
-		                    		obstacleD2UpDown=1*belowOrAbove;
-		                    	}
-		                    	else if(inD3Y)
-		                    	{
-		                    		//g.setColor(Color.GRAY);
-		                    		obstacleD3UpDown=1*belowOrAbove;
-		                    	}
-		                    	else if(inD4Y)
-		                    	{
-		                    		//g.setColor(Color.LIGHT_GRAY);
-		                    		obstacleD4UpDown=1*belowOrAbove;
-		                    	}
-//		                    	else if(inD5Y)
-//		                    	{
-//		                    		////g.setColor(Color.WHITE);
-//		                    		obstacleD5UpDown=1*belowOrAbove;
-//		                    	}
-	                    	}
-	                    	else if(!firstXTrigger && inD2X)
-	                    	{
-	                    		//g.setColor(Color.DARK_GRAY);
-	                    		obstacleD2LeftRight=1*behindOrFront;
-	                    		
-	                    		
-	                    		if(inD1Y)
-		                    	{
-		                    		////g.setColor(Color.BLACK);
-	                    			//g.setColor(Color.DARK_GRAY);
-		                    		obstacleD1UpDown=1*belowOrAbove;
-		                    	}
-		                    	else if(inD2Y)
-		                    	{
-		                    		//g.setColor(Color.GRAY);
-		                    		////g.setColor(Color.DARK_GRAY);
-		                    		obstacleD2UpDown=1*belowOrAbove;
-		                    	}
-		                    	else if(inD3Y)
-		                    	{
-		                    		////g.setColor(Color.GRAY);
-		                    		//g.setColor(Color.LIGHT_GRAY);
-		                    		obstacleD3UpDown=1*belowOrAbove;
-		                    	}
-		                    	else if(inD4Y)
-		                    	{
-		                    		////g.setColor(Color.LIGHT_GRAY);
-		                    		//g.setColor(Color.WHITE);
-		                    		obstacleD4UpDown=1*belowOrAbove;
-		                    	}
-//		                    	else if(inD5Y)
-//		                    	{
-//		                    		////g.setColor(Color.WHITE);
-//		                    		obstacleD5UpDown=1*belowOrAbove;
-//		                    	}
-	                    	}
-//	                    	else if(inD3X)
-//	                    	{
-//	                    		////g.setColor(Color.GRAY);
-//	                    		obstacleD3LeftRight=1*behindOrFront;
-//	                    	}
-//	                    	else if(inD4X)
-//	                    	{
-//	                    		////g.setColor(Color.LIGHT_GRAY);
-//	                    		obstacleD4LeftRight=1*behindOrFront;
-//	                    	}
-//	                    	else if(inD5X)
-//	                    	{
-//	                    		////g.setColor(Color.WHITE);
-//	                    		obstacleD5LeftRight=1*behindOrFront;
-//	                    	}
-
-	                    	
-	                    	
-	                    	
-//	                    	g.fillRect((x << 4) - xCam, (y << 4) - yCam, 16, 2);
-//	                        g.fillRect((x << 4) - xCam, (y << 4) - yCam + 14, 16, 2);
-//	                        g.fillRect((x << 4) - xCam, (y << 4) - yCam, 2, 16);
-//	                        g.fillRect((x << 4) - xCam + 14, (y << 4) - yCam, 2, 16);  
-                    	}
-                        colYBoxExist = true; 
-                	}
-                    blocking= ((Level.TILE_BEHAVIORS[b & 0xff]) & Level.BIT_BLOCK_ALL) > 0;
-                    blocking |= ((Level.TILE_BEHAVIORS[b & 0xff]) & Level.BIT_BLOCK_UPPER) > 0;
-                    blocking |= ((Level.TILE_BEHAVIORS[b & 0xff]) & Level.BIT_BLOCK_LOWER) > 0;
-                    
-//                    inD1X = blockX >= marioX - D1SensorX && blockX <= marioX + D1SensorX; 
-//                    inD2X = blockX >= marioX - D2SensorX && blockX <= marioX + D2SensorX;
-//                    inD3X = blockX >= marioX - D3SensorX && blockX <= marioX + D3SensorX;
-//                    inD4X = blockX >= marioX - D4SensorX && blockX <= marioX + D4SensorX;
-//                    inD5X = blockX >= marioX - D5SensorX && blockX <= marioX + D5SensorX;
-                    
-                   
-                    inD1Y = blockY >= marioY - D1SensorY && blockY <= marioY + D1SensorY; 
-                    inD2Y = blockY >= marioY - D2SensorY && blockY <= marioY + D2SensorY;
-                    inD3Y = blockY >= marioY - D3SensorY && blockY <= marioY + D3SensorY;
-                    inD4Y = blockY >= marioY - D4SensorY && blockY <= marioY + D4SensorY;
-                    inD5Y = blockY >= marioY - D5SensorY && blockY <= marioY + D5SensorY;
-                    
-                    if(inD5X && blocking && (blockX >=marioX))
-                    {
-                    	
-                    	
-    	                if (inD0Y )
-    	                {
-//    	                	System.out.println("block y " + blockY + " mario y " + marioY); 
-    	                	//g.setColor(Color.YELLOW);
-    	                    //g.fillRect((x << 4) - xCam + 2 + 4, (y << 4) - yCam + 2, 4, 4);
-        	                foundPathEmpty = false; 
-        	                colCountTilFull++; 
-        	                if(numEmptySpace>0 && getFirstPlatform)
-    	                    {
-    	                    	yBlockSensor = belowOrAbove; 
-    	                    	getFirstPlatform = false; 
-    	                    }
-    	                }
-    	                
-    	                else if (inD2Y&& belowOrAbove<0)
-    	                {
-//    	                	System.out.println("block y " + blockY + " mario y " + marioY); 
-    	                	//g.setColor(Color.GREEN);
-    	                    //g.fillRect((x << 4) - xCam + 2 + 4, (y << 4) - yCam + 2, 4, 4);
-    	                    foundPathEmpty = false; 
-    	                    colCountTilFull++; 
-    	                    if(numEmptySpace>0 && getFirstPlatform)
-    	                    {
-    	                    	yBlockSensor = belowOrAbove; 
-    	                    	getFirstPlatform = false; 
-    	                    }
-    	                }
-    	                else if (inD2Y&& belowOrAbove>0)
-    	                {
-//    	                	System.out.println("block y " + blockY + " mario y " + marioY); 
-    	                	//g.setColor(Color.RED);
-    	                    //g.fillRect((x << 4) - xCam + 2 + 4, (y << 4) - yCam + 2, 4, 4);
-    	                    foundPathEmpty = false; 
-    	                    colCountTilFull++; 
-    	                    
-    	                    if(numEmptySpace>0 && getFirstPlatform)
-    	                    {
-    	                    	yBlockSensor = belowOrAbove; 
-    	                    	getFirstPlatform = false; 
-    	                    }
-    	                }
-    	                	 
-
-    	                
-
-                    }
-                    
-                    
-                    
-                    
-                	inD1X = blockX >= marioX - D1SensorX && blockX <= marioX + D1SensorX; 
-                    inD2X = blockX >= marioX - D2SensorX && blockX <= marioX + D2SensorX;
-                    inD3X = blockX >= marioX - D3SensorX && blockX <= marioX + D3SensorX;
-                    inD4X = blockX >= marioX - D4SensorX && blockX <= marioX + D4SensorX;
-                    inD5X = blockX >= marioX - D5SensorX && blockX <= marioX + D5SensorX;
-                    
-                    inD1Y = blockY >= marioY - D1SensorY && blockY <= marioY + D1SensorY; 
-                    inD2Y = blockY >= marioY - D2SensorY && blockY <= marioY + D2SensorY;
-                    inD3Y = blockY >= marioY - D3SensorY && blockY <= marioY + D3SensorY;
-                    inD4Y = blockY >= marioY - D4SensorY && blockY <= marioY + D4SensorY;
-                    inD5Y = blockY >= marioY - D5SensorY && blockY <= marioY + D5SensorY;
-                    
-                    if( y > (yCam +layer.height/1.1) / 16 && y < (yCam +layer.height) / 16)
-                    {                    	
-                    	if(!colYBoxExist)
-                    	{
-                    		////g.setColor(new Color(139,69,19));
-                    		if(inD1X)
-                    		{
-                    			//g.setColor(Color.BLACK);
-                    			holeD1LeftRight=1*behindOrFront;
-                    		}
-                    		else if(inD2X)
-                    		{
-                    			//g.setColor(Color.RED);
-                    			holeD2LeftRight=1*behindOrFront;
-                    		}
-                    		else if(inD3X)
-                    		{
-                    			//g.setColor(Color.ORANGE);
-                    			holeD3LeftRight=1*behindOrFront;
-                    		}
-                    		else if(inD4X)
-                    		{
-                    			//g.setColor(Color.YELLOW);
-                    			holeD4LeftRight=1*behindOrFront;
-                    		}
-                    		else if(inD5X)
-                    		{
-                    			//g.setColor(Color.WHITE);
-                    			holeD5LeftRight=1*behindOrFront;
-                    		}
-                    		
-                    		if(inD1Y)
-                    		{
-                    			////g.setColor(Color.BLACK);
-                    			holeD1UpDown=1*belowOrAbove;
-                    		}
-                    		else if(inD2Y)
-                    		{
-                    			////g.setColor(Color.RED);
-                    			holeD2UpDown=1*belowOrAbove;
-                    		}
-                    		else if(inD3Y)
-                    		{
-                    			////g.setColor(Color.ORANGE);
-                    			holeD3UpDown=1*belowOrAbove;
-                    		}
-                    		else if(inD4Y)
-                    		{
-                    			////g.setColor(Color.YELLOW);
-                    			holeD4UpDown=1*belowOrAbove;
-                    		}
-                    		else if(inD5Y)
-                    		{
-                    			////g.setColor(Color.WHITE);
-                    			holeD5UpDown=1*belowOrAbove;
-                    		}
-                    		
-//	                        g.fillRect((x << 4) - xCam, (y << 4) - yCam, 16, 2);
-//	                        g.fillRect((x << 4) - xCam, (y << 4) - yCam + 14, 16, 2);
-//	                        g.fillRect((x << 4) - xCam, (y << 4) - yCam, 2, 16);
-//	                        g.fillRect((x << 4) - xCam + 14, (y << 4) - yCam, 2, 16);  
-	                        
-                    	}
+                    case 1: obstacleD1UpDown = 1 * belowOrAbove; break;
+                    case 2: obstacleD2UpDown = 1 * belowOrAbove; break;
+                    case 3: obstacleD3UpDown = 1 * belowOrAbove; break;
+                    case 4: obstacleD4UpDown = 1 * belowOrAbove; break;
                     }
                 }
-            
-            
-            if(foundPathEmpty && inD5X && (x<<4  >= (int)mario.x ) && mario.onGround && obstacleD1UpDown ==0)
-            {
-                	//g.setColor(Color.BLACK);
-                    //g.fillRect((x << 4) - xCam + 2 + 4, (int)mario.y  , 4, 4);
-                    numEmptySpace++; 
-                    
-                    
-
             }
-//            System.out.println("colCountTilFull " + colCountTilFull);
-//            System.out.println("numEmptySpace " + numEmptySpace); 
-//            System.out.println("yBlockSensor " + yBlockSensor);
-            
-        }
-        
-        
-        layer.renderExit0(g, tick, paused?0:alpha, mario.winTime==0);
-        
-        g.translate(-xCam, -yCam);
-        for (Sprite sprite : sprites)
-        {
-            if (sprite.layer == 1) sprite.render(g, alpha);
-        }
-        g.translate(xCam, yCam);
-        g.setColor(Color.BLACK);
-        layer.renderExit1(g, tick, paused?0:alpha);
-        
-        //drawStringDropShadow(g, "Generation " + df.format(this.generation), 0, 0, 7);
-        drawStringDropShadow(g, "Genome " + df.format(this.genomeNum), 0, 0, 7);
-//        drawStringDropShadow(g, "00000000", 0, 1, 7);
-        
-        drawStringDropShadow(g, "COIN", 14, 0, 7);
-        drawStringDropShadow(g, " "+df.format(Mario.coins), 14, 1, 7);
-
-        drawStringDropShadow(g, "WORLD", 24, 0, 7);
-        drawStringDropShadow(g, " "+Mario.levelString, 24, 1, 7);
-
-        drawStringDropShadow(g, "TIME", 35, 0, 7);
-        int time = (timeLeft+15-1)/15;
-        if (time<0) time = 0;
-        drawStringDropShadow(g, " "+df2.format(time), 35, 1, 7);
-
-
-        if (startTime > 0)
-        {
-            float t = startTime + alpha - 2;
-            t = t * t * 0.6f;
-            //renderBlackout(g, 160, 120, (int) (t));
-        }
-//        mario.x>level.xExit*16
-        if (mario.winTime > 0)
-        {
-        	this.isWon = true; 
-            float t = mario.winTime + alpha;
-            t = t * t * 0.2f;
 
-            if (t > 900)
+            // the first blocking tile ahead of Mario near his height tells whether to jump up or
+            // drop down after the empty stretch
+            boolean foundPathEmpty = true;
+            boolean inD5X = xRing != 0;
+            int path = terrain.getBlocking(x) & scanned & pathRows;
+            if (inD5X && blockX >= marioX && path != 0)
             {
-                renderer.levelWon();
-                //              replayer = new Replayer(recorder.getBytes());
-//                init();
+                foundPathEmpty = false;
+                if (numEmptySpace > 0)
+                {
+                    int blockY = (Integer.numberOfTrailingZeros(path) << 4) - yCam;
+                    yBlockSensor = marioY - blockY > 0 ? 1.0 : -1.0;
+                }
             }
 
-            //renderBlackout(g, (int) (mario.xDeathPos - xCam), (int) (mario.yDeathPos - yCam), (int) (320 - t));
-        }
+            for (int holes = holeRows & scanned; holes != 0; holes &= holes - 1)
+            {
+                int y = Integer.numberOfTrailingZeros(holes);
+                if ((solid & terrain.rows(0, y)) != 0) continue;
 
-        if (mario.deathTime > 0)
-        {
-        	this.isLose = true; 
-            float t = mario.deathTime + alpha;
-            t = t * t * 0.4f;
+                int blockY = (y << 4) - yCam;
+                switch (xRing)
+                {
+                case 1: holeD1LeftRight = 1 * behindOrFront; break;
+                case 2: holeD2LeftRight = 1 * behindOrFront; break;
+                case 3: holeD3LeftRight = 1 * behindOrFront; break;
+                case 4: holeD4LeftRight = 1 * behindOrFront; break;
+                case 5: holeD5LeftRight = 1 * behindOrFront; break;
+                }
+                double belowOrAbove = marioY - blockY > 0 ? 1.0 : -1.0;
+                switch (ring(blockY, marioY, D1SensorY))
+                {
+                case 1: holeD1UpDown = 1 * belowOrAbove; break;
+                case 2: holeD2UpDown = 1 * belowOrAbove; break;
+                case 3: holeD3UpDown = 1 * belowOrAbove; break;
+                case 4: holeD4UpDown = 1 * belowOrAbove; break;
+                case 5: holeD5UpDown = 1 * belowOrAbove; break;
+                }
+            }
 
-            if (t > 1800)
+            if (foundPathEmpty && inD5X && (x << 4 >= (int) mario.x) && mario.onGround && obstacleD1UpDown == 0)
             {
-                renderer.levelFailed();
-                //              replayer = new Replayer(recorder.getBytes());
-//                init();
+                numEmptySpace++;
             }
+        }
+    }
 
-            //renderBlackout(g, (int) (mario.xDeathPos - xCam), (int) (mario.yDeathPos - yCam), (int) (320 - t));
+    /**
+     * @return 1 to 5 for the innermost sensor ring around <code>center</code> that contains
+     * <code>pos</code>, rings being <code>d1</code> apart, 0 if it is outside all of them
+     */
+    private static int ring(int pos, int center, double d1)
+    {
+        for (int n = 1; n <= 5; n++)
+        {
+            if (pos >= center - d1 * n && pos <= center + d1 * n) return n;
         }
+        return 0;
     }
 
     private void drawStringDropShadow(Graphics g, String text, int x, int y, int c)
@@ -1508,6 +1268,7 @@ public class LevelScene extends Scene implements SpriteContext
 
     public void addSprite(Sprite sprite)
     {
+        sprite.spriteContext = this;
         spritesToAdd.add(sprite);
         sprite.tick();
     }
@@ -1543,11 +1304,12 @@ public class LevelScene extends Scene implements SpriteContext
             bumpInto(x, y - 1);
             level.setBlock(x, y, (byte) 4);
             level.setBlockData(x, y, (byte) 4);
+            terrain.update(x);
 
             if (((Level.TILE_BEHAVIORS[block & 0xff]) & Level.BIT_SPECIAL) > 0)
             {
                 //sound.play(Art.samples[Art.SAMPLE_ITEM_SPROUT], new FixedSoundSource(x * 16 + 8, y * 16 + 8), 1, 1, 1);
-                if (!Mario.large)
+                if (!mario.large)
                 {
                     addSprite(new Mushroom(this, x * 16 + 8, y * 16 + 8));
                 }
@@ -1559,9 +1321,9 @@ public class LevelScene extends Scene implements SpriteContext
             else
             {
             	//System.out.println("Tile bumpable at " + x + "  " + y); 
-                Mario.getCoin();
+                mario.getCoin();
                 //sound.play(Art.samples[Art.SAMPLE_GET_COIN], new FixedSoundSource(x * 16 + 8, y * 16 + 8), 1, 1, 1);
-                addSprite(new CoinAnim(x, y));
+                addSprite(new CoinAnim(x, y, random));
             }
         }
 
@@ -1572,9 +1334,10 @@ public class LevelScene extends Scene implements SpriteContext
             {
                 //sound.play(Art.samples[Art.SAMPLE_BREAK_BLOCK], new FixedSoundSource(x * 16 + 8, y * 16 + 8), 1, 1, 1);
                 level.setBlock(x, y, (byte) 0);
+                terrain.update(x);
                 for (int xx = 0; xx < 2; xx++)
                     for (int yy = 0; yy < 2; yy++)
-                        addSprite(new Particle(x * 16 + xx * 8 + 4, y * 16 + yy * 8 + 4, (xx * 2 - 1) * 4, (yy * 2 - 1) * 4 - 8));
+                        addSprite(new Particle(x * 16 + xx * 8 + 4, y * 16 + yy * 8 + 4, (xx * 2 - 1) * 4, (yy * 2 - 1) * 4 - 8, random));
             }
             else
             {
@@ -1589,10 +1352,11 @@ public class LevelScene extends Scene implements SpriteContext
         if (((Level.TILE_BEHAVIORS[block & 0xff]) & Level.BIT_PICKUPABLE) > 0)
         {
         	System.out.println("Pickup at " + x + "  " + y); 
-            Mario.getCoin();
+            mario.getCoin();
             //sound.play(Art.samples[Art.SAMPLE_GET_COIN], new FixedSoundSource(x * 16 + 8, y * 16 + 8), 1, 1, 1);
             level.setBlock(x, y, (byte) 0);
-            addSprite(new CoinAnim(x, y + 1));
+            terrain.update(x);
+            addSprite(new CoinAnim(x, y + 1, random));
         }
 
         for (Sprite sprite : sprites)
@@ -38,6 +38,10 @@ public class MapScene extends Scene
     private int xFarthestCap = 0;
     private int yFarthestCap = 0;
 
+    private boolean large = true;
+    private boolean fire = true;
+    private int lives = 3;
+
     public MapScene(GraphicsConfiguration graphicsConfiguration, MarioComponent marioComponent, long seed)
     {
         this.graphicsConfiguration = graphicsConfiguration;
@@ -435,13 +439,13 @@ public class MapScene extends Scene
                 }
             }
         }
-        if (!Mario.large)
+        if (!large)
         {
             g.drawImage(map[(tick) / 6 % 2][1], xMario + (int) (xMarioA * alpha), yMario + (int) (yMarioA * alpha) - 6, null);
         }
         else
         {
-            if (!Mario.fire)
+            if (!fire)
             {
                 g.drawImage(map[(tick) / 6 % 2+2][0], xMario + (int) (xMarioA * alpha), yMario + (int) (yMarioA * alpha) - 6-16, null);
                 g.drawImage(map[(tick) / 6 % 2+2][1], xMario + (int) (xMarioA * alpha), yMario + (int) (yMarioA * alpha) - 6, null);
@@ -453,7 +457,7 @@ public class MapScene extends Scene
             }
         }
         
-        drawStringDropShadow(g, "MARIO " + df.format(Mario.lives), 0, 0, 7);
+        drawStringDropShadow(g, "MARIO " + df.format(lives), 0, 0, 7);
 
         drawStringDropShadow(g, "WORLD "+(worldNumber+1), 32, 0, 7);
     }
@@ -530,7 +534,7 @@ public class MapScene extends Scene
                 {
                     if (level[x][y] == TILE_LEVEL && data[x][y] != 0 && data[x][y] > -10)
                     {
-                        Mario.levelString = (worldNumber + 1) + "-";
+                        String levelString = (worldNumber + 1) + "-";
                         int difficulty = worldNumber+1;
                         int type = LevelGenerator.TYPE_OVERGROUND;
                         if (data[x][y] > 1 && new Random(seed + x * 313211 + y * 534321).nextInt(3) == 0)
@@ -541,16 +545,16 @@ public class MapScene extends Scene
                         {
                             if (data[x][y] == -2)
                             {
-                                Mario.levelString += "X";
+                                levelString += "X";
                                 difficulty += 2;
                             }
                             else if (data[x][y] == -1)
                             {
-                                Mario.levelString += "?";
+                                levelString += "?";
                             }
                             else
                             {
-                                Mario.levelString += "#";
+                                levelString += "#";
                                 difficulty += 1;
                             }
 
@@ -558,11 +562,11 @@ public class MapScene extends Scene
                         }
                         else
                         {
-                            Mario.levelString += data[x][y];
+                            levelString += data[x][y];
                         }
 
                         Art.stopMusic();
-                        marioComponent.startLevel(seed * x * y + x * 31871 + y * 21871, difficulty, type);
+                        marioComponent.startLevel(seed * x * y + x * 31871 + y * 21871, difficulty, type, levelString);
                     }
                 }
             }
@@ -18,6 +18,7 @@ import javax.imageio.ImageIO;
 import javax.swing.*;
 
 import com.mojang.mario.level.LevelGenerator;
+import com.mojang.mario.sensors.SensorSchema;
 import com.mojang.mario.sprites.*;
 import com.mojang.sonar.FakeSoundEngine;
 import com.mojang.sonar.SonarSoundEngine;
@@ -39,12 +40,18 @@ public class MarioComponent extends JComponent implements Runnable, KeyListener,
 
     private Scale2x scale2x = new Scale2x(320, 240);
     
-    public static int type = LevelGenerator.TYPE_OVERGROUND;
+    public int type = LevelGenerator.TYPE_OVERGROUND;
     public int difficulty;
-    public static int seed = new Random().nextInt(); 
-    public static int x1 = new Random().nextInt(); 
-    public static int y1 = new Random().nextInt(); 
-    public boolean endofNewTick = false; 
+    public SensorSchema sensors = SensorSchema.DEFAULT_SCHEMA;
+    public int actionRepeat = 1;
+    /**
+     * Records the level as it is played, by the controller or from the keyboard, see
+     * {@link ObservationRecorder}. Closing it is up to the caller.
+     */
+    public ObservationRecorder recorder;
+    public int seed = new Random().nextInt(); 
+    private MarioController controller;
+    private Thread thread;
     private int generation; 
     private int randomThreadNum;
     
@@ -136,9 +143,9 @@ public class MarioComponent extends JComponent implements Runnable, KeyListener,
     	//System.out.println("MarioComponent Start " + running); 
         if (!running)
         {
-        	Random rand = new Random(10);
             running = true;
-            new Thread(this, "Game Thread" + randomThreadNum).start();
+            thread = new Thread(this, "Game Thread" + randomThreadNum);
+            thread.start();
         }
     }
 
@@ -148,6 +155,30 @@ public class MarioComponent extends JComponent implements Runnable, KeyListener,
         running = false;
     }
 
+    /**
+     * Lets a controller play instead of the keyboard. The controller is stepped on the game
+     * thread right before every tick, and the game thread ends with the level.
+     */
+    public void setController(MarioController controller)
+    {
+        this.controller = controller;
+    }
+
+    /**
+     * Blocks until the game thread has finished.
+     */
+    public void join()
+    {
+        try
+        {
+            if (thread != null) thread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public void run()
     {
         graphicsConfiguration = getGraphicsConfiguration();
@@ -181,11 +212,11 @@ public class MarioComponent extends JComponent implements Runnable, KeyListener,
 
         //Jumps right into a randomized level
                 
-        startLevel(seed * x1 * y1 + x1 * 31871 + y1 * 21871, difficulty, type);
+        startLevel(seed, difficulty, type);
         int everyTick = 0; 
+        int levelTicks = 0;
         while (running)
         {
-        	endofNewTick = false; 
             double lastTime = time;
             time = System.nanoTime() / 1000000000.0;
             double passedTime = time - lastTime;
@@ -206,6 +237,22 @@ public class MarioComponent extends JComponent implements Runnable, KeyListener,
             if (lastTick == -1) lastTick = tick;
             while (lastTick < tick)
             {
+                if (scene instanceof LevelScene)
+                {
+                    LevelScene levelScene = (LevelScene) scene;
+                    boolean over = levelScene.isWon || levelScene.isLose;
+                    if (over && controller != null)
+                    {
+                        running = false;
+                        break;
+                    }
+                    if (levelTicks % actionRepeat == 0)
+                    {
+                        if (controller != null) controller.step(levelScene, levelScene.keys);
+                        if (recorder != null && !over) recorder.record(levelScene, levelTicks);
+                    }
+                    levelTicks++;
+                }
                 scene.tick();
                 lastTick++;
 
@@ -274,7 +321,6 @@ public class MarioComponent extends JComponent implements Runnable, KeyListener,
             catch (InterruptedException e)
             {
             }
-            endofNewTick = true;
         }
 
        // Art.stopMusic();
@@ -301,7 +347,15 @@ public class MarioComponent extends JComponent implements Runnable, KeyListener,
 
     public void startLevel(long seed, int difficulty, int type)
     {
-        scene = new LevelScene(graphicsConfiguration, this, seed, difficulty, type, generation, this.randomThreadNum);
+        startLevel(seed, difficulty, type, "none");
+    }
+
+    public void startLevel(long seed, int difficulty, int type, String levelString)
+    {
+        LevelScene levelScene = new LevelScene(graphicsConfiguration, this, seed, difficulty, type, generation, this.randomThreadNum);
+        levelScene.levelString = levelString;
+        levelScene.setSensors(sensors);
+        scene = levelScene;
         //scene.setSound(sound);
         scene.init();
     }
@@ -350,7 +404,6 @@ public class MarioComponent extends JComponent implements Runnable, KeyListener,
     
     public void toTitle()
     {
-        Mario.resetStatic();
         scene = new TitleScene(this, graphicsConfiguration);
         //scene.setSound(sound);
         scene.init();
@@ -0,0 +1,15 @@
+package com.mojang.mario;
+
+/**
+ * Drives Mario during an episode. Called exactly once per game tick, on the thread that
+ * ticks the scene, before the tick is simulated.
+ */
+public interface MarioController
+{
+    /**
+     * @param scene the current observation, sensors are up to date with the last tick
+     * @param keys key state to apply for the next tick, indexed by the Mario.KEY_* constants;
+     * this is the scene's own key array, so keys not written stay as they were
+     */
+    public void step(LevelScene scene, boolean[] keys);
+}
@@ -0,0 +1,208 @@
+package com.mojang.mario;
+
+import com.mojang.mario.sensors.SensorSchema;
+
+/**
+ * Runs a headless level in a tight fixed-step loop. No wall clock is involved: an episode is
+ * a number of ticks, each tick being 1/48 of a second of game time, and it is simulated as
+ * fast as the controller can answer.
+ * <p>
+ * Callers either hand a MarioController to run(), or step by hand with
+ * observe() -> act(keys) -> tick() until isDone(). Everything happens on the calling thread.
+ */
+public class MarioEnvironment
+{
+    public static final int END_NONE = 0;
+    public static final int END_WIN = 1;
+    public static final int END_DEATH = 2;
+    public static final int END_TIMEOUT = 3;
+    public static final int END_NO_PROGRESS = 4;
+    public static final int END_OSCILLATION = 5;
+
+    private LevelScene scene;
+    private int maxTicks;
+    private ProgressWatchdog watchdog = new ProgressWatchdog(0, 0);
+    private int watchdogWindow = 0;
+    private float watchdogBand = 0;
+    private int ticks;
+    private int endReason = END_NONE;
+    private SensorSchema sensors = SensorSchema.DEFAULT_SCHEMA;
+    private int actionRepeat = 1;
+    private ObservationRecorder recorder;
+
+    /**
+     * Creates an environment without a level, call {@link #reset} before running it.
+     */
+    public MarioEnvironment()
+    {
+    }
+
+    /**
+     * @param maxTicks hard limit on the episode length, 0 leaves it to the level timer
+     */
+    public MarioEnvironment(long seed, int difficulty, int type, int generation, int genomeNum, int maxTicks)
+    {
+        reset(seed, difficulty, type, generation, genomeNum, maxTicks);
+    }
+
+    /**
+     * Starts a new episode on a freshly generated level, so one environment can be reused
+     * for many episodes.
+     */
+    public void reset(long seed, int difficulty, int type, int generation, int genomeNum, int maxTicks)
+    {
+        this.maxTicks = maxTicks;
+        ticks = 0;
+        endReason = END_NONE;
+        scene = new LevelScene(seed, difficulty, type, generation, genomeNum);
+        scene.setSensors(sensors);
+        scene.init();
+        watchdog.reset(scene.mario.x);
+    }
+
+    /**
+     * Ends episodes with END_NO_PROGRESS or END_OSCILLATION, see ProgressWatchdog. Changing
+     * the settings restarts the watch from Mario's current position.
+     * @param window ticks in the sliding window, 0 to never stop early
+     * @param band pixels Mario must cover within a window, 0 to skip the oscillation check
+     */
+    public void setWatchdog(int window, float band)
+    {
+        if (window == watchdogWindow && band == watchdogBand) return;
+        watchdogWindow = window;
+        watchdogBand = band;
+        watchdog = new ProgressWatchdog(window, band);
+        if (scene != null) watchdog.reset(scene.mario.x);
+    }
+
+    /**
+     * Selects the sensors observed from the next {@link #reset} on.
+     */
+    public void setSensors(SensorSchema sensors)
+    {
+        this.sensors = sensors;
+    }
+
+    /**
+     * Lets the controller decide only every <code>actionRepeat</code> ticks and holds its keys
+     * in between. Sensors are only computed for the ticks before a decision.
+     * @param actionRepeat ticks per decision, 1 decides every tick
+     */
+    public void setActionRepeat(int actionRepeat)
+    {
+        if (actionRepeat < 1) throw new IllegalArgumentException("action repeat must be at least 1: " + actionRepeat);
+        this.actionRepeat = actionRepeat;
+    }
+
+    /**
+     * Records every decision {@link #run} makes: the observation and the keys the controller
+     * pressed on it.
+     * @param recorder null to stop recording
+     */
+    public void setRecorder(ObservationRecorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    /**
+     * @return true if the controller decides before the next tick
+     */
+    public boolean isDecisionTick()
+    {
+        return ticks % actionRepeat == 0;
+    }
+
+    /**
+     * Runs the episode to its end, stepping the controller on every decision tick. The
+     * controller writes straight into the scene's key array, where the keys stay until the
+     * next decision. Stops early, with no end reason, if the thread is interrupted.
+     * @return number of ticks simulated
+     */
+    public int run(MarioController controller)
+    {
+        while (!isDone() && !Thread.currentThread().isInterrupted())
+        {
+            if (isDecisionTick())
+            {
+                controller.step(scene, scene.keys);
+                if (recorder != null) recorder.record(scene, ticks);
+            }
+            tick();
+        }
+        return ticks;
+    }
+
+    /**
+     * @return the scene, whose sensors describe the state after the last tick
+     */
+    public LevelScene observe()
+    {
+        return scene;
+    }
+
+    /**
+     * Sets the keys held down during the next tick.
+     * @param keys indexed by the Mario.KEY_* constants
+     */
+    public void act(boolean[] keys)
+    {
+        for (int i = 0; i < keys.length; i++)
+        {
+            scene.toggleKey(i, keys[i]);
+        }
+    }
+
+    /**
+     * Advances the level by one tick and updates the end reason. The sensors are updated only
+     * if a decision follows the tick.
+     */
+    public void tick()
+    {
+        scene.setSensing((ticks + 1) % actionRepeat == 0);
+        scene.tick();
+        ticks++;
+
+        int progress = watchdog.update(scene.mario.x);
+
+        if (scene.isWon)
+        {
+            endReason = END_WIN;
+        }
+        else if (scene.timeLeft <= 0 || (maxTicks > 0 && ticks >= maxTicks))
+        {
+            endReason = END_TIMEOUT;
+        }
+        else if (scene.isLose)
+        {
+            endReason = END_DEATH;
+        }
+        else if (progress == ProgressWatchdog.NO_PROGRESS)
+        {
+            endReason = END_NO_PROGRESS;
+        }
+        else if (progress == ProgressWatchdog.OSCILLATION)
+        {
+            endReason = END_OSCILLATION;
+        }
+    }
+
+    public boolean isDone()
+    {
+        return endReason != END_NONE;
+    }
+
+    public int getEndReason()
+    {
+        return endReason;
+    }
+
+    public int getTicks()
+    {
+        return ticks;
+    }
+
+    public LevelScene getScene()
+    {
+        return scene;
+    }
+}
@@ -0,0 +1,143 @@
+package com.mojang.mario;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A file written by {@link ObservationRecorder}, loaded into memory. The observations come back
+ * as one array per record, ready to be fed in bulk to a network, e.g. through
+ * <code>Activator.next(double[][])</code>.
+ */
+public class ObservationLog
+{
+    private String sensors;
+    private int width;
+    private int size;
+    private int[] ticks;
+    private float[] xs;
+    private short[] keys;
+    private double[][] observations;
+
+    private ObservationLog()
+    {
+    }
+
+    /**
+     * Reads a whole recording. Does not close <code>in</code>.
+     * @throws IOException if the stream is not a complete recording
+     */
+    public static ObservationLog read(InputStream in) throws IOException
+    {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != ObservationRecorder.MAGIC) throw new IOException("not an observation recording");
+        int version = data.readInt();
+        if (version != ObservationRecorder.VERSION) throw new IOException("unsupported recording version " + version);
+
+        ObservationLog log = new ObservationLog();
+        log.width = data.readInt();
+        log.sensors = data.readUTF();
+        log.ticks = new int[ObservationRecorder.BLOCK_ROWS];
+        log.xs = new float[ObservationRecorder.BLOCK_ROWS];
+        log.keys = new short[ObservationRecorder.BLOCK_ROWS];
+        log.observations = new double[ObservationRecorder.BLOCK_ROWS][];
+
+        int rows;
+        while ((rows = data.readInt()) != 0)
+        {
+            if (rows < 0 || rows > ObservationRecorder.BLOCK_ROWS) throw new IOException("invalid block of " + rows + " records");
+            log.grow(log.size + rows);
+            int start = log.size;
+            for (int i = start; i < start + rows; i++)
+                log.ticks[i] = data.readInt();
+            for (int i = start; i < start + rows; i++)
+                log.xs[i] = data.readFloat();
+            for (int i = start; i < start + rows; i++)
+                log.keys[i] = data.readShort();
+            for (int i = start; i < start + rows; i++)
+                log.observations[i] = new double[log.width];
+            for (int c = 0; c < log.width; c++)
+            {
+                for (int i = start; i < start + rows; i++)
+                    log.observations[i][c] = data.readFloat();
+            }
+            log.size += rows;
+        }
+        return log;
+    }
+
+    private void grow(int capacity)
+    {
+        if (capacity <= ticks.length) return;
+        capacity = Math.max(capacity, ticks.length * 2);
+        int[] t = new int[capacity];
+        float[] x = new float[capacity];
+        short[] k = new short[capacity];
+        double[][] o = new double[capacity][];
+        System.arraycopy(ticks, 0, t, 0, size);
+        System.arraycopy(xs, 0, x, 0, size);
+        System.arraycopy(keys, 0, k, 0, size);
+        System.arraycopy(observations, 0, o, 0, size);
+        ticks = t;
+        xs = x;
+        keys = k;
+        observations = o;
+    }
+
+    /**
+     * @return number of records
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return number of values per observation
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return sensor schema the observations were recorded with
+     */
+    public String getSensors()
+    {
+        return sensors;
+    }
+
+    /**
+     * @return one observation per record, in recording order; the array is
+     * <code>size()</code> long
+     */
+    public double[][] getObservations()
+    {
+        if (observations.length != size)
+        {
+            double[][] o = new double[size][];
+            System.arraycopy(observations, 0, o, 0, size);
+            observations = o;
+        }
+        return observations;
+    }
+
+    public int getTick(int record)
+    {
+        return ticks[record];
+    }
+
+    public float getX(int record)
+    {
+        return xs[record];
+    }
+
+    /**
+     * @return true if <code>key</code>, one of the <code>Mario.KEY_*</code> constants, was held
+     */
+    public boolean isPressed(int record, int key)
+    {
+        return (keys[record] & (1 << key)) != 0;
+    }
+}
@@ -0,0 +1,135 @@
+package com.mojang.mario;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.mojang.mario.sensors.SensorSchema;
+
+/**
+ * Streams what a player saw and did to a compact binary file for offline training: for every
+ * decision the observation, the keys held for the following ticks, the tick number and Mario's
+ * x. Works the same for human play and for networks, see {@link MarioComponent#recorder} and
+ * {@link MarioEnvironment#setRecorder(ObservationRecorder)}. Read the file back with
+ * {@link ObservationLog}.
+ * <p>
+ * The file is columnar. A header (<code>MAGIC</code>, <code>VERSION</code>, observation width,
+ * sensor schema) is followed by blocks of up to <code>BLOCK_ROWS</code> records, each block
+ * holding its row count, then all ticks, all x, all key masks, and then one column of floats
+ * per observation value. A row count of 0 ends the file. Observations are stored as floats,
+ * which hold every value the current sensors produce exactly.
+ * <p>
+ * Records are buffered in preallocated columns, so recording allocates nothing per tick. A
+ * write error is kept and thrown by {@link #close()}, the game is not interrupted by it. The
+ * recorder may be closed from another thread, e.g. a shutdown hook, records after that are
+ * dropped. Level boundaries show as the tick starting over.
+ */
+public class ObservationRecorder
+{
+    public static final int MAGIC = 0x4d4f4253;
+    public static final int VERSION = 1;
+    public static final int BLOCK_ROWS = 4096;
+
+    private DataOutputStream out;
+    private int width;
+    private int rows;
+    private int[] ticks = new int[BLOCK_ROWS];
+    private float[] xs = new float[BLOCK_ROWS];
+    private short[] keys = new short[BLOCK_ROWS];
+    private float[] observations;
+    private IOException error;
+
+    /**
+     * Writes the header. The recorder does not buffer bytes itself, hand it a buffered stream.
+     * @param sensors schema of the observations that will be recorded
+     */
+    public ObservationRecorder(OutputStream out, SensorSchema sensors) throws IOException
+    {
+        this.out = new DataOutputStream(out);
+        width = sensors.size();
+        observations = new float[width * BLOCK_ROWS];
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+        this.out.writeInt(width);
+        this.out.writeUTF(sensors.toString());
+    }
+
+    /**
+     * Appends the current observation of <code>scene</code> and the keys it holds.
+     * @param tick ticks played in the level so far
+     */
+    public synchronized void record(LevelScene scene, int tick)
+    {
+        if (out == null) return;
+        if (scene.observation.length != width) throw new IllegalArgumentException("observation has " + scene.observation.length + " values, recording " + width);
+
+        ticks[rows] = tick;
+        xs[rows] = scene.mario.x;
+        int mask = 0;
+        for (int i = 0; i < Scene.KEY_COUNT; i++)
+        {
+            if (scene.keys[i]) mask |= 1 << i;
+        }
+        keys[rows] = (short) mask;
+        for (int i = 0; i < width; i++)
+        {
+            observations[i * BLOCK_ROWS + rows] = (float) scene.observation[i];
+        }
+        rows++;
+        if (rows == BLOCK_ROWS) flush();
+    }
+
+    private void flush()
+    {
+        if (rows == 0 || error != null)
+        {
+            rows = 0;
+            return;
+        }
+        try
+        {
+            out.writeInt(rows);
+            for (int i = 0; i < rows; i++)
+                out.writeInt(ticks[i]);
+            for (int i = 0; i < rows; i++)
+                out.writeFloat(xs[i]);
+            for (int i = 0; i < rows; i++)
+                out.writeShort(keys[i]);
+            for (int c = 0; c < width; c++)
+            {
+                for (int i = 0; i < rows; i++)
+                    out.writeFloat(observations[c * BLOCK_ROWS + i]);
+            }
+        }
+        catch (IOException e)
+        {
+            error = e;
+        }
+        rows = 0;
+    }
+
+    /**
+     * Writes the buffered records and the end marker and closes the stream.
+     * Does nothing if already closed.
+     * @throws IOException if any write failed since the recorder was created
+     */
+    public synchronized void close() throws IOException
+    {
+        if (out == null) return;
+        flush();
+        if (error == null)
+        {
+            try
+            {
+                out.writeInt(0);
+            }
+            catch (IOException e)
+            {
+                error = e;
+            }
+        }
+        out.close();
+        out = null;
+        if (error != null) throw error;
+    }
+}
@@ -0,0 +1,122 @@
+package com.mojang.mario;
+
+/**
+ * Watches Mario's x position over a sliding window of ticks and tells when an episode is not
+ * going anywhere: either Mario has not passed his farthest x for a whole window, or every x
+ * in the window lies within a small band, as when he runs back and forth at a wall or pit.
+ * The band is checked against a running min and max of the window, so a tick costs amortised
+ * constant time whatever the window length.
+ */
+public class ProgressWatchdog
+{
+    public static final int OK = 0;
+    public static final int NO_PROGRESS = 1;
+    public static final int OSCILLATION = 2;
+
+    private int window;
+    private float band;
+    private SlidingExtreme minXs;
+    private SlidingExtreme maxXs;
+    private int ticks;
+    private float maxX;
+    private int lastProgressTick;
+
+    /**
+     * @param window ticks in the sliding window, 0 disables the watchdog
+     * @param band width in pixels Mario must leave within a window, 0 disables the oscillation check
+     */
+    public ProgressWatchdog(int window, float band)
+    {
+        this.window = window;
+        this.band = band;
+        minXs = new SlidingExtreme(window, false);
+        maxXs = new SlidingExtreme(window, true);
+    }
+
+    public void reset(float x)
+    {
+        ticks = 0;
+        lastProgressTick = 0;
+        maxX = x;
+        minXs.clear();
+        maxXs.clear();
+    }
+
+    /**
+     * @param x Mario's position after the latest tick
+     * @return OK, NO_PROGRESS or OSCILLATION
+     */
+    public int update(float x)
+    {
+        if (window <= 0) return OK;
+
+        if (band > 0)
+        {
+            minXs.add(ticks, x);
+            maxXs.add(ticks, x);
+        }
+        ticks++;
+        if (x > maxX)
+        {
+            maxX = x;
+            lastProgressTick = ticks;
+        }
+
+        if (ticks - lastProgressTick >= window) return NO_PROGRESS;
+
+        if (band > 0 && ticks >= window && maxXs.get() - minXs.get() < band) return OSCILLATION;
+        return OK;
+    }
+
+    /**
+     * Min or max of the x values of the last window ticks, kept as a monotonic deque: an x that
+     * can no longer be the extreme, because a later x is at least as extreme, is dropped, so
+     * every x is added and removed once.
+     */
+    private static class SlidingExtreme
+    {
+        private boolean max;
+        private int[] ticks;
+        private float[] values;
+        private int head;
+        private int size;
+
+        private SlidingExtreme(int window, boolean max)
+        {
+            this.max = max;
+            ticks = new int[Math.max(window, 1)];
+            values = new float[ticks.length];
+        }
+
+        private void clear()
+        {
+            head = 0;
+            size = 0;
+        }
+
+        private void add(int tick, float x)
+        {
+            // the deque holds ticks in order, so at most the oldest one leaves the window
+            if (size > 0 && ticks[head] <= tick - ticks.length)
+            {
+                head = (head + 1) % ticks.length;
+                size--;
+            }
+            while (size > 0)
+            {
+                float last = values[(head + size - 1) % ticks.length];
+                if (max ? last > x : last < x) break;
+                size--;
+            }
+            int slot = (head + size) % ticks.length;
+            ticks[slot] = tick;
+            values[slot] = x;
+            size++;
+        }
+
+        private float get()
+        {
+            return values[head];
+        }
+    }
+}
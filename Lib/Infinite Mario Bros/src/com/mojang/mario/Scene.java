@@ -9,7 +9,9 @@ import com.mojang.sonar.SoundListener;
 public abstract class Scene 
 {
     
-    public static boolean[] keys = new boolean[16];
+    public static final int KEY_COUNT = 16;
+
+    public boolean[] keys = new boolean[KEY_COUNT];
 
     public void toggleKey(int key, boolean isPressed)
     {
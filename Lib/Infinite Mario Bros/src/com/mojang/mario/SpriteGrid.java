@@ -0,0 +1,192 @@
+package com.mojang.mario;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mojang.mario.sprites.Sprite;
+
+/**
+ * Buckets the sprites of a scene into 16 pixel columns so collision and sensor code only visit
+ * sprites near a position instead of the whole sprite list. Levels are 15 tiles high, so columns
+ * are all the locality there is. Sprites outside the level go to the first or last column.
+ * <p>
+ * The index is kept up to date incrementally: the scene reports the sprites it adds to and
+ * removes from its list, and {@link #update()} moves only the sprites that left their column
+ * since the last update. A sprite's column is checked against its position rather than
+ * reported by the sprite, so moves made outside its own tick, like a carried shell, are caught
+ * too. Only a new level pays for a full {@link #build}.
+ * <p>
+ * Query results are a superset of the sprites in range and come back in sprite list order, so
+ * a loop over them behaves exactly like a loop over the whole list with the same range check.
+ * The order is kept as a key per sprite: the scene inserts new sprites at the front of its
+ * list, so each batch gets keys below all others.
+ */
+public class SpriteGrid
+{
+    public static final int CELL_SIZE = 16;
+
+    private int columns = 1;
+    private int[] cellHead = new int[1];
+    private Sprite[] spriteAt = new Sprite[64];
+    private int[] spriteKey = new int[64];
+    private int[] spriteCell = new int[64];
+    private int[] next = new int[64];
+    private int[] prev = new int[64];
+    private int[] free = new int[64];
+    private int freeCount;
+    private int used;
+    private int frontKey;
+    private Map<Sprite, Integer> entries = new IdentityHashMap<Sprite, Integer>();
+    private long[] found = new long[64];
+    private int foundCount;
+
+    /**
+     * Indexes <code>sprites</code> from scratch, in list order.
+     * @param width level width in pixels
+     */
+    public void build(List<Sprite> sprites, int width)
+    {
+        columns = width / CELL_SIZE + 1;
+        if (cellHead.length < columns) cellHead = new int[columns];
+        Arrays.fill(cellHead, 0, columns, -1);
+        Arrays.fill(spriteAt, 0, used, null);
+        entries.clear();
+        used = 0;
+        freeCount = 0;
+        frontKey = 0;
+        for (int i = 0; i < sprites.size(); i++)
+        {
+            if (!entries.containsKey(sprites.get(i))) add(sprites.get(i), i);
+        }
+    }
+
+    /**
+     * Indexes sprites inserted at the front of the sprite list, in the order given.
+     */
+    public void addAll(List<Sprite> sprites)
+    {
+        int key = frontKey - sprites.size();
+        frontKey = key;
+        for (int i = 0; i < sprites.size(); i++)
+        {
+            if (!entries.containsKey(sprites.get(i))) add(sprites.get(i), key + i);
+        }
+    }
+
+    /**
+     * Drops sprites removed from the sprite list.
+     */
+    public void removeAll(List<Sprite> sprites)
+    {
+        for (int i = 0; i < sprites.size(); i++)
+        {
+            Integer entry = entries.remove(sprites.get(i));
+            if (entry == null) continue;
+            int e = entry.intValue();
+            unlink(e);
+            spriteAt[e] = null;
+            free[freeCount++] = e;
+        }
+    }
+
+    /**
+     * Moves the sprites that changed column since the last call.
+     */
+    public void update()
+    {
+        for (int e = 0; e < used; e++)
+        {
+            Sprite sprite = spriteAt[e];
+            if (sprite == null) continue;
+            int cell = cell(sprite.x);
+            if (cell != spriteCell[e])
+            {
+                unlink(e);
+                link(e, cell);
+            }
+        }
+    }
+
+    private void add(Sprite sprite, int key)
+    {
+        int e;
+        if (freeCount > 0)
+        {
+            e = free[--freeCount];
+        }
+        else
+        {
+            if (used == spriteAt.length) grow();
+            e = used++;
+        }
+        spriteAt[e] = sprite;
+        spriteKey[e] = key;
+        entries.put(sprite, Integer.valueOf(e));
+        link(e, cell(sprite.x));
+    }
+
+    private void grow()
+    {
+        int capacity = spriteAt.length * 2;
+        spriteAt = Arrays.copyOf(spriteAt, capacity);
+        spriteKey = Arrays.copyOf(spriteKey, capacity);
+        spriteCell = Arrays.copyOf(spriteCell, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        free = Arrays.copyOf(free, capacity);
+        found = Arrays.copyOf(found, capacity);
+    }
+
+    private void link(int e, int cell)
+    {
+        spriteCell[e] = cell;
+        prev[e] = -1;
+        next[e] = cellHead[cell];
+        if (next[e] >= 0) prev[next[e]] = e;
+        cellHead[cell] = e;
+    }
+
+    private void unlink(int e)
+    {
+        if (prev[e] >= 0) next[prev[e]] = next[e];
+        else cellHead[spriteCell[e]] = next[e];
+        if (next[e] >= 0) prev[next[e]] = prev[e];
+    }
+
+    private int cell(float x)
+    {
+        int c = (int) (x / CELL_SIZE);
+        if (x < 0 || c < 0) return 0;
+        if (c >= columns) return columns - 1;
+        return c;
+    }
+
+    /**
+     * Collects every sprite whose column overlaps <code>[x0, x1]</code>, in sprite list order.
+     * @return number of sprites found, read them with {@link #get(int)}
+     */
+    public int query(float x0, float x1)
+    {
+        foundCount = 0;
+        int c1 = cell(x1);
+        for (int c = cell(x0); c <= c1; c++)
+        {
+            for (int e = cellHead[c]; e >= 0; e = next[e])
+            {
+                found[foundCount++] = ((long) spriteKey[e] << 32) | e;
+            }
+        }
+        Arrays.sort(found, 0, foundCount);
+        return foundCount;
+    }
+
+    /**
+     * @return the i-th sprite of the last query
+     */
+    public Sprite get(int i)
+    {
+        return spriteAt[(int) found[i]];
+    }
+}
@@ -0,0 +1,126 @@
+package com.mojang.mario;
+
+import java.util.Arrays;
+
+import com.mojang.mario.level.Level;
+import com.mojang.mario.sprites.BulletBill;
+import com.mojang.mario.sprites.Enemy;
+import com.mojang.mario.sprites.FireFlower;
+import com.mojang.mario.sprites.Mushroom;
+import com.mojang.mario.sprites.Shell;
+import com.mojang.mario.sprites.Sprite;
+
+/**
+ * A rectangle of level tiles around Mario, copied out of <code>Level.map</code> once per tick,
+ * with the enemies and items standing in each tile marked on top. All grid sensors read this one
+ * copy instead of going back to the level for every cell, and its buffers are reused from tick
+ * to tick.
+ * <p>
+ * Cells outside the level read like {@link Level#getBlock(int, int)} does.
+ */
+public class TileWindow
+{
+    public static final int ENEMY = 1;
+    public static final int ITEM = 2;
+
+    private int x0, y0, width, height;
+    private byte[] tiles = new byte[64];
+    private byte[] sprites = new byte[64];
+
+    /**
+     * @return column of the tile containing pixel x
+     */
+    public static int tileX(float x)
+    {
+        return (int) Math.floor(x / 16);
+    }
+
+    /**
+     * @return row of the tile containing a sprite whose feet are at pixel y
+     */
+    public static int tileY(float y)
+    {
+        return (int) Math.floor((y - 1) / 16);
+    }
+
+    /**
+     * Copies the tiles from column <code>x0</code> to <code>x1</code> and row <code>y0</code> to
+     * <code>y1</code>, inclusive, and clears the sprite marks.
+     */
+    public void fill(Level level, int x0, int y0, int x1, int y1)
+    {
+        this.x0 = x0;
+        this.y0 = y0;
+        width = x1 - x0 + 1;
+        height = y1 - y0 + 1;
+        int size = width * height;
+        if (tiles.length < size)
+        {
+            tiles = new byte[size];
+            sprites = new byte[size];
+        }
+
+        int i = 0;
+        for (int x = x0; x <= x1; x++)
+        {
+            for (int y = y0; y <= y1; y++)
+            {
+                tiles[i++] = level.getBlock(x, y);
+            }
+        }
+        Arrays.fill(sprites, 0, size, (byte) 0);
+    }
+
+    /**
+     * Marks the tiles enemies and items stand in.
+     * @param grid index of the current sprites
+     */
+    public void markSprites(SpriteGrid grid)
+    {
+        int found = grid.query(x0 * 16, (x0 + width) * 16 - 1);
+        for (int i = 0; i < found; i++)
+        {
+            Sprite sprite = grid.get(i);
+            int kind;
+            if (sprite instanceof Enemy || sprite instanceof BulletBill || sprite instanceof Shell)
+                kind = ENEMY;
+            else if (sprite instanceof Mushroom || sprite instanceof FireFlower)
+                kind = ITEM;
+            else
+                continue;
+
+            int x = tileX(sprite.x);
+            int y = tileY(sprite.y);
+            if (contains(x, y)) sprites[(x - x0) * height + y - y0] |= kind;
+        }
+    }
+
+    public boolean contains(int x, int y)
+    {
+        return x >= x0 && x < x0 + width && y >= y0 && y < y0 + height;
+    }
+
+    /**
+     * @return the tile at column x and row y, which must be inside the window
+     */
+    public byte getBlock(int x, int y)
+    {
+        return tiles[(x - x0) * height + y - y0];
+    }
+
+    /**
+     * @return <code>Level.TILE_BEHAVIORS</code> bits of the tile at column x and row y
+     */
+    public int getBehavior(int x, int y)
+    {
+        return Level.TILE_BEHAVIORS[getBlock(x, y) & 0xff] & 0xff;
+    }
+
+    /**
+     * @return <code>ENEMY</code> and <code>ITEM</code> bits of the sprites at column x and row y
+     */
+    public int getSprites(int x, int y)
+    {
+        return sprites[(x - x0) * height + y - y0];
+    }
+}
@@ -13,6 +13,12 @@ public class BgLevelGenerator
         return levelGenerator.createLevel(levelSeedRandom.nextLong());
     }
 
+    public static Level createLevel(int width, int height, boolean distant, int type, long seed)
+    {
+        BgLevelGenerator levelGenerator = new BgLevelGenerator(width, height, distant, type);
+        return levelGenerator.createLevel(seed);
+    }
+
     private int width;
     private int height;
     private boolean distant;
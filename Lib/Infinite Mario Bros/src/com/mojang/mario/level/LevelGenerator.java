@@ -11,9 +11,6 @@ public class LevelGenerator
     public static final int TYPE_UNDERGROUND = 1;
     public static final int TYPE_CASTLE = 2;
 
-    private static Random levelSeedRandom = new Random();
-    public static long lastSeed;
-
     public static Level createLevel(int width, int height, long seed, int difficulty, int type)
     {
         LevelGenerator levelGenerator = new LevelGenerator(width, height);
@@ -63,7 +60,6 @@ public class LevelGenerator
             odds[i] = totalOdds - odds[i];
         }
 
-        lastSeed = seed;
         level = new Level(width, height);
         random = new Random(seed);
 
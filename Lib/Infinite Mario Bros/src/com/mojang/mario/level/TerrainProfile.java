@@ -0,0 +1,118 @@
+package com.mojang.mario.level;
+
+/**
+ * Summary of every column of a level as row bit masks, so the sensors can look at a column at
+ * once instead of reading it tile by tile. Bit y of a mask stands for row y; bit
+ * <code>height</code> repeats the bottom row, the way {@link Level#getBlock(int, int)} reads
+ * below the level. Columns outside the level read like the first or last column.
+ * <p>
+ * The profile is built once per level. Whoever changes a tile calls {@link #update(int)} for
+ * its column.
+ */
+public class TerrainProfile
+{
+    private static final int BLOCKING = Level.BIT_BLOCK_ALL | Level.BIT_BLOCK_UPPER | Level.BIT_BLOCK_LOWER;
+    private static final int NOT_SOLID = Level.BIT_SPECIAL | Level.BIT_BUMPABLE | Level.BIT_BREAKABLE | Level.BIT_PICKUPABLE | Level.BIT_ANIMATED;
+
+    private Level level;
+    private int[] solid;
+    private int[] blocking;
+    private int[] items;
+
+    public TerrainProfile(Level level)
+    {
+        if (level.height > 30) throw new IllegalArgumentException("levels higher than 30 tiles do not fit a profile: " + level.height);
+        this.level = level;
+        solid = new int[level.width];
+        blocking = new int[level.width];
+        items = new int[level.width];
+        for (int x = 0; x < level.width; x++)
+        {
+            update(x);
+        }
+    }
+
+    /**
+     * Recomputes column x from the level map.
+     */
+    public void update(int x)
+    {
+        if (x < 0 || x >= level.width) return;
+
+        int s = 0;
+        int b = 0;
+        int i = 0;
+        for (int y = 0; y <= level.height; y++)
+        {
+            int behavior = Level.TILE_BEHAVIORS[level.getBlock(x, y) & 0xff] & 0xff;
+            int bit = 1 << y;
+            if ((behavior & (Level.BIT_SPECIAL | Level.BIT_BUMPABLE)) != 0 || (behavior & (Level.BIT_PICKUPABLE | Level.BIT_BREAKABLE)) == Level.BIT_PICKUPABLE) i |= bit;
+            if ((behavior & NOT_SOLID) == 0 && (behavior & Level.BIT_BLOCK_ALL) != 0) s |= bit;
+            if ((behavior & BLOCKING) != 0) b |= bit;
+        }
+        solid[x] = s;
+        blocking[x] = b;
+        items[x] = i;
+    }
+
+    private int column(int x)
+    {
+        if (x < 0) return 0;
+        if (x >= level.width) return level.width - 1;
+        return x;
+    }
+
+    /**
+     * @return rows of column x holding plain solid tiles: ground, rock and pipes, but no
+     * bricks, question blocks or coins
+     */
+    public int getSolid(int x)
+    {
+        return solid[column(x)];
+    }
+
+    /**
+     * @return rows of column x Mario cannot pass in some direction
+     */
+    public int getBlocking(int x)
+    {
+        return blocking[column(x)];
+    }
+
+    /**
+     * @return rows of column x holding question blocks, other bumpable blocks or coins
+     */
+    public int getItems(int x)
+    {
+        return items[column(x)];
+    }
+
+    /**
+     * @return true if column x has no solid tile to stand on
+     */
+    public boolean isGap(int x)
+    {
+        return getSolid(x) == 0;
+    }
+
+    /**
+     * @return topmost row of column x with a solid tile, the height of the ground or of
+     * whatever stands on it, <code>level.height + 1</code> over a gap
+     */
+    public int getTopSolid(int x)
+    {
+        int s = getSolid(x);
+        return s == 0 ? level.height + 1 : Integer.numberOfTrailingZeros(s);
+    }
+
+    /**
+     * @return mask of the rows from y0 to y1 inclusive, cut to the rows of a profile
+     */
+    public int rows(int y0, int y1)
+    {
+        if (y0 < 0) y0 = 0;
+        if (y1 > level.height) y1 = level.height;
+        if (y1 < y0) return 0;
+        return (int) ((1L << (y1 + 1)) - (1L << y0));
+    }
+}
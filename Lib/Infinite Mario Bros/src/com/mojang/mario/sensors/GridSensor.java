@@ -0,0 +1,86 @@
+package com.mojang.mario.sensors;
+
+import com.mojang.mario.LevelScene;
+import com.mojang.mario.TileWindow;
+import com.mojang.mario.level.Level;
+
+/**
+ * A receptive field of tiles centred on the tile Mario stands in, one value per tile, row by
+ * row from the top left: -1 for an enemy, 1 for a tile Mario cannot pass in some direction,
+ * 0.5 for an item or coin, else 0. Read from the scene's {@link TileWindow}.
+ */
+public class GridSensor implements MarioSensor
+{
+    private static final int BLOCKING = Level.BIT_BLOCK_ALL | Level.BIT_BLOCK_UPPER | Level.BIT_BLOCK_LOWER;
+
+    private final int columns;
+    private final int rows;
+
+    /**
+     * @param columns tiles across, odd numbers centre exactly on Mario
+     * @param rows tiles down
+     */
+    public GridSensor(int columns, int rows)
+    {
+        if (columns < 1 || rows < 1) throw new IllegalArgumentException("grid must be at least 1x1: " + columns + "x" + rows);
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    public int getColumns()
+    {
+        return columns;
+    }
+
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * @return column of the top left tile for Mario at pixel x
+     */
+    public int left(float x)
+    {
+        return TileWindow.tileX(x) - columns / 2;
+    }
+
+    /**
+     * @return row of the top left tile for Mario's feet at pixel y
+     */
+    public int top(float y)
+    {
+        return TileWindow.tileY(y) - rows / 2;
+    }
+
+    public int size()
+    {
+        return columns * rows;
+    }
+
+    public int needs()
+    {
+        return NEEDS_TILE_WINDOW;
+    }
+
+    public void sense(LevelScene s, double[] out, int offset)
+    {
+        TileWindow window = s.getTileWindow();
+        int x0 = left(s.mario.x);
+        int y0 = top(s.mario.y);
+        for (int y = y0; y < y0 + rows; y++)
+        {
+            for (int x = x0; x < x0 + columns; x++)
+            {
+                double value = 0;
+                if ((window.getSprites(x, y) & TileWindow.ENEMY) != 0)
+                    value = -1;
+                else if ((window.getBehavior(x, y) & BLOCKING) != 0)
+                    value = 1;
+                else if ((window.getSprites(x, y) & TileWindow.ITEM) != 0 || (window.getBehavior(x, y) & Level.BIT_PICKUPABLE) != 0)
+                    value = 0.5;
+                out[offset++] = value;
+            }
+        }
+    }
+}
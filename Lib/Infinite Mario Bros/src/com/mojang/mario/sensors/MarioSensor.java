@@ -0,0 +1,48 @@
+package com.mojang.mario.sensors;
+
+import com.mojang.mario.LevelScene;
+
+/**
+ * One group of network inputs read from a scene. Sensors are listed in a {@link SensorSchema};
+ * the scene runs only the sensor passes the schema needs and then lets every sensor copy its
+ * values into the observation. Implementations must not allocate in {@link #sense}.
+ */
+public interface MarioSensor
+{
+    /**
+     * The enemy ring fields of the scene must be up to date.
+     */
+    public static final int NEEDS_SPRITE_RINGS = 1;
+
+    /**
+     * The good item, hole, obstacle, empty space and y block fields of the scene must be up to
+     * date. They are read off the scene's {@link com.mojang.mario.level.TerrainProfile}.
+     */
+    public static final int NEEDS_TILE_RINGS = 2;
+
+    /**
+     * The sprite index of the scene must be up to date, see {@link LevelScene#getSpriteGrid()}.
+     */
+    public static final int NEEDS_SPRITE_INDEX = 4;
+
+    /**
+     * The tile window of the scene must cover the grids of the schema, see
+     * {@link LevelScene#getTileWindow()}.
+     */
+    public static final int NEEDS_TILE_WINDOW = 8;
+
+    /**
+     * @return number of values written by {@link #sense}
+     */
+    public int size();
+
+    /**
+     * @return <code>NEEDS_*</code> flags of the passes this sensor reads
+     */
+    public int needs();
+
+    /**
+     * Writes {@link #size()} values to <code>out</code> starting at <code>offset</code>.
+     */
+    public void sense(LevelScene scene, double[] out, int offset);
+}
@@ -0,0 +1,65 @@
+package com.mojang.mario.sensors;
+
+import com.mojang.mario.LevelScene;
+import com.mojang.mario.SpriteGrid;
+import com.mojang.mario.sprites.BulletBill;
+import com.mojang.mario.sprites.Enemy;
+import com.mojang.mario.sprites.Shell;
+import com.mojang.mario.sprites.Sprite;
+
+/**
+ * The enemy closest to Mario within half a screen: 1 if there is one, else 0, followed by its
+ * x and y offset from Mario scaled to -1..1 by half the screen width and height. The offsets are
+ * 0 when there is no enemy in range.
+ */
+public class NearestEnemySensor implements MarioSensor
+{
+    private static final float RANGE_X = 160;
+    private static final float RANGE_Y = 120;
+
+    public int size()
+    {
+        return 3;
+    }
+
+    public int needs()
+    {
+        return NEEDS_SPRITE_INDEX;
+    }
+
+    public void sense(LevelScene s, double[] out, int offset)
+    {
+        SpriteGrid grid = s.getSpriteGrid();
+        float x = s.mario.x;
+        float y = s.mario.y;
+        int found = grid.query(x - RANGE_X, x + RANGE_X);
+        Sprite nearest = null;
+        float nearestDistance = 0;
+        for (int i = 0; i < found; i++)
+        {
+            Sprite sprite = grid.get(i);
+            if (!(sprite instanceof Enemy || sprite instanceof BulletBill || sprite instanceof Shell)) continue;
+            float dx = sprite.x - x;
+            float dy = sprite.y - y;
+            if (dx < -RANGE_X || dx > RANGE_X || dy < -RANGE_Y || dy > RANGE_Y) continue;
+            float distance = dx * dx + dy * dy;
+            if (nearest == null || distance < nearestDistance)
+            {
+                nearest = sprite;
+                nearestDistance = distance;
+            }
+        }
+        if (nearest == null)
+        {
+            out[offset] = 0;
+            out[offset + 1] = 0;
+            out[offset + 2] = 0;
+        }
+        else
+        {
+            out[offset] = 1;
+            out[offset + 1] = (nearest.x - x) / RANGE_X;
+            out[offset + 2] = (nearest.y - y) / RANGE_Y;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.mojang.mario.sensors;
+
+import com.mojang.mario.LevelScene;
+
+/**
+ * The ring sensors of the scene: for enemies, good items, holes or obstacles, one value per ring around
+ * Mario, innermost first, along x (left/right) or y (up/down). Rings are Mario's width or height
+ * apart, so ring n covers n widths. Each value is 0, or 1 or -1 for the side the thing is on.
+ */
+public class RingSensor implements MarioSensor
+{
+    public static final int MAX_RINGS = 5;
+
+    public static final int ENEMY = 0;
+    public static final int HOLE = 1;
+    public static final int OBSTACLE = 2;
+    public static final int ITEM = 3;
+
+    private final int kind;
+    private final boolean upDown;
+    private final int rings;
+
+    /**
+     * @param kind <code>ENEMY</code>, <code>HOLE</code>, <code>OBSTACLE</code> or <code>ITEM</code>
+     * @param upDown true for the up/down rings, false for left/right
+     * @param rings number of rings from the inside, 1 to <code>MAX_RINGS</code>
+     */
+    public RingSensor(int kind, boolean upDown, int rings)
+    {
+        if (kind < ENEMY || kind > ITEM) throw new IllegalArgumentException("unknown ring kind " + kind);
+        if (rings < 1 || rings > MAX_RINGS) throw new IllegalArgumentException("rings must be 1 to " + MAX_RINGS + ": " + rings);
+        this.kind = kind;
+        this.upDown = upDown;
+        this.rings = rings;
+    }
+
+    public int size()
+    {
+        return rings;
+    }
+
+    public int needs()
+    {
+        return kind == ENEMY ? NEEDS_SPRITE_RINGS : NEEDS_TILE_RINGS;
+    }
+
+    public void sense(LevelScene s, double[] out, int offset)
+    {
+        for (int r = 0; r < rings; r++)
+        {
+            out[offset + r] = ring(s, r);
+        }
+    }
+
+    private double ring(LevelScene s, int r)
+    {
+        if (upDown)
+        {
+            switch (kind)
+            {
+            case ENEMY:
+                return pick(r, s.enemyD1UpDown, s.enemyD2UpDown, s.enemyD3UpDown, s.enemyD4UpDown, s.enemyD5UpDown);
+            case HOLE:
+                return pick(r, s.holeD1UpDown, s.holeD2UpDown, s.holeD3UpDown, s.holeD4UpDown, s.holeD5UpDown);
+            case ITEM:
+                return pick(r, s.goodItemD1UpDown, s.goodItemD2UpDown, s.goodItemD3UpDown, s.goodItemD4UpDown, s.goodItemD5UpDown);
+            default:
+                return pick(r, s.obstacleD1UpDown, s.obstacleD2UpDown, s.obstacleD3UpDown, s.obstacleD4UpDown, s.obstacleD5UpDown);
+            }
+        }
+        switch (kind)
+        {
+        case ENEMY:
+            return pick(r, s.enemyD1LeftRight, s.enemyD2LeftRight, s.enemyD3LeftRight, s.enemyD4LeftRight, s.enemyD5LeftRight);
+        case HOLE:
+            return pick(r, s.holeD1LeftRight, s.holeD2LeftRight, s.holeD3LeftRight, s.holeD4LeftRight, s.holeD5LeftRight);
+        case ITEM:
+            return pick(r, s.goodItemD1LeftRight, s.goodItemD2LeftRight, s.goodItemD3LeftRight, s.goodItemD4LeftRight, s.goodItemD5LeftRight);
+        default:
+            return pick(r, s.obstacleD1LeftRight, s.obstacleD2LeftRight, s.obstacleD3LeftRight, s.obstacleD4LeftRight, s.obstacleD5LeftRight);
+        }
+    }
+
+    private static double pick(int r, double d1, double d2, double d3, double d4, double d5)
+    {
+        switch (r)
+        {
+        case 0: return d1;
+        case 1: return d2;
+        case 2: return d3;
+        case 3: return d4;
+        default: return d5;
+        }
+    }
+}
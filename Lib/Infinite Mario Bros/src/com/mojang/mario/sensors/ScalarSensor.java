@@ -0,0 +1,70 @@
+package com.mojang.mario.sensors;
+
+import com.mojang.mario.LevelScene;
+
+/**
+ * Single values about Mario himself and the terrain right around him.
+ */
+public class ScalarSensor implements MarioSensor
+{
+    /**
+     * 1 when Mario stands on ground, else 0
+     */
+    public static final int ON_GROUND = 0;
+
+    /**
+     * Mario's x and y velocity in pixels per tick
+     */
+    public static final int VELOCITY = 1;
+
+    /**
+     * the empty space sensor of the tile pass
+     */
+    public static final int EMPTY_SPACE = 2;
+
+    /**
+     * the y block sensor of the tile pass
+     */
+    public static final int Y_BLOCK = 3;
+
+    private final int kind;
+
+    /**
+     * @param kind one of the constants above
+     */
+    public ScalarSensor(int kind)
+    {
+        if (kind < ON_GROUND || kind > Y_BLOCK) throw new IllegalArgumentException("unknown scalar sensor " + kind);
+        this.kind = kind;
+    }
+
+    public int size()
+    {
+        return kind == VELOCITY ? 2 : 1;
+    }
+
+    public int needs()
+    {
+        return kind == EMPTY_SPACE || kind == Y_BLOCK ? NEEDS_TILE_RINGS : 0;
+    }
+
+    public void sense(LevelScene s, double[] out, int offset)
+    {
+        switch (kind)
+        {
+        case ON_GROUND:
+            out[offset] = s.mario.onGround ? 1.0 : 0;
+            break;
+        case VELOCITY:
+            out[offset] = s.mario.xa;
+            out[offset + 1] = s.mario.ya;
+            break;
+        case EMPTY_SPACE:
+            out[offset] = s.numEmptySpace;
+            break;
+        default:
+            out[offset] = s.yBlockSensor;
+            break;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.mojang.mario.sensors;
+
+import com.mojang.mario.LevelScene;
+
+/**
+ * Ordered list of sensors that makes up the observation of a scene. A schema is written as a
+ * comma separated list of sensor names, ring sensors optionally followed by <code>:rings</code>:
+ * <pre>
+ * enemy.x:4, hole.y:2, onground, velocity, nearest.enemy, grid:11x7
+ * </pre>
+ * Known names are <code>enemy.x</code>, <code>enemy.y</code>, <code>item.x</code>,
+ * <code>item.y</code>, <code>hole.x</code>, <code>hole.y</code>, <code>obstacle.x</code>,
+ * <code>obstacle.y</code> (see {@link RingSensor}, x for left/right, y for up/down, 5 rings if
+ * not given), <code>onground</code>, <code>velocity</code> (2 values), <code>emptyspace</code>,
+ * <code>yblock</code> (see {@link ScalarSensor}), <code>nearest.enemy</code> (3 values, see
+ * {@link NearestEnemySensor}) and <code>grid:COLUMNSxROWS</code> (see {@link GridSensor}).
+ * <p>
+ * Schemas hold no state and can be shared between scenes and threads.
+ */
+public class SensorSchema
+{
+    /**
+     * The original 23 network inputs.
+     */
+    public static final String DEFAULT = "enemy.x:4,hole.x:2,obstacle.x:2,enemy.y:4,hole.y:2,obstacle.y:4,onground,velocity,emptyspace,yblock";
+
+    public static final SensorSchema DEFAULT_SCHEMA = parse(DEFAULT);
+
+    private final String list;
+    private final MarioSensor[] sensors;
+    private final int size;
+    private final int needs;
+    private final GridSensor window;
+
+    private SensorSchema(String list, MarioSensor[] sensors)
+    {
+        this.list = list;
+        this.sensors = sensors;
+        int size = 0;
+        int needs = 0;
+        int columns = 0;
+        int rows = 0;
+        for (int i = 0; i < sensors.length; i++)
+        {
+            size += sensors[i].size();
+            needs |= sensors[i].needs();
+            if (sensors[i] instanceof GridSensor)
+            {
+                columns = Math.max(columns, ((GridSensor) sensors[i]).getColumns());
+                rows = Math.max(rows, ((GridSensor) sensors[i]).getRows());
+            }
+        }
+        this.size = size;
+        this.needs = needs;
+        this.window = columns > 0 ? new GridSensor(columns, rows) : null;
+    }
+
+    /**
+     * @param list comma separated sensor names, see the class comment
+     * @throws IllegalArgumentException if a name or ring count is invalid
+     */
+    public static SensorSchema parse(String list)
+    {
+        String[] names = list.split(",");
+        MarioSensor[] sensors = new MarioSensor[names.length];
+        for (int i = 0; i < names.length; i++)
+        {
+            sensors[i] = create(names[i].trim());
+        }
+        return new SensorSchema(list, sensors);
+    }
+
+    private static MarioSensor create(String name)
+    {
+        if (name.startsWith("grid:"))
+        {
+            String shape = name.substring(5).trim();
+            int x = shape.indexOf('x');
+            try
+            {
+                return new GridSensor(Integer.parseInt(shape.substring(0, x).trim()), Integer.parseInt(shape.substring(x + 1).trim()));
+            }
+            catch (RuntimeException e)
+            {
+                throw new IllegalArgumentException("invalid grid in sensor " + name + ", expected grid:COLUMNSxROWS");
+            }
+        }
+
+        int rings = RingSensor.MAX_RINGS;
+        int colon = name.indexOf(':');
+        if (colon >= 0)
+        {
+            try
+            {
+                rings = Integer.parseInt(name.substring(colon + 1).trim());
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IllegalArgumentException("invalid ring count in sensor " + name);
+            }
+            name = name.substring(0, colon).trim();
+        }
+
+        if (name.equals("enemy.x")) return new RingSensor(RingSensor.ENEMY, false, rings);
+        if (name.equals("enemy.y")) return new RingSensor(RingSensor.ENEMY, true, rings);
+        if (name.equals("hole.x")) return new RingSensor(RingSensor.HOLE, false, rings);
+        if (name.equals("hole.y")) return new RingSensor(RingSensor.HOLE, true, rings);
+        if (name.equals("obstacle.x")) return new RingSensor(RingSensor.OBSTACLE, false, rings);
+        if (name.equals("obstacle.y")) return new RingSensor(RingSensor.OBSTACLE, true, rings);
+        if (name.equals("item.x")) return new RingSensor(RingSensor.ITEM, false, rings);
+        if (name.equals("item.y")) return new RingSensor(RingSensor.ITEM, true, rings);
+        if (colon >= 0) throw new IllegalArgumentException("sensor " + name + " takes no ring count");
+        if (name.equals("onground")) return new ScalarSensor(ScalarSensor.ON_GROUND);
+        if (name.equals("velocity")) return new ScalarSensor(ScalarSensor.VELOCITY);
+        if (name.equals("emptyspace")) return new ScalarSensor(ScalarSensor.EMPTY_SPACE);
+        if (name.equals("yblock")) return new ScalarSensor(ScalarSensor.Y_BLOCK);
+        if (name.equals("nearest.enemy")) return new NearestEnemySensor();
+        throw new IllegalArgumentException("unknown sensor " + name);
+    }
+
+    /**
+     * @return the list this schema was parsed from
+     */
+    public String toString()
+    {
+        return list;
+    }
+
+    /**
+     * @return number of values in an observation
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return <code>MarioSensor.NEEDS_*</code> flags of all sensors
+     */
+    public int needs()
+    {
+        return needs;
+    }
+
+    /**
+     * @return a grid spanning every grid sensor of the schema, null if there is none
+     */
+    public GridSensor getWindow()
+    {
+        return window;
+    }
+
+    /**
+     * Writes the observation of <code>scene</code> to <code>out</code>, which holds at least
+     * {@link #size()} values. The scene must have run the passes in {@link #needs()}.
+     */
+    public void sense(LevelScene scene, double[] out)
+    {
+        int offset = 0;
+        for (int i = 0; i < sensors.length; i++)
+        {
+            sensors[i].sense(scene, out, offset);
+            offset += sensors[i].size();
+        }
+    }
+}
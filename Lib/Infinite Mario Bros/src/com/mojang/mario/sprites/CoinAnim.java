@@ -1,14 +1,18 @@
 package com.mojang.mario.sprites;
 
+import java.util.Random;
+
 import com.mojang.mario.Art;
 
 
 public class CoinAnim extends Sprite
 {
     private int life = 10;
+    private Random random;
 
-    public CoinAnim(int xTile, int yTile)
+    public CoinAnim(int xTile, int yTile, Random random)
     {
+        this.random = random;
         sheet = Art.level;
         wPic = hPic = 16;
 
@@ -24,10 +28,10 @@ public class CoinAnim extends Sprite
     {
         if (life-- < 0)
         {
-            Sprite.spriteContext.removeSprite(this);
+            spriteContext.removeSprite(this);
             for (int xx = 0; xx < 2; xx++)
                 for (int yy = 0; yy < 2; yy++)
-                    Sprite.spriteContext.addSprite(new Sparkle((int)x + xx * 8 + (int) (Math.random() * 8), (int)y + yy * 8 + (int) (Math.random() * 8), 0, 0, 0, 2, 5));
+                    spriteContext.addSprite(new Sparkle((int)x + xx * 8 + (int) (random.nextDouble() * 8), (int)y + yy * 8 + (int) (random.nextDouble() * 8), 0, 0, 0, 2, 5, random));
         }
 
         xPic = life & 3;
@@ -50,7 +50,7 @@ public class Fireball extends Sprite
         {
             for (int i = 0; i < 8; i++)
             {
-                world.addSprite(new Sparkle((int) (x + Math.random() * 8 - 4)+4, (int) (y + Math.random() * 8-4)+2, (float) Math.random() * 2 - 1-facing, (float) Math.random() *2 -1, 0, 1, 5));
+                world.addSprite(new Sparkle((int) (x + world.random.nextDouble() * 8 - 4)+4, (int) (y + world.random.nextDouble() * 8-4)+2, (float) world.random.nextDouble() * 2 - 1-facing, (float) world.random.nextDouble() *2 -1, 0, 1, 5, world.random));
             }
             spriteContext.removeSprite(this);
 
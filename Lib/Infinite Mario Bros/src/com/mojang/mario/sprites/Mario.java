@@ -2,7 +2,6 @@ package com.mojang.mario.sprites;
 
 
 import com.mojang.mario.Art;
-import com.mojang.mario.Scene;
 import com.mojang.mario.level.*;
 import com.mojang.mario.LevelScene;
 import com.mojang.sonar.FixedSoundSource;
@@ -10,20 +9,10 @@ import com.mojang.sonar.FixedSoundSource;
 
 public class Mario extends Sprite
 {
-    public static boolean large = true;
-    public static boolean fire = true;
-    public static int coins = 0;
-    public static int lives = 3;
-    public static String levelString = "none";
-
-    public static void resetStatic()
-    {
-        large = true;
-        fire = true;
-        coins = 0;
-        lives = 3;
-        levelString = "none";
-    }
+    public boolean large = true;
+    public boolean fire = true;
+    public int coins = 0;
+    public int lives = 3;
 
     public static final int KEY_LEFT = 0;
     public static final int KEY_RIGHT = 1;
@@ -61,18 +50,16 @@ public class Mario extends Sprite
     private int invulnerableTime = 0;
 
     public Sprite carried = null;
-    private static Mario instance;
 
     public Mario(LevelScene world)
     {
-        Mario.instance = this;
         this.world = world;
-        keys = Scene.keys;
+        keys = world.keys;
         x = 32;
         y = 0;
 
         facing = 1;
-        setLarge(Mario.large, Mario.fire);
+        setLarge(large, fire);
     }
     
     private boolean lastLarge;
@@ -82,8 +69,8 @@ public class Mario extends Sprite
     
     private void blink(boolean on)
     {
-        Mario.large = on?newLarge:lastLarge;
-        Mario.fire = on?newFire:lastFire;
+        large = on?newLarge:lastLarge;
+        fire = on?newFire:lastFire;
         
         if (large)
         {
@@ -112,14 +99,14 @@ public class Mario extends Sprite
         if (fire) large = true;
         if (!large) fire = false;
         
-        lastLarge = Mario.large;
-        lastFire = Mario.fire;
+        lastLarge = this.large;
+        lastFire = this.fire;
         
-        Mario.large = large;
-        Mario.fire = fire;
+        this.large = large;
+        this.fire = fire;
 
-        newLarge = Mario.large;
-        newFire = Mario.fire;
+        newLarge = this.large;
+        newFire = this.fire;
         
         blink(true);
     }
@@ -264,7 +251,7 @@ public class Mario extends Sprite
             sliding = false;
         }
         
-        if (keys[KEY_SPEED] && canShoot && Mario.fire && world.fireballsOnScreen<2)
+        if (keys[KEY_SPEED] && canShoot && fire && world.fireballsOnScreen<2)
         {
             //world.sound.play(Art.samples[Art.SAMPLE_MARIO_FIREBALL], this, 1, 1, 1);
             world.addSprite(new Fireball(world, x+facing*6, y-20, facing));
@@ -289,7 +276,7 @@ public class Mario extends Sprite
         {
             for (int i = 0; i < 1; i++)
             {
-                world.addSprite(new Sparkle((int) (x + Math.random() * 4 - 2) + facing * 8, (int) (y + Math.random() * 4) - 24, (float) (Math.random() * 2 - 1), (float) Math.random() * 1, 0, 1, 5));
+                world.addSprite(new Sparkle((int) (x + world.random.nextDouble() * 4 - 2) + facing * 8, (int) (y + world.random.nextDouble() * 4) - 24, (float) (world.random.nextDouble() * 2 - 1), (float) world.random.nextDouble() * 1, 0, 1, 5, world.random));
             }
             ya *= 0.5f;
         }
@@ -385,7 +372,7 @@ public class Mario extends Sprite
             {
                 for (int i = 0; i < 3; i++)
                 {
-                    world.addSprite(new Sparkle((int) (x + Math.random() * 8 - 4), (int) (y + Math.random() * 4), (float) (Math.random() * 2 - 1), (float) Math.random() * -1, 0, 1, 5));
+                    world.addSprite(new Sparkle((int) (x + world.random.nextDouble() * 8 - 4), (int) (y + world.random.nextDouble() * 4), (float) (world.random.nextDouble() * 2 - 1), (float) world.random.nextDouble() * -1, 0, 1, 5, world.random));
                 }
             }
         }
@@ -506,12 +493,13 @@ public class Mario extends Sprite
 
         if (((Level.TILE_BEHAVIORS[block & 0xff]) & Level.BIT_PICKUPABLE) > 0)
         {
-            Mario.getCoin();
+            getCoin();
             //world.sound.play(Art.samples[Art.SAMPLE_GET_COIN], new FixedSoundSource(x * 16 + 8, y * 16 + 8), 1, 1, 1);
             world.level.setBlock(x, y, (byte) 0);
+            world.terrain.update(x);
             for (int xx = 0; xx < 2; xx++)
                 for (int yy = 0; yy < 2; yy++)
-                    world.addSprite(new Sparkle(x * 16 + xx * 8 + (int) (Math.random() * 8), y * 16 + yy * 8 + (int) (Math.random() * 8), 0, 0, 0, 2, 5));
+                    world.addSprite(new Sparkle(x * 16 + xx * 8 + (int) (world.random.nextDouble() * 8), y * 16 + yy * 8 + (int) (world.random.nextDouble() * 8), 0, 0, 0, 2, 5, world.random));
         }
 
         if (blocking && ya < 0)
@@ -624,7 +612,7 @@ public class Mario extends Sprite
         }
         else
         {
-            Mario.getCoin();
+            getCoin();
             //world.sound.play(Art.samples[Art.SAMPLE_GET_COIN], this, 1, 1, 1);
         }
     }
@@ -642,7 +630,7 @@ public class Mario extends Sprite
         }
         else
         {
-            Mario.getCoin();
+            getCoin();
             //world.sound.play(Art.samples[Art.SAMPLE_GET_COIN], this, 1, 1, 1);
         }
     }
@@ -698,9 +686,9 @@ public class Mario extends Sprite
         }
     }
 
-    public static void get1Up()
+    public void get1Up()
     {
-        //instance.//world.sound.play(Art.samples[Art.SAMPLE_MARIO_1UP], instance, 1, 1, 1);
+        //world.sound.play(Art.samples[Art.SAMPLE_MARIO_1UP], instance, 1, 1, 1);
         lives++;
         if (lives==99)
         {
@@ -708,7 +696,7 @@ public class Mario extends Sprite
         }
     }
     
-    public static void getCoin()
+    public void getCoin()
     {
         coins++;
         if (coins==100)
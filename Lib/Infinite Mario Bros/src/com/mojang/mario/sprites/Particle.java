@@ -1,14 +1,16 @@
 package com.mojang.mario.sprites;
 
+import java.util.Random;
+
 import com.mojang.mario.Art;
 
 public class Particle extends Sprite
 {
     public int life;
     
-    public Particle(int x, int y, float xa, float ya)
+    public Particle(int x, int y, float xa, float ya, Random random)
     {
-        this(x, y, xa, ya, (int)(Math.random()*2), 0);
+        this(x, y, xa, ya, random.nextInt(2), 0);
     }
 
     public Particle(int x, int y, float xa, float ya, int xPic, int yPic)
@@ -30,7 +32,7 @@ public class Particle extends Sprite
 
     public void move()
     {
-        if (life--<0) Sprite.spriteContext.removeSprite(this);
+        if (life--<0) spriteContext.removeSprite(this);
         x+=xa;
         y+=ya;
         ya*=0.95f;
@@ -1,5 +1,7 @@
 package com.mojang.mario.sprites;
 
+import java.util.Random;
+
 import com.mojang.mario.Art;
 
 public class Sparkle extends Sprite
@@ -7,12 +9,12 @@ public class Sparkle extends Sprite
     public int life;
     public int xPicStart;
     
-    public Sparkle(int x, int y, float xa, float ya)
+    public Sparkle(int x, int y, float xa, float ya, Random random)
     {
-        this(x, y, xa, ya, (int)(Math.random()*2), 0, 5);
+        this(x, y, xa, ya, random.nextInt(2), 0, 5, random);
     }
 
-    public Sparkle(int x, int y, float xa, float ya, int xPic, int yPic, int timeSpan)
+    public Sparkle(int x, int y, float xa, float ya, int xPic, int yPic, int timeSpan, Random random)
     {
         sheet = Art.particles;
         this.x = x;
@@ -27,7 +29,7 @@ public class Sparkle extends Sprite
         
         wPic = 8;
         hPic = 8;
-        life = 10+(int)(Math.random()*timeSpan);
+        life = 10+(int)(random.nextDouble()*timeSpan);
     }
 
     public void move()
@@ -37,7 +39,7 @@ public class Sparkle extends Sprite
         else
             xPic = xPicStart+(10-life)*4/10;
         
-        if (life--<0) Sprite.spriteContext.removeSprite(this);
+        if (life--<0) spriteContext.removeSprite(this);
         
         x+=xa;
         y+=ya;
@@ -8,7 +8,7 @@ import com.mojang.sonar.SoundSource;
 
 public class Sprite implements SoundSource
 {
-    public static SpriteContext spriteContext;
+    public SpriteContext spriteContext;
     
     public float xOld, yOld, x, y, xa, ya;
     
@@ -26,6 +26,10 @@ public class GomokuNeuralNetPlayer implements BoardPlayer {
 
 private Activator activator;
 
+private double[] gomokuInput;
+
+private double[] nnOutput;
+
 /**
  * Construct subject from neural net.
  * 
@@ -33,6 +37,8 @@ private Activator activator;
  */
 public GomokuNeuralNetPlayer( Activator anActivator ) {
 	this.activator = anActivator;
+	gomokuInput = new double[ anActivator.getInputDimension() ];
+	nnOutput = new double[ anActivator.getOutputDimension() ];
 }
 
 /**
@@ -51,15 +57,13 @@ public int move( int[] boardState ) {
 		throw new IllegalArgumentException( "wrong nnet input dimension, board state size = "
 				+ boardState.length + " but nnet input is " + activator.getInputDimension() );
 
-	double[] nnOutput;
 	double[] moveList = new double[ boardState.length ];
-	double[] gomokuInput = new double[ ( boardState.length + 1 ) ];
 
 	for ( int i = 0; i < ( boardState.length - 1 ); ++i )
 		gomokuInput[ i ] = boardState[ i ];
 	gomokuInput[ boardState.length ] = 1.0; //bias
 
-	nnOutput = activator.next( gomokuInput );
+	activator.next( gomokuInput, nnOutput );
 
 	for ( int i = 0; i < boardState.length; ++i )
 		moveList[ i ] = nnOutput[ i ];
@@ -31,10 +31,15 @@ public class GomokuScanningNeuralNetPlayer implements BoardPlayer {
  */
 public GomokuScanningNeuralNetPlayer( Activator anActivator ) {
 	this.activator = anActivator;
+	nnOutput = new double[ 1 ][ anActivator.getOutputDimension() ];
 }
 
 private Activator activator;
 
+private double[][] gomokuInput = new double[ 1 ][ 26 ];
+
+private double[][] nnOutput;
+
 /**
  * @see Player#getPlayerId()
  */
@@ -50,13 +55,11 @@ public String getPlayerId() {
  *  
  */
 public int move( int[] boardState ) {
-	double[][] nnOutput;
 	double[] moveList = new double[ boardState.length ];
 	int boardSize = (int) Math.sqrt( boardState.length );
 	double[][] matrixMoveList = new double[ boardSize ][ boardSize ];
 	int[][] matrixBoardState = new int[ boardSize ][ boardSize ];
 	int boardIdx = 0;
-	double[][] gomokuInput = new double[ 1 ][ 26 ];
 	int x = 0;
 	int y = 0;
 
@@ -90,7 +93,7 @@ public int move( int[] boardState ) {
 				}
 			}
 			gomokuInput[ 0 ][ 25 ] = 1.0; //bias
-			nnOutput = activator.next( gomokuInput );
+			activator.next( gomokuInput, nnOutput );
 			x = rowIdx;
 			y = colIdx;
 			int moveIdx = 0;
@@ -42,12 +42,28 @@ public double[] next();
  */
 public double[] next( double[] stimuli );
 
+/**
+ * Like <code>next(double[])</code>, but writes the output to <code>response</code> and
+ * allocates nothing, for callers activating the network at a high rate.
+ * @param stimuli
+ * @param response receives the output array, at least <code>getOutputDimension()</code> long
+ */
+public void next( double[] stimuli, double[] response );
+
 /**
  * @param stimuli
  * @return double[][] sequence of output arrays given input sequence <code>stimult</code>.
  */
 public double[][] next( double[][] stimuli );
 
+/**
+ * Like <code>next(double[][])</code>, but writes the outputs to <code>responses</code>.
+ * @param stimuli
+ * @param responses receives the sequence of output arrays, one per element of
+ * <code>stimuli</code>
+ */
+public void next( double[][] stimuli, double[][] responses );
+
 /**
  * @return String XML representation of object.
  */
@@ -19,8 +19,14 @@
  */
 package com.anji.integration;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.jgap.Chromosome;
 
+import com.anji.nn.AnjiNet;
+import com.anji.nn.CompiledNet;
+import com.anji.nn.GeneratedNet;
 import com.anji.util.Configurable;
 import com.anji.util.Properties;
 
@@ -47,6 +53,23 @@ public final static String RECURRENT_CYCLES_KEY = "recurrent.cycles";
  */
 public final static String ANJI_TYPE = "anji";
 
+/**
+ * enumerated type constant for ANJI ANN compiled to flat arrays, see
+ * <code>CompiledActivator</code>
+ */
+public final static String COMPILED_TYPE = "compiled";
+
+/**
+ * enumerated type constant for ANJI ANN with step code generated per network, see
+ * <code>GeneratedActivator</code>
+ */
+public final static String GENERATED_TYPE = "generated";
+
+/**
+ * properties key for the number of chromosomes whose generated code is kept for reuse
+ */
+public final static String GENERATED_CACHE_SIZE_KEY = "ann.generated.cache.size";
+
 /**
  * enumerated type constant for JOONE ANN
  */
@@ -58,6 +81,12 @@ private int recurrentCycles;
 
 private AnjiNetTranscriber transcriber;
 
+/**
+ * generated code by chromosome ID, or <code>Boolean.TRUE</code> for chromosomes transcribed once;
+ * least recently used first
+ */
+private Map generated;
+
 /**
  * See <a href=" {@docRoot}/params.htm" target="anji_params">Parameter Details </a> for
  * specific property settings.
@@ -67,6 +96,13 @@ public void init( Properties props ) {
 	type = props.getProperty( TYPE_KEY, ANJI_TYPE );
 	recurrentCycles = props.getIntProperty( RECURRENT_CYCLES_KEY, 1 );
 	transcriber = (AnjiNetTranscriber) props.singletonObjectProperty( AnjiNetTranscriber.class );
+	final int cacheSize = props.getIntProperty( GENERATED_CACHE_SIZE_KEY, 1000 );
+	generated = new LinkedHashMap( 16, 0.75f, true ) {
+
+		protected boolean removeEldestEntry( Map.Entry eldest ) {
+			return size() > cacheSize;
+		}
+	};
 }
 
 	/**
@@ -81,6 +117,25 @@ public Activator newActivator( Chromosome ch ) throws TranscriberException {
 	Activator result = null;
 	if ( ANJI_TYPE.equals( type ) ) {
 		result = new AnjiActivator( transcriber.newAnjiNet( ch ), recurrentCycles );
+	} else if ( COMPILED_TYPE.equals( type ) ) {
+		try {
+			result = new CompiledActivator( transcriber.newAnjiNet( ch ), recurrentCycles );
+		}
+		catch ( IllegalArgumentException e ) {
+			throw new TranscriberException( "can not compile network: " + e.getMessage(), e );
+		}
+	} else if ( GENERATED_TYPE.equals( type ) ) {
+		AnjiNet net = transcriber.newAnjiNet( ch );
+		try {
+			GeneratedNet code = generatedNet( ch, net );
+			if ( code == null )
+				result = new CompiledActivator( net, recurrentCycles );
+			else
+				result = new GeneratedActivator( net, code, recurrentCycles );
+		}
+		catch ( IllegalArgumentException e ) {
+			throw new TranscriberException( "can not generate network: " + e.getMessage(), e );
+		}
 	} else if ( JOONE_TYPE.equals( type ) ) {
 		throw new TranscriberException( "JOONE not implemented" );
 	} else
@@ -89,6 +144,55 @@ public Activator newActivator( Chromosome ch ) throws TranscriberException {
 	return result;
 }
 
+/**
+ * Code is only generated for chromosomes transcribed before, i.e. elites carried over from an
+ * earlier generation or champions activated again; it would not pay off for offspring evaluated
+ * once. Generated code is looked up by chromosome ID, so the next generation reuses the classes
+ * of its elites, already compiled by the JIT. A chromosome's material never changes, so neither
+ * does its code.
+ * 
+ * @param ch
+ * @param net network of <code>ch</code>
+ * @return generated code of <code>ch</code>, or null if it is transcribed for the first time
+ * @throws IllegalArgumentException if <code>net</code> can not be compiled or is too large
+ */
+private GeneratedNet generatedNet( Chromosome ch, AnjiNet net ) throws IllegalArgumentException {
+	Object cached;
+	synchronized ( generated ) {
+		cached = generated.get( ch.getId() );
+		if ( cached == null )
+			generated.put( ch.getId(), Boolean.TRUE );
+	}
+	if ( cached == null )
+		return null;
+	if ( cached instanceof GeneratedNet )
+		return (GeneratedNet) cached;
+	GeneratedNet result = GeneratedNet.newInstance( new CompiledNet( net ) );
+	synchronized ( generated ) {
+		generated.put( ch.getId(), result );
+	}
+	return result;
+}
+
+/**
+ * Constructs a <code>BatchActivator</code> that activates the network of <code>ch</code> for
+ * <code>rows</code> episodes at once, each with its own recurrent state.
+ * 
+ * @param ch <code>Chromosome</code> from which the network will be built
+ * @param rows number of episodes activated together
+ * @return batch activator built from <code>Chromosome</code> genotype
+ * @throws TranscriberException
+ */
+public BatchActivator newBatchActivator( Chromosome ch, int rows ) throws TranscriberException {
+	try {
+		return new BatchActivator( new CompiledNet( transcriber.newAnjiNet( ch ) ), recurrentCycles,
+				rows );
+	}
+	catch ( IllegalArgumentException e ) {
+		throw new TranscriberException( "can not compile network: " + e.getMessage(), e );
+	}
+}
+
 /**
  * @see com.anji.integration.Transcriber#getPhenotypeClass()
  */
@@ -84,6 +84,21 @@ public double[] next() {
  * @return result of activation
  */
 public double[] next( double[] newInputValues ) {
+	double[] result = new double[ outputDimension ];
+	next( newInputValues, result );
+	return result;
+}
+
+/**
+ * Like <code>next(double[])</code>, but writes the result to <code>result</code> so callers
+ * activating the network every game tick can reuse one array.
+ * 
+ * @param newInputValues input activation pattern to be "shown" to network; if null, uses
+ * previous values
+ * @param result receives the output activation, at least <code>getOutputDimension()</code>
+ * long
+ */
+public void next( double[] newInputValues, double[] result ) {
 	if ( newInputValues != null )
 		inputPattern.setValues( newInputValues );
 
@@ -99,14 +114,11 @@ public double[] next( double[] newInputValues ) {
 
 	// last step, get results
 	net.step();
-	double[] result = new double[ outputDimension ];
 	for ( int idx = 0; idx < outputDimension; ++idx ) {
 		Neuron n = net.getOutputNeuron( idx );
 		result[ idx ] = n.getValue();
 	}
 	net.fullyActivate();
-
-	return result;
 }
 
 /**
@@ -115,13 +127,23 @@ public double[] next( double[] newInputValues ) {
  * @see AnjiActivator#next(double[])
  */
 public double[][] next( double[][] newInputValues ) {
-	double[][] result = new double[ newInputValues.length ][];
-	for ( int i = 0; i < newInputValues.length; ++i ) {
-		result[ i ] = next( newInputValues[ i ] );
-	}
+	double[][] result = new double[ newInputValues.length ][ getOutputDimension() ];
+	next( newInputValues, result );
 	return result;
 }
 
+/**
+ * Like <code>next(double[][])</code>, but writes the result to <code>result</code>.
+ * 
+ * @param newInputValues input pattern sequence
+ * @param result receives the output pattern sequence, one array per input pattern
+ * @see AnjiActivator#next(double[], double[])
+ */
+public void next( double[][] newInputValues, double[][] result ) {
+	for ( int i = 0; i < newInputValues.length; ++i )
+		next( newInputValues[ i ], result[ i ] );
+}
+
 /**
  * @param array glue between double arrays and neuron connections.
  */
@@ -58,6 +58,12 @@ public class AnjiNetTranscriber implements Transcriber, Configurable {
 
 private final static Logger logger = Logger.getLogger( AnjiNetTranscriber.class );
 
+/**
+ * properties key for the max error of the <code>fast-sigmoid</code> and <code>fast-tanh</code>
+ * activation functions
+ */
+public final static String FAST_ACTIVATION_MAX_ERROR_KEY = "ann.activation.fast.max.error";
+
 private RecurrencyPolicy recurrencyPolicy = RecurrencyPolicy.BEST_GUESS;
 
 /**
@@ -80,6 +86,9 @@ public AnjiNetTranscriber( RecurrencyPolicy aPolicy ) {
  */
 public void init( Properties props ) {
 	recurrencyPolicy = RecurrencyPolicy.load( props );
+	ActivationFunctionFactory.getInstance().setFastMaxError(
+			props.getDoubleProperty( FAST_ACTIVATION_MAX_ERROR_KEY,
+					ActivationFunctionFactory.DEFAULT_FAST_MAX_ERROR ) );
 }
 
 /**
@@ -0,0 +1,125 @@
+package com.anji.integration;
+
+import com.anji.nn.BatchNet;
+import com.anji.nn.CompiledNet;
+
+/**
+ * Activates one network for several episodes in lockstep, e.g. the levels of one genome. Row
+ * <code>r</code> of every batch belongs to episode <code>r</code> and has its own recurrent
+ * state, so each row responds exactly as a separate <code>AnjiActivator</code> fed only that
+ * row's stimuli would. This is unlike <code>Activator.next(double[][])</code>, which treats
+ * the rows as a sequence shown to a single network.
+ */
+public class BatchActivator {
+
+private BatchNet net;
+
+private int numCycles = 1;
+
+/**
+ * @param aNet compiled network
+ * @param aNumCycles number of times each input pattern is "shown" to the network before a
+ * result is returned, as for <code>AnjiActivator</code>
+ * @param rows number of episodes activated together
+ * @throws IllegalArgumentException
+ */
+public BatchActivator( CompiledNet aNet, int aNumCycles, int rows ) throws IllegalArgumentException {
+	if ( aNumCycles < 1 )
+		throw new IllegalArgumentException( "numCycles must be >= 1" );
+	numCycles = aNumCycles;
+	net = new BatchNet( aNet, rows );
+}
+
+/**
+ * @param stimuli one input pattern per row, <code>getRows()</code> long; a null row keeps
+ * the row's previous input
+ * @param responses receives one output pattern per row; null rows are skipped
+ */
+public void next( double[][] stimuli, double[][] responses ) {
+	for ( int r = 0; r < net.getRows(); ++r )
+		if ( stimuli[ r ] != null )
+			net.setInputs( r, stimuli[ r ] );
+	for ( int cycle = 0; cycle < numCycles; ++cycle )
+		net.step();
+	for ( int r = 0; r < net.getRows(); ++r )
+		if ( responses[ r ] != null )
+			net.getOutputs( r, responses[ r ] );
+}
+
+/**
+ * @param stimuli one input pattern per row
+ * @return one output pattern per row
+ * @see #next(double[][], double[][])
+ */
+public double[][] next( double[][] stimuli ) {
+	double[][] result = new double[ net.getRows() ][ getOutputDimension() ];
+	next( stimuli, result );
+	return result;
+}
+
+/**
+ * clear the memory of every row
+ */
+public void reset() {
+	net.reset();
+}
+
+/**
+ * clear the memory of one row, so it can start a new episode while the others go on
+ *
+ * @param row
+ */
+public void reset( int row ) {
+	net.reset( row );
+}
+
+/**
+ * @return number of episodes activated together
+ */
+public int getRows() {
+	return net.getRows();
+}
+
+/**
+ * @return dimension of each input pattern
+ */
+public int getInputDimension() {
+	return net.getNet().getInputDimension();
+}
+
+/**
+ * @return dimension of each output pattern
+ */
+public int getOutputDimension() {
+	return net.getNet().getOutputDimension();
+}
+
+/**
+ * @return min response
+ */
+public double getMinResponse() {
+	return net.getNet().getMinResponse();
+}
+
+/**
+ * @return max response
+ */
+public double getMaxResponse() {
+	return net.getNet().getMaxResponse();
+}
+
+/**
+ * @return name of the network
+ */
+public String getName() {
+	return net.getNet().getName();
+}
+
+/**
+ * @see java.lang.Object#toString()
+ */
+public String toString() {
+	return getName();
+}
+
+}
@@ -0,0 +1,101 @@
+package com.anji.integration;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.jgap.Allele;
+import org.jgap.Chromosome;
+import org.jgap.ChromosomeMaterial;
+
+import com.anji.neat.ConnectionAllele;
+import com.anji.neat.ConnectionGene;
+import com.anji.neat.NeuronAllele;
+import com.anji.neat.NeuronGene;
+import com.anji.neat.NeuronType;
+import com.anji.nn.ActivationFunctionType;
+
+/**
+ * Compact binary form of a NEAT <code>Chromosome</code>, used to ship genomes to remote
+ * evaluation workers. Only what <code>ActivatorTranscriber</code> needs is written: the id,
+ * each neuron's innovation id, type and activation function, and each connection's innovation
+ * id, endpoints and weight. Fitness and species are not part of the encoding.
+ */
+public class ChromosomeCodec {
+
+private ChromosomeCodec() {
+	// static only
+}
+
+/**
+ * @param chrom chromosome containing only <code>NeuronAllele</code> and
+ * <code>ConnectionAllele</code> objects
+ * @param out destination
+ * @throws IOException
+ */
+public static void write( Chromosome chrom, DataOutput out ) throws IOException {
+	List neurons = new ArrayList();
+	List connections = new ArrayList();
+	Iterator it = chrom.getAlleles().iterator();
+	while ( it.hasNext() ) {
+		Allele allele = (Allele) it.next();
+		if ( allele instanceof NeuronAllele )
+			neurons.add( allele );
+		else if ( allele instanceof ConnectionAllele )
+			connections.add( allele );
+		else
+			throw new IllegalArgumentException( "unexpected allele " + allele );
+	}
+
+	out.writeLong( chrom.getId().longValue() );
+	out.writeInt( neurons.size() );
+	it = neurons.iterator();
+	while ( it.hasNext() ) {
+		NeuronAllele neuron = (NeuronAllele) it.next();
+		out.writeLong( neuron.getInnovationId().longValue() );
+		out.writeUTF( neuron.getType().toString() );
+		out.writeUTF( neuron.getActivationType().toString() );
+	}
+	out.writeInt( connections.size() );
+	it = connections.iterator();
+	while ( it.hasNext() ) {
+		ConnectionAllele connection = (ConnectionAllele) it.next();
+		out.writeLong( connection.getInnovationId().longValue() );
+		out.writeLong( connection.getSrcNeuronId().longValue() );
+		out.writeLong( connection.getDestNeuronId().longValue() );
+		out.writeDouble( connection.getWeight() );
+	}
+}
+
+/**
+ * @param in source positioned at a chromosome written by <code>write()</code>
+ * @return chromosome with the same id, neurons and connections
+ * @throws IOException
+ */
+public static Chromosome read( DataInput in ) throws IOException {
+	Long id = new Long( in.readLong() );
+	int neuronCount = in.readInt();
+	List alleles = new ArrayList( neuronCount );
+	for ( int i = 0; i < neuronCount; ++i ) {
+		Long innovationId = new Long( in.readLong() );
+		NeuronType type = NeuronType.valueOf( in.readUTF() );
+		ActivationFunctionType activation = ActivationFunctionType.valueOf( in.readUTF() );
+		alleles.add( new NeuronAllele( new NeuronGene( type, innovationId, activation ) ) );
+	}
+	int connectionCount = in.readInt();
+	for ( int i = 0; i < connectionCount; ++i ) {
+		Long innovationId = new Long( in.readLong() );
+		Long srcId = new Long( in.readLong() );
+		Long destId = new Long( in.readLong() );
+		ConnectionAllele connection = new ConnectionAllele( new ConnectionGene( innovationId,
+				srcId, destId ) );
+		connection.setWeight( in.readDouble() );
+		alleles.add( connection );
+	}
+	return new Chromosome( new ChromosomeMaterial( alleles ), id );
+}
+
+}
@@ -0,0 +1,228 @@
+package com.anji.integration;
+
+import java.util.Arrays;
+
+import com.anji.nn.ActivationFunction;
+import com.anji.nn.AnjiNet;
+import com.anji.nn.CompiledNet;
+
+/**
+ * Activator over a <code>CompiledNet</code>: neuron values live in one <code>double[]</code>
+ * and a step is a loop over the compiled connection arrays, with no <code>Neuron</code> or
+ * <code>Connection</code> objects involved. Responses are bit for bit those of an
+ * <code>AnjiActivator</code> on the same network. Selected with <code>ann.type=compiled</code>.
+ */
+public class CompiledActivator implements Activator {
+
+private AnjiNet source;
+
+private CompiledNet net;
+
+private int numCycles = 1;
+
+private double[] values;
+
+private boolean[] computed;
+
+private boolean reset;
+
+/**
+ * @param aNet ANN to compile; it is not activated, only kept for <code>toXml()</code>
+ * @param aNumCycles number of times input pattern is "shown" to network before a result is
+ * returned; this allows for recurrent connections to take effect
+ * @throws IllegalArgumentException if <code>aNet</code> can not be compiled
+ */
+public CompiledActivator( AnjiNet aNet, int aNumCycles ) throws IllegalArgumentException {
+	super();
+	setNumCycles( aNumCycles );
+	source = aNet;
+	net = new CompiledNet( aNet );
+	values = new double[ net.getSlotCount() ];
+	values[ net.getBiasSlot() ] = 1;
+	computed = new boolean[ net.getNeuronCount() ];
+	reset();
+}
+
+/**
+ * @return next output pattern
+ * @see CompiledActivator#next(double[])
+ */
+public double[] next() {
+	return next( (double[]) null );
+}
+
+/**
+ * @param newInputValues input activation pattern to be "shown" to network; if null, uses
+ * previous values
+ * @return result of activation
+ */
+public double[] next( double[] newInputValues ) {
+	double[] result = new double[ net.getOutputDimension() ];
+	next( newInputValues, result );
+	return result;
+}
+
+/**
+ * Like <code>next(double[])</code>, but writes the result to <code>result</code>.
+ *
+ * @param newInputValues input activation pattern to be "shown" to network; if null, uses
+ * previous values
+ * @param result receives the output activation, at least <code>getOutputDimension()</code>
+ * long
+ * @throws IllegalArgumentException if <code>newInputValues</code> has the wrong dimension
+ */
+public void next( double[] newInputValues, double[] result ) throws IllegalArgumentException {
+	if ( newInputValues != null ) {
+		if ( newInputValues.length != net.getInputDimension() )
+			throw new IllegalArgumentException( "can not change array dimension" );
+		System.arraycopy( newInputValues, 0, values, net.getInputBase(), newInputValues.length );
+	}
+	for ( int cycle = 0; cycle < numCycles; ++cycle )
+		step();
+	int[] outputSlots = net.getOutputSlots();
+	for ( int idx = 0; idx < outputSlots.length; ++idx )
+		result[ idx ] = values[ outputSlots[ idx ] ];
+}
+
+private void step() {
+	if ( reset ) {
+		net.firstStep( values, computed );
+		reset = false;
+	}
+	else {
+		int[] recurrentSrc = net.getRecurrentSrc();
+		double[] recurrentWeight = net.getRecurrentWeight();
+		int base = net.getRecurrentBase();
+		for ( int i = 0; i < recurrentSrc.length; ++i )
+			values[ base + i ] = CompiledNet.clamp( recurrentWeight[ i ] * values[ recurrentSrc[ i ] ] );
+	}
+
+	ActivationFunction[] funcs = net.getFuncs();
+	int[] connStart = net.getConnStart();
+	int[] connSrc = net.getConnSrc();
+	double[] connWeight = net.getConnWeight();
+	int k = 0;
+	for ( int n = 0; n < funcs.length; ++n ) {
+		double sum = 0;
+		for ( int end = connStart[ n + 1 ]; k < end; ++k )
+			sum += connWeight[ k ] * values[ connSrc[ k ] ];
+		values[ n ] = CompiledNet.clamp( funcs[ n ].apply( sum ) );
+	}
+}
+
+/**
+ * @param newInputValues input pattern sequence
+ * @return next output pattern sequence
+ * @see CompiledActivator#next(double[])
+ */
+public double[][] next( double[][] newInputValues ) {
+	double[][] result = new double[ newInputValues.length ][ getOutputDimension() ];
+	next( newInputValues, result );
+	return result;
+}
+
+/**
+ * Like <code>next(double[][])</code>, but writes the result to <code>result</code>.
+ * 
+ * @param newInputValues input pattern sequence
+ * @param result receives the output pattern sequence, one array per input pattern
+ * @see CompiledActivator#next(double[], double[])
+ */
+public void next( double[][] newInputValues, double[][] result ) {
+	for ( int i = 0; i < newInputValues.length; ++i )
+		next( newInputValues[ i ], result[ i ] );
+}
+
+/**
+ * clear all memory in network, including neurons and recurrent connections
+ */
+public void reset() {
+	Arrays.fill( values, 0, net.getInputBase(), 0 );
+	Arrays.fill( values, net.getRecurrentBase(), net.getBiasSlot(), 0 );
+	reset = true;
+}
+
+/**
+ * @see java.lang.Object#toString()
+ */
+public String toString() {
+	return net.getName();
+}
+
+/**
+ * @return XML of the network the activator was compiled from; neuron values are not those of
+ * this activator
+ * @see com.anji.integration.Activator#toXml()
+ */
+public String toXml() {
+	return source.toXml();
+}
+
+/**
+ * @see com.anji.integration.Activator#getName()
+ */
+public String getName() {
+	return net.getName();
+}
+
+/**
+ * @param aNumCycles number of times input pattern is "shown" to network before a result is
+ * returned; this allows for recurrent connections to take effect
+ * @throws IllegalArgumentException
+ */
+public void setNumCycles( int aNumCycles ) throws IllegalArgumentException {
+	if ( aNumCycles < 1 )
+		throw new IllegalArgumentException( "numCycles must be >= 1" );
+	numCycles = aNumCycles;
+}
+
+/**
+ * @return dimension of input pattern
+ */
+public int getInputDimension() {
+	return net.getInputDimension();
+}
+
+/**
+ * @return dimension of output pattern
+ */
+public int getOutputDimension() {
+	return net.getOutputDimension();
+}
+
+/**
+ * @return true if network contains any recurrent connections, false otherwise
+ */
+public boolean isRecurrent() {
+	return net.isRecurrent();
+}
+
+/**
+ * @return min response
+ */
+public double getMinResponse() {
+	return net.getMinResponse();
+}
+
+/**
+ * @return max responses
+ */
+public double getMaxResponse() {
+	return net.getMaxResponse();
+}
+
+/**
+ * @see com.anji.util.XmlPersistable#getXmlRootTag()
+ */
+public String getXmlRootTag() {
+	return "network";
+}
+
+/**
+ * @see com.anji.util.XmlPersistable#getXmld()
+ */
+public String getXmld() {
+	return net.getName();
+}
+
+}
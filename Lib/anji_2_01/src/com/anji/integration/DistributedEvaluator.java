@@ -0,0 +1,429 @@
+package com.anji.integration;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import org.apache.log4j.Logger;
+
+import com.anji.util.Properties;
+
+/**
+ * Coordinator side of distributed evaluation. <code>EpisodeWorker</code> processes, local or
+ * remote, connect to a server socket, receive the run's properties and pull <code>EvalThreadTask</code> jobs one at a time, so
+ * faster workers take more of the generation. Once nothing is left to hand out, idle workers take
+ * a backup copy of a job still running elsewhere and the first result wins; this keeps a slow or
+ * stalled worker from holding up the generation barrier.
+ * <p>
+ * A worker that does not answer within the timeout, or whose connection fails, is dropped and
+ * its job handed to the next worker. A job that failed more than the configured number of
+ * retries, or any job while no worker is connected, runs on the local executor instead.
+ */
+public class DistributedEvaluator {
+
+private static Logger logger = Logger.getLogger( DistributedEvaluator.class );
+
+/**
+ * first int a worker sends after connecting
+ */
+public final static int MAGIC = 0x4d415249;
+
+/**
+ * request code preceding a job
+ */
+public final static byte JOB = 1;
+
+/**
+ * largest configuration or result, in bytes, either side accepts from the other
+ */
+public final static int MAX_MESSAGE_LENGTH = 1 << 24;
+
+/**
+ * maximum number of workers running the same job at once
+ */
+private final static int MAX_COPIES = 2;
+
+private static class Job {
+
+private int id;
+
+private EvalThreadTask task;
+
+private int attempts = 0;
+
+private int inFlight = 0;
+
+private boolean local = false;
+
+private boolean done = false;
+
+private Job( int anId, EvalThreadTask aTask ) {
+	id = anId;
+	task = aTask;
+}
+}
+
+private ServerSocket server;
+
+private byte[] config;
+
+private int timeoutMillis;
+
+private int retries;
+
+private int workers = 0;
+
+private Job[] jobs = new Job[ 0 ];
+
+private LinkedList pending = new LinkedList();
+
+private int remaining = 0;
+
+private int nextId = 0;
+
+private Throwable failure;
+
+private Executor localExecutor;
+
+private boolean closed = false;
+
+private List processes = new ArrayList();
+
+/**
+ * Listens for workers on <code>port</code>.
+ * 
+ * @param props configuration sent to every worker
+ * @param port server port, 0 for any free port
+ * @param aTimeoutMillis time a worker may take to return a job before it is considered dead
+ * @param aRetries number of times a job is handed to another worker before it runs locally
+ * @throws IOException if the port can not be bound
+ */
+public DistributedEvaluator( Properties props, int port, int aTimeoutMillis, int aRetries )
+		throws IOException {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	props.store( bytes, null );
+	config = bytes.toByteArray();
+	timeoutMillis = aTimeoutMillis;
+	retries = aRetries;
+	server = new ServerSocket( port );
+	Thread acceptor = new Thread( new Runnable() {
+
+		public void run() {
+			accept();
+		}
+	}, "Mario Coordinator" );
+	acceptor.setDaemon( true );
+	acceptor.start();
+	logger.info( "waiting for episode workers on port " + getPort() );
+}
+
+/**
+ * @return port workers connect to
+ */
+public int getPort() {
+	return server.getLocalPort();
+}
+
+/**
+ * @return number of connected workers
+ */
+public synchronized int getWorkerCount() {
+	return workers;
+}
+
+/**
+ * Starts <code>count</code> worker JVMs on this machine with the same class path.
+ * 
+ * @param count number of worker processes
+ * @throws IOException if a process can not be started
+ */
+public void startLocalWorkers( int count ) throws IOException {
+	String java = System.getProperty( "java.home" ) + File.separator + "bin" + File.separator
+			+ "java";
+	for ( int i = 0; i < count; ++i ) {
+		ProcessBuilder builder = new ProcessBuilder( new String[] { java, "-cp",
+				System.getProperty( "java.class.path" ), EpisodeWorker.class.getName(),
+				"localhost", String.valueOf( getPort() ) } );
+		builder.inheritIO();
+		synchronized ( processes ) {
+			processes.add( builder.start() );
+		}
+	}
+}
+
+/**
+ * Evaluates all <code>tasks</code> on the connected workers and returns once each has a
+ * result. Waits up to the timeout for a first worker before falling back to
+ * <code>local</code>.
+ * 
+ * @param tasks <code>EvalThreadTask</code> objects
+ * @param local runs jobs no worker could finish
+ * @throws InterruptedException
+ * @throws ExecutionException wrapping the first failure of a local job
+ */
+public synchronized void evaluate( List tasks, Executor local ) throws InterruptedException,
+		ExecutionException {
+	localExecutor = local;
+	failure = null;
+	jobs = new Job[ tasks.size() ];
+	Iterator it = tasks.iterator();
+	for ( int i = 0; it.hasNext(); ++i ) {
+		jobs[ i ] = new Job( nextId++, (EvalThreadTask) it.next() );
+		pending.add( jobs[ i ] );
+	}
+	remaining = jobs.length;
+	notifyAll();
+
+	try {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while ( remaining > 0 && failure == null ) {
+			long wait = 0;
+			if ( workers == 0 && !pending.isEmpty() ) {
+				wait = deadline - System.currentTimeMillis();
+				if ( wait <= 0 ) {
+					logger.warn( "no episode workers, evaluating " + pending.size() + " genomes locally" );
+					while ( !pending.isEmpty() )
+						runLocally( (Job) pending.removeFirst() );
+					wait = 0;
+				}
+			}
+			wait( wait );
+		}
+		if ( failure != null )
+			throw new ExecutionException( failure );
+	}
+	finally {
+		pending.clear();
+		for ( int i = 0; i < jobs.length; ++i )
+			jobs[ i ].done = true;
+		jobs = new Job[ 0 ];
+	}
+}
+
+/**
+ * Stops accepting workers, disconnects them and stops the worker processes started by
+ * <code>startLocalWorkers()</code>.
+ */
+public void close() {
+	synchronized ( this ) {
+		closed = true;
+		notifyAll();
+	}
+	try {
+		server.close();
+	}
+	catch ( IOException e ) {
+		logger.warn( "error closing coordinator socket: " + e.getMessage() );
+	}
+	synchronized ( processes ) {
+		Iterator it = processes.iterator();
+		while ( it.hasNext() )
+			( (Process) it.next() ).destroy();
+		processes.clear();
+	}
+}
+
+private void accept() {
+	while ( !server.isClosed() ) {
+		try {
+			final Socket socket = server.accept();
+			Thread handler = new Thread( new Runnable() {
+
+				public void run() {
+					serve( socket );
+				}
+			}, "Mario Worker " + socket.getRemoteSocketAddress() );
+			handler.setDaemon( true );
+			handler.start();
+		}
+		catch ( IOException e ) {
+			if ( !server.isClosed() )
+				logger.warn( "error accepting worker: " + e.getMessage() );
+		}
+	}
+}
+
+/**
+ * Feeds jobs to one worker until it fails or the coordinator is closed.
+ */
+private void serve( Socket socket ) {
+	DataInputStream in;
+	DataOutputStream out;
+	try {
+		socket.setTcpNoDelay( true );
+		socket.setSoTimeout( timeoutMillis );
+		in = new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+		out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+		if ( in.readInt() != MAGIC )
+			throw new IOException( "not an episode worker" );
+		out.writeInt( config.length );
+		out.write( config );
+		out.flush();
+	}
+	catch ( IOException e ) {
+		logger.warn( "rejected worker " + socket.getRemoteSocketAddress() + ": " + e.getMessage() );
+		close( socket );
+		return;
+	}
+
+	workerJoined( socket );
+	Job job = null;
+	try {
+		while ( ( job = takeJob() ) != null ) {
+			out.writeByte( JOB );
+			out.writeInt( job.id );
+			job.task.writeJob( out );
+			out.flush();
+
+			int id = in.readInt();
+			byte[] result = readMessage( in );
+			if ( id != job.id )
+				throw new IOException( "result for job " + id + ", expected " + job.id );
+			complete( job, result );
+			job = null;
+		}
+	}
+	catch ( IOException e ) {
+		logger.warn( "lost worker " + socket.getRemoteSocketAddress() + ": " + e );
+	}
+	catch ( InterruptedException e ) {
+		// closing
+	}
+	finally {
+		workerLeft( job );
+		close( socket );
+	}
+}
+
+/**
+ * Reads a length prefixed message as written by the other side of the connection.
+ * 
+ * @param in source positioned at the length
+ * @return message bytes
+ * @throws IOException if the length is negative or larger than <code>MAX_MESSAGE_LENGTH</code>
+ */
+public static byte[] readMessage( DataInput in ) throws IOException {
+	int length = in.readInt();
+	if ( length < 0 || length > MAX_MESSAGE_LENGTH )
+		throw new IOException( "invalid message length " + length );
+	byte[] result = new byte[ length ];
+	in.readFully( result );
+	return result;
+}
+
+private static void close( Socket socket ) {
+	try {
+		socket.close();
+	}
+	catch ( IOException e ) {
+		// already gone
+	}
+}
+
+private synchronized void workerJoined( Socket socket ) {
+	workers++;
+	logger.info( "episode worker " + socket.getRemoteSocketAddress() + " connected, " + workers
+			+ " total" );
+	notifyAll();
+}
+
+/**
+ * @param job job the worker was running, null if none
+ */
+private synchronized void workerLeft( Job job ) {
+	workers--;
+	if ( job != null ) {
+		job.inFlight--;
+		if ( !job.done && job.inFlight == 0 ) {
+			job.attempts++;
+			if ( job.attempts > retries )
+				runLocally( job );
+			else
+				pending.addFirst( job );
+		}
+	}
+	notifyAll();
+}
+
+/**
+ * @return next pending job, else a backup copy of the running job with the fewest copies, or
+ * null once closed
+ * @throws InterruptedException
+ */
+private synchronized Job takeJob() throws InterruptedException {
+	while ( !closed ) {
+		if ( !pending.isEmpty() ) {
+			Job job = (Job) pending.removeFirst();
+			job.inFlight++;
+			return job;
+		}
+		Job backup = null;
+		for ( int i = 0; i < jobs.length; ++i ) {
+			Job job = jobs[ i ];
+			if ( !job.done && !job.local && job.inFlight > 0 && job.inFlight < MAX_COPIES
+					&& ( backup == null || job.inFlight < backup.inFlight ) )
+				backup = job;
+		}
+		if ( backup != null ) {
+			backup.inFlight++;
+			return backup;
+		}
+		wait();
+	}
+	return null;
+}
+
+/**
+ * Applies <code>result</code> unless another copy of <code>job</code> finished first.
+ * @throws IOException if the result is malformed
+ */
+private synchronized void complete( Job job, byte[] result ) throws IOException {
+	if ( !job.done ) {
+		job.task.readResult( new DataInputStream( new ByteArrayInputStream( result ) ) );
+		job.done = true;
+		remaining--;
+	}
+	job.inFlight--;
+	notifyAll();
+}
+
+private void runLocally( final Job job ) {
+	job.local = true;
+	localExecutor.execute( new Runnable() {
+
+		public void run() {
+			Throwable th = null;
+			try {
+				job.task.run();
+			}
+			catch ( Throwable e ) {
+				th = e;
+			}
+			synchronized ( DistributedEvaluator.this ) {
+				if ( th != null && failure == null )
+					failure = th;
+				if ( !job.done ) {
+					job.done = true;
+					remaining--;
+				}
+				DistributedEvaluator.this.notifyAll();
+			}
+		}
+	} );
+}
+
+}
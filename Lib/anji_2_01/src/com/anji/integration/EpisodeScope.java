@@ -0,0 +1,104 @@
+package com.anji.integration;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs every forked episode on its own thread and joins them as a group. If one episode fails
+ * with an unexpected exception the others are cancelled and <code>join()</code> rethrows the
+ * failure; expected per-genome errors such as <code>TranscriberException</code> are handled
+ * inside the task and never reach the scope. A scope is used once: fork, then join.
+ * <p>
+ * Episodes run on virtual threads when the JVM provides them, otherwise on one platform
+ * thread per episode.
+ */
+public class EpisodeScope {
+
+private ExecutorService executor;
+
+private CompletionService completion;
+
+private List futures = new ArrayList();
+
+/**
+ * Creates a scope with its own executor.
+ */
+public EpisodeScope() {
+	executor = newThreadPerTaskExecutor();
+	completion = new ExecutorCompletionService( executor );
+}
+
+private static ExecutorService newThreadPerTaskExecutor() {
+	try {
+		Method factory = Executors.class.getMethod( "newVirtualThreadPerTaskExecutor", new Class[ 0 ] );
+		return (ExecutorService) factory.invoke( null, new Object[ 0 ] );
+	}
+	catch ( Exception e ) {
+		return Executors.newCachedThreadPool( new ThreadFactory() {
+
+			private int count = 0;
+
+			public synchronized Thread newThread( Runnable r ) {
+				Thread t = new Thread( r, "Mario Episode " + count++ );
+				t.setDaemon( true );
+				return t;
+			}
+		} );
+	}
+}
+
+/**
+ * Starts <code>task</code> on a new thread.
+ *
+ * @param task episode to run
+ */
+public void fork( Runnable task ) {
+	futures.add( completion.submit( task, null ) );
+}
+
+/**
+ * Waits for all forked episodes. The first failure cancels the remaining episodes and is
+ * rethrown; the executor is shut down in every case.
+ *
+ * @throws InterruptedException if the waiting thread is interrupted, remaining episodes are
+ * cancelled
+ * @throws ExecutionException wrapping the first failure of an episode
+ */
+public void join() throws InterruptedException, ExecutionException {
+	try {
+		for ( int i = 0; i < futures.size(); ++i ) {
+			Future done = completion.take();
+			try {
+				done.get();
+			}
+			catch ( ExecutionException e ) {
+				cancelAll();
+				throw e;
+			}
+		}
+	}
+	catch ( InterruptedException e ) {
+		cancelAll();
+		throw e;
+	}
+	finally {
+		executor.shutdown();
+	}
+}
+
+private void cancelAll() {
+	Iterator it = futures.iterator();
+	while ( it.hasNext() )
+		( (Future) it.next() ).cancel( true );
+}
+
+}
@@ -0,0 +1,117 @@
+package com.anji.integration;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.superneatmario.SimANJI;
+
+/**
+ * Outcome of one level played by one genome, as reported by local and remote evaluation alike.
+ */
+public class EpisodeStats {
+
+/**
+ * fitness of the level as computed by <code>EvalThreadTask.fitness()</code>
+ */
+public int fitness;
+
+/**
+ * x Mario reached
+ */
+public float distance;
+
+/**
+ * 1 if Mario won, else 0
+ */
+public int win;
+
+/**
+ * level timer when the episode ended
+ */
+public int timeLeft;
+
+/**
+ * enemies killed
+ */
+public int kills;
+
+/**
+ * 0 small, 1 large, 2 fire
+ */
+public int marioMode;
+
+/**
+ * one of <code>MarioEnvironment.END_*</code>
+ */
+public int endReason;
+
+/**
+ * game ticks played
+ */
+public int ticks;
+
+/**
+ * ctor
+ */
+public EpisodeStats() {
+	super();
+}
+
+/**
+ * @param sa finished simulation
+ * @param aFitness fitness of the level
+ */
+public EpisodeStats( SimANJI sa, int aFitness ) {
+	fitness = aFitness;
+	distance = sa.getDistance();
+	win = sa.didMarioWin();
+	timeLeft = (int) sa.getTimeLeft();
+	kills = sa.getEnemyKillCount();
+	marioMode = sa.getMarioMode();
+	endReason = sa.getEndReason();
+	ticks = sa.getTicks();
+}
+
+/**
+ * @param out destination
+ * @throws IOException
+ */
+public void write( DataOutput out ) throws IOException {
+	out.writeInt( fitness );
+	out.writeFloat( distance );
+	out.writeByte( win );
+	out.writeInt( timeLeft );
+	out.writeInt( kills );
+	out.writeByte( marioMode );
+	out.writeByte( endReason );
+	out.writeInt( ticks );
+}
+
+/**
+ * @param in source positioned at stats written by <code>write()</code>
+ * @return stats read
+ * @throws IOException
+ */
+public static EpisodeStats read( DataInput in ) throws IOException {
+	EpisodeStats result = new EpisodeStats();
+	result.fitness = in.readInt();
+	result.distance = in.readFloat();
+	result.win = in.readByte();
+	result.timeLeft = in.readInt();
+	result.kills = in.readInt();
+	result.marioMode = in.readByte();
+	result.endReason = in.readByte();
+	result.ticks = in.readInt();
+	return result;
+}
+
+/**
+ * @see java.lang.Object#toString()
+ */
+public String toString() {
+	return "fitness=" + fitness + " distance=" + distance + " win=" + win + " timeLeft=" + timeLeft
+			+ " kills=" + kills + " mode=" + marioMode + " end=" + endReason + " ticks=" + ticks;
+}
+
+}
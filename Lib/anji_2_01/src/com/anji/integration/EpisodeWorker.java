@@ -0,0 +1,139 @@
+package com.anji.integration;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+
+import com.anji.util.Properties;
+
+/**
+ * Worker side of distributed evaluation. Connects to a <code>DistributedEvaluator</code> and
+ * receives the run's properties, then repeatedly reads a job, transcribes the genome with an
+ * <code>ActivatorTranscriber</code> configured from those properties,
+ * plays the levels headless and sends back fitness and per level <code>EpisodeStats</code>. Runs
+ * until the coordinator closes the connection.
+ */
+public class EpisodeWorker implements Runnable {
+
+private static Logger logger = Logger.getLogger( EpisodeWorker.class );
+
+private Socket socket;
+
+/**
+ * @param aSocket connection to the coordinator
+ */
+public EpisodeWorker( Socket aSocket ) {
+	socket = aSocket;
+}
+
+/**
+ * Serves jobs until the coordinator disconnects.
+ */
+public void run() {
+	try {
+		serve();
+	}
+	catch ( IOException e ) {
+		logger.warn( "connection to coordinator lost: " + e.getMessage() );
+	}
+	finally {
+		try {
+			socket.close();
+		}
+		catch ( IOException e ) {
+			// already gone
+		}
+	}
+}
+
+private void serve() throws IOException {
+	socket.setTcpNoDelay( true );
+	DataInputStream in = new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+	DataOutputStream out = new DataOutputStream( new BufferedOutputStream( socket
+			.getOutputStream() ) );
+	out.writeInt( DistributedEvaluator.MAGIC );
+	out.flush();
+
+	byte[] config = DistributedEvaluator.readMessage( in );
+	java.util.Properties values = new java.util.Properties();
+	values.load( new ByteArrayInputStream( config ) );
+	PropertyConfigurator.configure( values );
+	Properties props = new Properties( values );
+	ActivatorTranscriber activatorFactory = (ActivatorTranscriber) props
+			.singletonObjectProperty( ActivatorTranscriber.class );
+
+	ByteArrayOutputStream result = new ByteArrayOutputStream();
+	while ( true ) {
+		byte request;
+		try {
+			request = in.readByte();
+		}
+		catch ( EOFException e ) {
+			return;
+		}
+		if ( request != DistributedEvaluator.JOB )
+			throw new IOException( "unknown request " + request );
+
+		int id = in.readInt();
+		EvalThreadTask task = EvalThreadTask.readJob( in, activatorFactory );
+		task.run();
+
+		result.reset();
+		task.writeResult( new DataOutputStream( result ) );
+		out.writeInt( id );
+		out.writeInt( result.size() );
+		result.writeTo( out );
+		out.flush();
+	}
+}
+
+/**
+ * command line usage
+ */
+private static void usage() {
+	System.err.println( "usage: <cmd> <host> <port> [connections]" );
+}
+
+/**
+ * Connects <code>args[2]</code> workers, default 1, to the coordinator at
+ * <code>args[0]:args[1]</code>; each plays one episode at a time on its own thread.
+ * 
+ * @param args command line arguments
+ * @throws Throwable
+ */
+public static void main( String[] args ) throws Throwable {
+	try {
+		if ( args.length < 2 || args.length > 3 ) {
+			usage();
+			System.exit( -1 );
+		}
+
+		int port = Integer.parseInt( args[ 1 ] );
+		int connections = ( args.length > 2 ) ? Integer.parseInt( args[ 2 ] ) : 1;
+
+		Thread[] threads = new Thread[ connections ];
+		for ( int i = 0; i < connections; ++i ) {
+			Socket socket = new Socket( args[ 0 ], port );
+			threads[ i ] = new Thread( new EpisodeWorker( socket ), "Episode Worker " + i );
+			threads[ i ].start();
+		}
+		for ( int i = 0; i < connections; ++i )
+			threads[ i ].join();
+		System.exit( 0 );
+	}
+	catch ( Throwable th ) {
+		logger.error( "", th );
+		throw th;
+	}
+}
+
+}
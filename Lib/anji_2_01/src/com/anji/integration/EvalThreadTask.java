@@ -1,58 +1,371 @@
 package com.anji.integration;
 
-import java.util.Random;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.apache.log4j.Logger;
 import org.jgap.Chromosome;
 
+import com.mojang.mario.MarioEnvironment;
+import com.mojang.mario.sensors.SensorSchema;
 import com.superneatmario.SimANJI;
 
+/**
+ * Evaluates one genome on a set of levels and aggregates the results by mean or min. Levels are
+ * played in order; once the genome provably cannot reach the elite threshold the remaining
+ * levels are skipped. The mean is taken over the levels played, so skipped levels do not pull
+ * it down and it stays below the threshold; for the min skipped levels do not matter.
+ * Without the cutoff, headless levels are played in lockstep instead, one row of a
+ * <code>BatchActivator</code> each, so the network is activated once per decision for all levels.
+ * Tasks are run by <code>TargetFitnessFunction</code>; each worker thread keeps a single
+ * <code>SimANJI</code> and reuses it for every level it plays. A task on a thread of its own
+ * builds a <code>SimANJI</code> for its levels instead, see <code>setOwnSimulation()</code>.
+ * <p>
+ * A task can also be shipped to an <code>EpisodeWorker</code> in another JVM: the coordinator
+ * writes it with <code>writeJob()</code>, the worker rebuilds and runs it and sends back
+ * <code>writeResult()</code>, which the coordinator applies with <code>readResult()</code>.
+ */
 public class EvalThreadTask implements Runnable {
 
-	private final static double COIN_ALPHA = 2.0; 
-	private String command;
+	private static Logger logger = Logger.getLogger( EvalThreadTask.class );
+
+	private final static double COIN_ALPHA = 2.0;
+
+	/**
+	 * index of the level seed in a level row
+	 */
+	public final static int LEVEL_SEED = 0;
+
+	/**
+	 * index of the level difficulty in a level row
+	 */
+	public final static int LEVEL_DIFFICULTY = 1;
+
+	/**
+	 * index of the level type in a level row
+	 */
+	public final static int LEVEL_TYPE = 2;
+
+	private static ThreadLocal simulations = new ThreadLocal() {
+
+		protected Object initialValue() {
+			return new SimANJI( null, 0, 0, 0, 0 );
+		}
+	};
+
+	private static ThreadLocal batchSimulations = new ThreadLocal();
+
 	private ActivatorTranscriber activatorFactory;
 	private Chromosome genotype;
 	private int genomeNum;
-	private int seed;
+	private int[][] levels;
 	private int generation;
-	private Random randGenerator;
-	private int randThreadNum;
-	
-	public EvalThreadTask(ActivatorTranscriber activatorFactory, Chromosome geno, int genoNum, int seed, int generation)
+	private boolean headless;
+	private int maxTicks;
+	private int watchdogWindow;
+	private float watchdogBand;
+	private boolean aggregateMin;
+	private int eliteThreshold;
+	private SensorSchema sensors = SensorSchema.DEFAULT_SCHEMA;
+	private int actionRepeat = 1;
+	private boolean ownSimulation = false;
+	private int[] endReasonCounts = new int[ END_REASON_COUNT ];
+	private List stats = new ArrayList();
+
+	/**
+	 * number of <code>MarioEnvironment.END_*</code> reasons
+	 */
+	public final static int END_REASON_COUNT = MarioEnvironment.END_OSCILLATION + 1;
+
+	/**
+	 * @param activatorFactory transcribes <code>geno</code>
+	 * @param geno genome to evaluate
+	 * @param genoNum index of the genome in the population
+	 * @param levels one row of <code>LEVEL_SEED</code>, <code>LEVEL_DIFFICULTY</code>,
+	 * <code>LEVEL_TYPE</code> per level
+	 * @param generation current generation
+	 * @param headless true to play without a window
+	 * @param maxTicks episode length limit, 0 for the level timer only
+	 * @param watchdogWindow ticks without progress that end an episode, 0 never
+	 * @param watchdogBand pixels Mario must cover within the window, 0 for no oscillation check
+	 * @param aggregateMin true for the min over levels, false for the mean
+	 * @param eliteThreshold fitness the genome must be able to reach to play all levels, 0 to
+	 * always play all levels
+	 */
+	public EvalThreadTask(ActivatorTranscriber activatorFactory, Chromosome geno, int genoNum, int[][] levels, int generation, boolean headless, int maxTicks, int watchdogWindow, float watchdogBand, boolean aggregateMin, int eliteThreshold)
 	{
-		this.randGenerator = new Random();
-		this.randThreadNum = this.randGenerator.nextInt(1000000);
 		this.activatorFactory = activatorFactory;
 		this.genotype = geno;
 		this.genomeNum = genoNum;
-		this.seed = seed;
+		this.levels = levels;
 		this.generation = generation;
+		this.headless = headless;
+		this.maxTicks = maxTicks;
+		this.watchdogWindow = watchdogWindow;
+		this.watchdogBand = watchdogBand;
+		this.aggregateMin = aggregateMin;
+		this.eliteThreshold = eliteThreshold;
+	}
+
+	/**
+	 * @param sensors observation the genome is fed, defaults to
+	 * <code>SensorSchema.DEFAULT_SCHEMA</code>
+	 */
+	public void setSensors( SensorSchema sensors ) {
+		this.sensors = sensors;
 	}
-	
-	@Override
+
+	/**
+	 * @param actionRepeat ticks between two activations, the keys are held in between
+	 */
+	public void setActionRepeat( int actionRepeat ) {
+		this.actionRepeat = actionRepeat;
+	}
+
+	/**
+	 * @param ownSimulation true to play on a <code>SimANJI</code> built for this task, for tasks
+	 * run on a thread that plays no other task; false to use the one kept by the thread
+	 */
+	public void setOwnSimulation( boolean ownSimulation ) {
+		this.ownSimulation = ownSimulation;
+	}
+
 	public void run() {
-		// TODO Auto-generated method stub
-		try 
+		try
 		{
+			int sum = 0;
+			int min = Integer.MAX_VALUE;
+			int played = 0;
+			if ( eliteThreshold == 0 && headless && levels.length > 1 ) {
+				BatchActivator batch = activatorFactory.newBatchActivator( genotype, levels.length );
+				SimANJI[] sims = batchSimulations();
+				for ( int i = 0; i < levels.length; ++i )
+					setUp( sims[ i ], null, i );
+				SimANJI.runHeadless( sims, batch );
+				for ( int i = 0; i < levels.length; ++i ) {
+					int levelFitness = finish( sims[ i ] );
+					sum += levelFitness;
+					min = Math.min( min, levelFitness );
+					played++;
+				}
+				genotype.setFitnessValue( aggregateMin ? min : sum / played );
+				return;
+			}
+
 			Activator activator = this.activatorFactory.newActivator(this.genotype);
-			SimANJI sa = new SimANJI(activator, this.seed, this.genomeNum, this.generation, this.randThreadNum);
-			boolean isDone = sa.start();
-			
-			double [][] responses = null;
-			
-			if (isDone)
-			{
-				System.out.println("Fitness Val " + (int)(sa.getDistance() + sa.getCoins() )); 
-				genotype.setFitnessValue( (int)(sa.getDistance()*1.5 +  sa.didMarioWin()*sa.getTimeLeft()/*+ sa.getCoins()*COIN_ALPHA*/ ) );
+			SimANJI sa = ownSimulation ? new SimANJI( null, 0, 0, 0, 0 )
+					: (SimANJI) simulations.get();
+			for ( int i = 0; i < levels.length; ++i ) {
+				activator.reset();
+				setUp( sa, activator, i );
+				sa.start();
+
+				//after death, or win, fitness = distance mario made
+				int levelFitness = finish( sa );
+				sum += levelFitness;
+				played++;
+				min = Math.min( min, levelFitness );
+
+				int remaining = levels.length - 1 - i;
+				if ( eliteThreshold > 0 && remaining > 0 ) {
+					boolean hopeless;
+					if ( aggregateMin )
+						hopeless = min < eliteThreshold;
+					else
+						hopeless = maxFitness( sa ) > 0
+								&& sum + remaining * maxFitness( sa ) < eliteThreshold * levels.length;
+					if ( hopeless )
+						break;
+				}
 			}
-			
-		} 
-		catch (TranscriberException e) 
+			genotype.setFitnessValue( aggregateMin ? min : sum / played );
+		}
+		catch (TranscriberException e)
 		{
-			// TODO Auto-generated catch block
-			System.out.println( "transcriber error: " + e.getMessage() );
+			logger.warn( "transcriber error: " + e.getMessage() );
 			genotype.setFitnessValue( 1 );
 		}
 	}
 
+	/**
+	 * @return one simulation per level, kept by the thread unless this task has its own
+	 */
+	private SimANJI[] batchSimulations() {
+		SimANJI[] result = ownSimulation ? null : (SimANJI[]) batchSimulations.get();
+		if ( result == null || result.length != levels.length ) {
+			result = new SimANJI[ levels.length ];
+			for ( int i = 0; i < result.length; ++i )
+				result[ i ] = new SimANJI( null, 0, 0, 0, 0 );
+			if ( !ownSimulation )
+				batchSimulations.set( result );
+		}
+		return result;
+	}
+
+	/**
+	 * @param sa simulation to play <code>level</code> on
+	 * @param activator network, null if a <code>BatchActivator</code> drives <code>sa</code>
+	 * @param level index into the levels
+	 */
+	private void setUp( SimANJI sa, Activator activator, int level ) {
+		sa.reset( activator, levels[ level ][ LEVEL_SEED ], this.genomeNum, this.generation );
+		sa.setLevel( levels[ level ][ LEVEL_DIFFICULTY ], levels[ level ][ LEVEL_TYPE ] );
+		sa.setHeadless( headless );
+		sa.setMaxTicks( maxTicks );
+		sa.setWatchdog( watchdogWindow, watchdogBand );
+		sa.setSensors( sensors );
+		sa.setActionRepeat( actionRepeat );
+	}
+
+	/**
+	 * Counts the end reason and stats of a level <code>sa</code> finished.
+	 * @return fitness on that level
+	 */
+	private int finish( SimANJI sa ) {
+		endReasonCounts[ sa.getEndReason() ]++;
+		int levelFitness = fitness( sa );
+		stats.add( new EpisodeStats( sa, levelFitness ) );
+		return levelFitness;
+	}
+
+	/**
+	 * @return how many levels ended for each <code>MarioEnvironment.END_*</code> reason
+	 */
+	public int[] getEndReasonCounts() {
+		return endReasonCounts;
+	}
+
+	/**
+	 * @return <code>EpisodeStats</code> of every level played, in order
+	 */
+	public List getStats() {
+		return stats;
+	}
+
+	/**
+	 * @return genome this task evaluates
+	 */
+	public Chromosome getGenotype() {
+		return genotype;
+	}
+
+	/**
+	 * Writes everything a worker needs to run this task. Remote tasks always run headless.
+	 * 
+	 * @param out destination
+	 * @throws IOException
+	 */
+	public void writeJob( DataOutput out ) throws IOException {
+		ChromosomeCodec.write( genotype, out );
+		out.writeInt( genomeNum );
+		out.writeInt( generation );
+		out.writeInt( levels.length );
+		for ( int i = 0; i < levels.length; ++i ) {
+			out.writeInt( levels[ i ][ LEVEL_SEED ] );
+			out.writeInt( levels[ i ][ LEVEL_DIFFICULTY ] );
+			out.writeInt( levels[ i ][ LEVEL_TYPE ] );
+		}
+		out.writeInt( maxTicks );
+		out.writeInt( watchdogWindow );
+		out.writeFloat( watchdogBand );
+		out.writeBoolean( aggregateMin );
+		out.writeInt( eliteThreshold );
+		out.writeUTF( sensors.toString() );
+		out.writeInt( actionRepeat );
+	}
+
+	/**
+	 * @param in source positioned at a job written by <code>writeJob()</code>
+	 * @param activatorFactory transcribes the genome on this side
+	 * @return headless task equivalent to the one written
+	 * @throws IOException
+	 */
+	public static EvalThreadTask readJob( DataInput in, ActivatorTranscriber activatorFactory ) throws IOException {
+		Chromosome geno = ChromosomeCodec.read( in );
+		int genoNum = in.readInt();
+		int generation = in.readInt();
+		int[][] levels = new int[ in.readInt() ][];
+		for ( int i = 0; i < levels.length; ++i )
+			levels[ i ] = new int[] { in.readInt(), in.readInt(), in.readInt() };
+		int maxTicks = in.readInt();
+		int watchdogWindow = in.readInt();
+		float watchdogBand = in.readFloat();
+		boolean aggregateMin = in.readBoolean();
+		int eliteThreshold = in.readInt();
+		SensorSchema sensors;
+		try {
+			sensors = SensorSchema.parse( in.readUTF() );
+		}
+		catch ( IllegalArgumentException e ) {
+			throw new IOException( "invalid sensors: " + e.getMessage() );
+		}
+		int actionRepeat = in.readInt();
+		if ( actionRepeat < 1 )
+			throw new IOException( "invalid action repeat " + actionRepeat );
+		EvalThreadTask task = new EvalThreadTask( activatorFactory, geno, genoNum, levels, generation,
+				true, maxTicks, watchdogWindow, watchdogBand, aggregateMin, eliteThreshold );
+		task.setSensors( sensors );
+		task.setActionRepeat( actionRepeat );
+		return task;
+	}
+
+	/**
+	 * Writes the fitness and per level stats after <code>run()</code>.
+	 * 
+	 * @param out destination
+	 * @throws IOException
+	 */
+	public void writeResult( DataOutput out ) throws IOException {
+		out.writeInt( genotype.getFitnessValue() );
+		out.writeInt( stats.size() );
+		for ( int i = 0; i < stats.size(); ++i )
+			( (EpisodeStats) stats.get( i ) ).write( out );
+	}
+
+	/**
+	 * Applies a result written by <code>writeResult()</code> of the remote copy of this task, as
+	 * if this task had run locally.
+	 * 
+	 * @param in source positioned at the result
+	 * @throws IOException
+	 */
+	public void readResult( DataInput in ) throws IOException {
+		int fitness = in.readInt();
+		int count = in.readInt();
+		if ( count < 0 || count > levels.length )
+			throw new IOException( "invalid level count " + count );
+		List result = new ArrayList( count );
+		int[] counts = new int[ END_REASON_COUNT ];
+		for ( int i = 0; i < count; ++i ) {
+			EpisodeStats level = EpisodeStats.read( in );
+			if ( level.endReason < 0 || level.endReason >= END_REASON_COUNT )
+				throw new IOException( "invalid end reason " + level.endReason );
+			counts[ level.endReason ]++;
+			result.add( level );
+		}
+		genotype.setFitnessValue( fitness );
+		stats = result;
+		endReasonCounts = counts;
+	}
+
+	/**
+	 * @param sa finished simulation
+	 * @return fitness for the genome that played it
+	 */
+	public static int fitness( SimANJI sa ) {
+		return (int)(sa.getDistance()*1.5 +  sa.didMarioWin()*sa.getTimeLeft()/*+ sa.getCoins()*COIN_ALPHA*/ );
+	}
+
+	/**
+	 * @param sa finished simulation
+	 * @return upper bound of <code>fitness()</code> on the level <code>sa</code> played, 0 if
+	 * unknown
+	 */
+	public static int maxFitness( SimANJI sa ) {
+		return (int)(sa.getMaxDistance()*1.5 + sa.getMaxTimeLeft());
+	}
+
 }
@@ -0,0 +1,217 @@
+package com.anji.integration;
+
+import java.util.Arrays;
+
+import com.anji.nn.AnjiNet;
+import com.anji.nn.CompiledNet;
+import com.anji.nn.GeneratedNet;
+
+/**
+ * Activator running the generated step code of a <code>GeneratedNet</code> on one
+ * <code>double[]</code> of slot values, like <code>CompiledActivator</code> runs the loops over
+ * a <code>CompiledNet</code>. Responses are bit for bit those of an <code>AnjiActivator</code> on
+ * the same network. Selected with <code>ann.type=generated</code>; the generated code is shared
+ * by all activators of a chromosome, see <code>ActivatorTranscriber</code>.
+ */
+public class GeneratedActivator implements Activator {
+
+private AnjiNet source;
+
+private GeneratedNet code;
+
+private CompiledNet net;
+
+private int numCycles = 1;
+
+private double[] values;
+
+private boolean[] computed;
+
+private boolean reset;
+
+/**
+ * @param aNet ANN <code>aCode</code> was generated from; it is not activated, only kept for
+ * <code>toXml()</code>
+ * @param aCode step code
+ * @param aNumCycles number of times input pattern is "shown" to network before a result is
+ * returned; this allows for recurrent connections to take effect
+ */
+public GeneratedActivator( AnjiNet aNet, GeneratedNet aCode, int aNumCycles ) {
+	super();
+	setNumCycles( aNumCycles );
+	source = aNet;
+	code = aCode;
+	net = aCode.getNet();
+	values = new double[ net.getSlotCount() ];
+	values[ net.getBiasSlot() ] = 1;
+	computed = new boolean[ net.getNeuronCount() ];
+	reset();
+}
+
+/**
+ * @return next output pattern
+ * @see GeneratedActivator#next(double[])
+ */
+public double[] next() {
+	return next( (double[]) null );
+}
+
+/**
+ * @param newInputValues input activation pattern to be "shown" to network; if null, uses
+ * previous values
+ * @return result of activation
+ */
+public double[] next( double[] newInputValues ) {
+	double[] result = new double[ net.getOutputDimension() ];
+	next( newInputValues, result );
+	return result;
+}
+
+/**
+ * Like <code>next(double[])</code>, but writes the result to <code>result</code>.
+ *
+ * @param newInputValues input activation pattern to be "shown" to network; if null, uses
+ * previous values
+ * @param result receives the output activation, at least <code>getOutputDimension()</code>
+ * long
+ * @throws IllegalArgumentException if <code>newInputValues</code> has the wrong dimension
+ */
+public void next( double[] newInputValues, double[] result ) throws IllegalArgumentException {
+	if ( newInputValues != null ) {
+		if ( newInputValues.length != net.getInputDimension() )
+			throw new IllegalArgumentException( "can not change array dimension" );
+		System.arraycopy( newInputValues, 0, values, net.getInputBase(), newInputValues.length );
+	}
+	for ( int cycle = 0; cycle < numCycles; ++cycle )
+		step();
+	int[] outputSlots = net.getOutputSlots();
+	for ( int idx = 0; idx < outputSlots.length; ++idx )
+		result[ idx ] = values[ outputSlots[ idx ] ];
+}
+
+private void step() {
+	if ( reset ) {
+		net.firstStep( values, computed );
+		reset = false;
+	}
+	else
+		code.stepRecurrent( values );
+	code.stepNeurons( values );
+}
+
+/**
+ * @param newInputValues input pattern sequence
+ * @return next output pattern sequence
+ * @see GeneratedActivator#next(double[])
+ */
+public double[][] next( double[][] newInputValues ) {
+	double[][] result = new double[ newInputValues.length ][ getOutputDimension() ];
+	next( newInputValues, result );
+	return result;
+}
+
+/**
+ * Like <code>next(double[][])</code>, but writes the result to <code>result</code>.
+ * 
+ * @param newInputValues input pattern sequence
+ * @param result receives the output pattern sequence, one array per input pattern
+ * @see GeneratedActivator#next(double[], double[])
+ */
+public void next( double[][] newInputValues, double[][] result ) {
+	for ( int i = 0; i < newInputValues.length; ++i )
+		next( newInputValues[ i ], result[ i ] );
+}
+
+/**
+ * clear all memory in network, including neurons and recurrent connections
+ */
+public void reset() {
+	Arrays.fill( values, 0, net.getInputBase(), 0 );
+	Arrays.fill( values, net.getRecurrentBase(), net.getBiasSlot(), 0 );
+	reset = true;
+}
+
+/**
+ * @see java.lang.Object#toString()
+ */
+public String toString() {
+	return net.getName();
+}
+
+/**
+ * @return XML of the network the activator was generated from; neuron values are not those of
+ * this activator
+ * @see com.anji.integration.Activator#toXml()
+ */
+public String toXml() {
+	return source.toXml();
+}
+
+/**
+ * @see com.anji.integration.Activator#getName()
+ */
+public String getName() {
+	return net.getName();
+}
+
+/**
+ * @param aNumCycles number of times input pattern is "shown" to network before a result is
+ * returned; this allows for recurrent connections to take effect
+ * @throws IllegalArgumentException
+ */
+public void setNumCycles( int aNumCycles ) throws IllegalArgumentException {
+	if ( aNumCycles < 1 )
+		throw new IllegalArgumentException( "numCycles must be >= 1" );
+	numCycles = aNumCycles;
+}
+
+/**
+ * @return dimension of input pattern
+ */
+public int getInputDimension() {
+	return net.getInputDimension();
+}
+
+/**
+ * @return dimension of output pattern
+ */
+public int getOutputDimension() {
+	return net.getOutputDimension();
+}
+
+/**
+ * @return true if network contains any recurrent connections, false otherwise
+ */
+public boolean isRecurrent() {
+	return net.isRecurrent();
+}
+
+/**
+ * @return min response
+ */
+public double getMinResponse() {
+	return net.getMinResponse();
+}
+
+/**
+ * @return max responses
+ */
+public double getMaxResponse() {
+	return net.getMaxResponse();
+}
+
+/**
+ * @see com.anji.util.XmlPersistable#getXmlRootTag()
+ */
+public String getXmlRootTag() {
+	return "network";
+}
+
+/**
+ * @see com.anji.util.XmlPersistable#getXmld()
+ */
+public String getXmld() {
+	return net.getName();
+}
+
+}
@@ -19,9 +19,15 @@
  */
 package com.anji.integration;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.log4j.Logger;
 import org.jgap.BulkFitnessFunction;
@@ -30,7 +36,8 @@ import org.jgap.Chromosome;
 import com.anji.util.Configurable;
 import com.anji.util.Properties;
 import com.anji.util.Randomizer;
-import com.superneatmario.SimANJI;
+import com.mojang.mario.MarioEnvironment;
+import com.mojang.mario.sensors.SensorSchema;
 
 /**
  * Determines fitness based on how close <code>Activator</code> output is to a target.
@@ -57,6 +64,140 @@ public final static String TARGETS_FILE_NAME_KEY = "targets.file";
 
 private final static String TARGETS_RANGE_KEY = "targets.range";
 
+/**
+ * properties key, if true Mario levels are simulated without a window
+ */
+public final static String HEADLESS_KEY = "mario.headless";
+
+private boolean headless = false;
+
+/**
+ * properties key, maximum number of game ticks per headless episode, 0 for the level timer only
+ */
+public final static String MAX_TICKS_KEY = "mario.max.ticks";
+
+private int maxTicks = 0;
+
+/**
+ * properties key, number of threads evaluating genomes in parallel; 0 for one per core when
+ * <code>mario.headless</code> is set, else for one, so games shown in windows are played one at
+ * a time
+ */
+public final static String EVAL_THREADS_KEY = "mario.eval.threads";
+
+private int evalThreads = 1;
+
+private transient ExecutorService evaluators;
+
+/**
+ * properties key, if true every episode runs on its own virtual thread instead of the worker
+ * pool; only in headless runs, shown games always use the pool
+ */
+public final static String VIRTUAL_THREADS_KEY = "mario.eval.virtual.threads";
+
+private boolean virtualThreads = false;
+
+/**
+ * properties key, number of level seeds drawn per generation
+ */
+public final static String LEVEL_SEEDS_KEY = "mario.levels.seeds";
+
+/**
+ * properties key, comma separated level difficulties, every seed is played at each
+ */
+public final static String LEVEL_DIFFICULTIES_KEY = "mario.levels.difficulties";
+
+/**
+ * properties key, comma separated <code>LevelGenerator</code> types, every seed is played as
+ * each
+ */
+public final static String LEVEL_TYPES_KEY = "mario.levels.types";
+
+/**
+ * properties key, <code>mean</code> or <code>min</code> of the level fitnesses
+ */
+public final static String LEVEL_AGGREGATE_KEY = "mario.levels.aggregate";
+
+/**
+ * properties key, if true genomes stop playing levels once they cannot beat the best fitness
+ * of the previous generation
+ */
+public final static String ELITE_CUTOFF_KEY = "mario.fitness.elite.cutoff";
+
+/**
+ * properties key, headless episodes end once Mario has not passed his farthest x for this many
+ * ticks, 0 never
+ */
+public final static String WATCHDOG_WINDOW_KEY = "mario.watchdog.window";
+
+/**
+ * properties key, headless episodes also end once Mario stays within this many pixels for a
+ * whole watchdog window, 0 never
+ */
+public final static String WATCHDOG_BAND_KEY = "mario.watchdog.band";
+
+/**
+ * properties key, if true genomes are evaluated by <code>EpisodeWorker</code> processes
+ * connected over sockets
+ */
+public final static String DISTRIBUTED_KEY = "mario.distributed";
+
+/**
+ * properties key, port the coordinator listens on for workers, 0 for any free port
+ */
+public final static String DISTRIBUTED_PORT_KEY = "mario.distributed.port";
+
+/**
+ * properties key, number of worker JVMs started on this machine
+ */
+public final static String DISTRIBUTED_LOCAL_WORKERS_KEY = "mario.distributed.local.workers";
+
+/**
+ * properties key, milliseconds a worker may take for one genome before it is dropped
+ */
+public final static String DISTRIBUTED_TIMEOUT_KEY = "mario.distributed.timeout.millis";
+
+/**
+ * properties key, number of times a genome is handed to another worker before it is evaluated
+ * locally
+ */
+public final static String DISTRIBUTED_RETRIES_KEY = "mario.distributed.retries";
+
+private transient DistributedEvaluator coordinator;
+
+/**
+ * properties key, comma separated sensors that make up the network input, see
+ * <code>SensorSchema</code>; their total size must equal <code>stimulus.size</code>
+ */
+public final static String SENSORS_KEY = "mario.sensors";
+
+private final static String STIMULUS_SIZE_KEY = "stimulus.size";
+
+private SensorSchema sensors = SensorSchema.DEFAULT_SCHEMA;
+
+/**
+ * properties key, game ticks per network activation; keys are held between activations
+ */
+public final static String ACTION_REPEAT_KEY = "mario.action.repeat";
+
+private int actionRepeat = 1;
+
+private int levelSeeds = 1;
+
+private int[] levelDifficulties = { 10 };
+
+private int[] levelTypes = { 0 };
+
+private boolean aggregateMin = false;
+
+private boolean eliteCutoff = false;
+
+private int eliteThreshold = 0;
+
+private int watchdogWindow = 0;
+
+private float watchdogBand = 0;
+
 /**
  * dimension # training sets by dim stimuli
  */
@@ -75,7 +216,6 @@ private ActivatorTranscriber activatorFactory;
 
 private Randomizer randomizer;
 
-private final static double COIN_ALPHA = 2.0; 
 /**
  * See <a href=" {@docRoot}/params.htm" target="anji_params">Parameter Details </a> for
  * specific property settings.
@@ -94,6 +234,38 @@ public void init( Properties props ) {
 		//targetRange = props.getDoubleProperty( TARGETS_RANGE_KEY, 0.0d );
 		adjustForNetworkSizeFactor = props.getFloatProperty( ADJUST_FOR_NETWORK_SIZE_FACTOR_KEY,
 				0.0f );
+		headless = props.getBooleanProperty( HEADLESS_KEY, false );
+		maxTicks = props.getIntProperty( MAX_TICKS_KEY, 0 );
+		evalThreads = props.getIntProperty( EVAL_THREADS_KEY, 0 );
+		if ( evalThreads <= 0 )
+			evalThreads = headless ? Runtime.getRuntime().availableProcessors() : 1;
+		virtualThreads = props.getBooleanProperty( VIRTUAL_THREADS_KEY, false );
+		if ( virtualThreads && !headless ) {
+			logger.warn( VIRTUAL_THREADS_KEY + " ignored, it would open a window per genome at once" );
+			virtualThreads = false;
+		}
+		levelSeeds = props.getIntProperty( LEVEL_SEEDS_KEY, 1 );
+		levelDifficulties = toIntArray( props.getProperty( LEVEL_DIFFICULTIES_KEY, "10" ) );
+		levelTypes = toIntArray( props.getProperty( LEVEL_TYPES_KEY, "0" ) );
+		aggregateMin = "min".equals( props.getProperty( LEVEL_AGGREGATE_KEY, "mean" ) );
+		eliteCutoff = props.getBooleanProperty( ELITE_CUTOFF_KEY, false );
+		watchdogWindow = props.getIntProperty( WATCHDOG_WINDOW_KEY, 0 );
+		watchdogBand = props.getFloatProperty( WATCHDOG_BAND_KEY, 0 );
+		sensors = SensorSchema.parse( props.getProperty( SENSORS_KEY, SensorSchema.DEFAULT ) );
+		int stimulusSize = props.getIntProperty( STIMULUS_SIZE_KEY, sensors.size() );
+		if ( sensors.size() != stimulusSize )
+			throw new IllegalArgumentException( "sensors [" + sensors + "] produce " + sensors.size()
+					+ " values but " + STIMULUS_SIZE_KEY + " is " + stimulusSize );
+		actionRepeat = props.getIntProperty( ACTION_REPEAT_KEY, 1 );
+		if ( actionRepeat < 1 )
+			throw new IllegalArgumentException( ACTION_REPEAT_KEY + " must be at least 1: "
+					+ actionRepeat );
+		if ( props.getBooleanProperty( DISTRIBUTED_KEY, false ) ) {
+			coordinator = new DistributedEvaluator( props, props.getIntProperty(
+					DISTRIBUTED_PORT_KEY, 0 ), props.getIntProperty( DISTRIBUTED_TIMEOUT_KEY, 60000 ),
+					props.getIntProperty( DISTRIBUTED_RETRIES_KEY, 2 ) );
+			coordinator.startLocalWorkers( props.getIntProperty( DISTRIBUTED_LOCAL_WORKERS_KEY, 0 ) );
+		}
 
 		/*if ( stimuli.length == 0 || targets.length == 0 )
 			throw new IllegalArgumentException( "require at least 1 training set for stimuli ["
@@ -108,6 +280,14 @@ public void init( Properties props ) {
 	}
 }
 
+private static int[] toIntArray( String list ) {
+	StringTokenizer tok = new StringTokenizer( list, "," );
+	int[] result = new int[ tok.countTokens() ];
+	for ( int i = 0; i < result.length; ++i )
+		result[ i ] = Integer.parseInt( tok.nextToken().trim() );
+	return result;
+}
+
 /**
  * @param aMaxFitnessValue maximum raw fitness this function will return
  */
@@ -117,81 +297,111 @@ protected void setMaxFitnessValue( int aMaxFitnessValue ) {
 }
 
 /**
- * Iterates through chromosomes. For each, transcribe it to an <code>Activator</code> and
- * present the stimuli to the activator. The stimuli are presented in random order to ensure the
- * underlying network is not memorizing the sequence of inputs. Calculation of the fitness based
- * on error is delegated to the subclass. This method adjusts fitness for network size, based on
- * configuration.
+ * Evaluates all chromosomes on the worker pool, or on <code>EpisodeWorker</code> processes when
+ * distributed. Each is transcribed to an <code>Activator</code> and plays the levels of this
+ * generation, every seed at every configured difficulty and type; fitness per level is based on
+ * the distance Mario made and the time left if he won, and is aggregated by mean or min. Seeds and genome numbers are assigned
+ * in list order before any task starts, so results do not depend on thread scheduling. Returns
+ * only once every chromosome has its fitness, which is the barrier selection relies on.
  * 
  * @param genotypes <code>List</code> contains <code>Chromosome</code> objects.
- * @see TargetFitnessFunction#calculateErrorFitness(double[][], double, double)
+ * @param generation current generation
+ * @see EvalThreadTask
  */
-
-
 final public void evaluate( List genotypes, int generation ) {
+	// all genomes of a generation play the same levels so their fitness is comparable
+	int[][] levels = new int[ levelSeeds * levelDifficulties.length * levelTypes.length ][];
+	int level = 0;
+	for ( int s = 0; s < levelSeeds; ++s ) {
+		int seed = randomizer.getRand().nextInt();
+		for ( int d = 0; d < levelDifficulties.length; ++d )
+			for ( int t = 0; t < levelTypes.length; ++t )
+				levels[ level++ ] = new int[] { seed, levelDifficulties[ d ], levelTypes[ t ] };
+	}
+
+	List tasks = new ArrayList( genotypes.size() );
 	Iterator it = genotypes.iterator();
-	int seed = new Random().nextInt(); 
-	int genomeNum = 0; 
-	//ExecutorService service = Executors.newFixedThreadPool(1);
-	double maxFitness = -1.0; 
-	while ( it.hasNext() ) {	
+	int genomeNum = 0;
+	while ( it.hasNext() ) {
 		Chromosome genotype = (Chromosome) it.next();
-//		System.out.println("Specie  " + genotype.getSpecie().getRepresentativeId()); 
-	    //new EvalThreadTask(activatorFactory, genotype, genomeNum, seed, generation);	
-		try {
-			Activator activator = activatorFactory.newActivator( genotype ); 
-			SimANJI sa = new SimANJI(activator, seed, genomeNum, generation, 0); 
-			boolean isDone = sa.start();
-			//sa.start();
-			double [][] responses = null; 
-			
-			if(isDone)
-			{
-				/*responses = new double [sa.getResponses().length][sa.getResponses().length]; 
-				activator = sa.getActivator(); 
-				for (int i = 0; i <  sa.getResponses().length;i++)
-					responses[i] = sa.getResponses(); */
-			
-			
-			//after death, or win, fitness = distance mario made
-				//calculateErrorFitness( responses, activator.getMinResponse(),
-				//activator.getMaxResponse()
-				//System.out.println("Fitness Val " + (int)(sa.getDistance() /*+ sa.getCoins()*/ )); 
-				genotype.setFitnessValue( (int)(sa.getDistance()*1.5 +  sa.didMarioWin()*sa.getTimeLeft()/*+ sa.getCoins()*COIN_ALPHA*/ ) );
+		EvalThreadTask task = new EvalThreadTask( activatorFactory, genotype, genomeNum, levels,
+				generation, headless, maxTicks, watchdogWindow, watchdogBand, aggregateMin,
+				eliteCutoff ? eliteThreshold : 0 );
+		task.setSensors( sensors );
+		task.setActionRepeat( actionRepeat );
+		tasks.add( task );
+		genomeNum++;
+	}
+
+	try {
+		if ( coordinator != null )
+			coordinator.evaluate( tasks, getEvaluators() );
+		else if ( virtualThreads ) {
+			EpisodeScope scope = new EpisodeScope();
+			Iterator taskIt = tasks.iterator();
+			while ( taskIt.hasNext() ) {
+				EvalThreadTask task = (EvalThreadTask) taskIt.next();
+				task.setOwnSimulation( true );
+				scope.fork( task );
 			}
-				
+			scope.join();
 		}
-		catch ( TranscriberException e ) {
-			logger.warn( "transcriber error: " + e.getMessage() );
-			genotype.setFitnessValue( 1 );
+		else {
+			List callables = new ArrayList( tasks.size() );
+			Iterator taskIt = tasks.iterator();
+			while ( taskIt.hasNext() )
+				callables.add( Executors.callable( (Runnable) taskIt.next() ) );
+			List futures = getEvaluators().invokeAll( callables );
+			Iterator futureIt = futures.iterator();
+			while ( futureIt.hasNext() )
+				( (Future) futureIt.next() ).get();
 		}
-		genomeNum++; 
-		//System.out.println("Next Genome" ); 
-		
 	}
-	//System.out.println("Next Gen... " ); 
-//	Iterator it2 = genotypes.iterator();
-//
-//	//most a fitness should be is one
-//	while ( it2.hasNext() ) {	
-//		Chromosome genotype = (Chromosome) it2.next();
-//		genotype.setFitnessValue( genotype.getFitnessValue()/getMaxFitnessValue() );/**/
-//	}
-	
-//	service.shutdown();
-//	while (!service.isTerminated())
-//	{
-//		//System.out.println("Not Finished");
-//	}
-	
-//	System.out.println("Finished the service");
-	
-	/*service.shutdown();
-	try {
-		service.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-	} catch (InterruptedException e) {
-	  
-	}*/
+	catch ( InterruptedException e ) {
+		Thread.currentThread().interrupt();
+		throw new RuntimeException( "interrupted evaluating generation " + generation, e );
+	}
+	catch ( ExecutionException e ) {
+		throw new RuntimeException( "error evaluating generation " + generation, e.getCause() );
+	}
+
+	eliteThreshold = 0;
+	it = genotypes.iterator();
+	while ( it.hasNext() )
+		eliteThreshold = Math.max( eliteThreshold, ( (Chromosome) it.next() ).getFitnessValue() );
+
+	int[] endReasons = new int[ EvalThreadTask.END_REASON_COUNT ];
+	Iterator taskIt = tasks.iterator();
+	while ( taskIt.hasNext() ) {
+		int[] counts = ( (EvalThreadTask) taskIt.next() ).getEndReasonCounts();
+		for ( int i = 0; i < endReasons.length; ++i )
+			endReasons[ i ] += counts[ i ];
+	}
+	logger.info( "generation " + generation + " episode ends: win="
+			+ endReasons[ MarioEnvironment.END_WIN ] + " death="
+			+ endReasons[ MarioEnvironment.END_DEATH ] + " timeout="
+			+ endReasons[ MarioEnvironment.END_TIMEOUT ] + " no progress="
+			+ endReasons[ MarioEnvironment.END_NO_PROGRESS ] + " oscillation="
+			+ endReasons[ MarioEnvironment.END_OSCILLATION ] );
+}
+
+/**
+ * @return pool of <code>evalThreads</code> daemon workers, created on first use
+ */
+private synchronized ExecutorService getEvaluators() {
+	if ( evaluators == null ) {
+		evaluators = Executors.newFixedThreadPool( evalThreads, new ThreadFactory() {
+
+			private int count = 0;
+
+			public synchronized Thread newThread( Runnable r ) {
+				Thread t = new Thread( r, "Mario Evaluator " + count++ );
+				t.setDaemon( true );
+				return t;
+			}
+		} );
+	}
+	return evaluators;
 }
 
 /**
@@ -30,8 +30,15 @@ import java.util.Map;
  */
 public class ActivationFunctionFactory {
 
+	/**
+	 * max error of the table approximations unless configured otherwise
+	 */
+	public final static double DEFAULT_FAST_MAX_ERROR = 0.0001d;
+
 	private Map activationFunctions = new HashMap();
 
+	private double fastMaxError = 0;
+
 	private static ActivationFunctionFactory instance = null;
 
 	/**
@@ -49,6 +56,33 @@ public class ActivationFunctionFactory {
 		activationFunctions.put( SignedStepActivationFunction.NAME, new SignedStepActivationFunction() );
 		activationFunctions.put( ClampedLinearActivationFunction.NAME, new ClampedLinearActivationFunction() );
 		activationFunctions.put( SignedClampedLinearActivationFunction.NAME, new SignedClampedLinearActivationFunction() );
+		setFastMaxError( DEFAULT_FAST_MAX_ERROR );
+	}
+
+	/**
+	 * Rebuilds the table approximations, <code>fast-sigmoid</code> and <code>fast-tanh</code>,
+	 * for a new max error. Networks built before keep their functions.
+	 * 
+	 * @param maxError max absolute difference between the approximations and the exact functions
+	 * @throws IllegalArgumentException if <code>maxError</code> is not positive or too small
+	 */
+	public synchronized void setFastMaxError( double maxError ) throws IllegalArgumentException {
+		if ( maxError == fastMaxError )
+			return;
+		ActivationFunction fastSigmoid = new TableActivationFunction(
+				ActivationFunctionType.FAST_SIGMOID.toString(), getSigmoid(), maxError );
+		ActivationFunction fastTanh = new TableActivationFunction(
+				ActivationFunctionType.FAST_TANH.toString(), getTanh(), maxError );
+		activationFunctions.put( fastSigmoid.toString(), fastSigmoid );
+		activationFunctions.put( fastTanh.toString(), fastTanh );
+		fastMaxError = maxError;
+	}
+
+	/**
+	 * @return max error of the table approximations
+	 */
+	public double getFastMaxError() {
+		return fastMaxError;
 	}
 
 	/**
@@ -111,6 +145,20 @@ public class ActivationFunctionFactory {
 		return (ActivationFunction) activationFunctions.get( TanhActivationFunction.NAME );
 	}
 
+	/**
+	 * @return table approximation of sigmoid activation function
+	 */
+	public ActivationFunction getFastSigmoid() {
+		return (ActivationFunction) activationFunctions.get( ActivationFunctionType.FAST_SIGMOID.toString() );
+	}
+
+	/**
+	 * @return table approximation of hyperbolic tangent activation function
+	 */
+	public ActivationFunction getFastTanh() {
+		return (ActivationFunction) activationFunctions.get( ActivationFunctionType.FAST_TANH.toString() );
+	}
+
 	/**
 	 * @return hyperbolic tangent of cubic activation function
 	 */
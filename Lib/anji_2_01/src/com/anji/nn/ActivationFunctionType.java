@@ -73,6 +73,17 @@ public final static ActivationFunctionType CLAMPED_LINEAR = new ActivationFuncti
 public final static ActivationFunctionType SIGNED_CLAMPED_LINEAR = new ActivationFunctionType(
 		"signed-clamped-linear" );
 
+/**
+ * table approximation of sigmoid
+ */
+public final static ActivationFunctionType FAST_SIGMOID = new ActivationFunctionType(
+		"fast-sigmoid" );
+
+/**
+ * table approximation of tanh
+ */
+public final static ActivationFunctionType FAST_TANH = new ActivationFunctionType( "fast-tanh" );
+
 /**
  * @param newName id of type
  */
@@ -96,6 +107,8 @@ public static ActivationFunctionType valueOf( String name ) {
 				ActivationFunctionType.CLAMPED_LINEAR );
 		types.put( ActivationFunctionType.SIGNED_CLAMPED_LINEAR.toString(),
 				ActivationFunctionType.SIGNED_CLAMPED_LINEAR );
+		types.put( ActivationFunctionType.FAST_SIGMOID.toString(), ActivationFunctionType.FAST_SIGMOID );
+		types.put( ActivationFunctionType.FAST_TANH.toString(), ActivationFunctionType.FAST_TANH );
 	}
 	return (ActivationFunctionType) types.get( name );
 }
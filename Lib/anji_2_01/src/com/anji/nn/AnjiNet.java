@@ -21,6 +21,7 @@
 package com.anji.nn;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -45,6 +46,15 @@ private List outNeurons;
 
 private Collection recurrentConns;
 
+private Neuron[] neurons;
+
+private CacheNeuronConnection[] recurrent;
+
+/**
+ * cached values of the recurrent connections, in <code>recurrentConns</code> order
+ */
+private double[] recurrentValues;
+
 private String name;
 
 /**
@@ -96,6 +106,13 @@ protected void init( Collection someNeurons, List someInNeurons, List someOutNeu
 	outNeurons = someOutNeurons;
 	recurrentConns = someRecurrentConns;
 	name = aName;
+
+	neurons = (Neuron[]) allNeurons.toArray( new Neuron[ allNeurons.size() ] );
+	recurrent = (CacheNeuronConnection[]) recurrentConns
+			.toArray( new CacheNeuronConnection[ recurrentConns.size() ] );
+	recurrentValues = new double[ recurrent.length ];
+	for ( int i = 0; i < recurrent.length; ++i )
+		recurrent[ i ].setValues( recurrentValues, i );
 }
 
 /**
@@ -120,6 +137,13 @@ public int getInputDimension() {
 //		return allNeurons;
 //	}
 
+/**
+ * @return all neurons, for <code>CompiledNet</code>
+ */
+List getAllNeurons() {
+	return allNeurons;
+}
+
 /**
  * @param idx
  * @return output neuron at position <code>idx</code>
@@ -181,18 +205,12 @@ public String getName() {
  */
 public void step() {
 	// populate cache connections with values from previous step
-	Iterator iter = recurrentConns.iterator();
-	while ( iter.hasNext() ) {
-		CacheNeuronConnection c = (CacheNeuronConnection) iter.next();
-		c.step();
-	}
+	for ( int i = 0; i < recurrent.length; ++i )
+		recurrent[ i ].step();
 
 	// notify all neurons to recalculate value for current step
-	iter = allNeurons.iterator();
-	while ( iter.hasNext() ) {
-		Neuron n = (Neuron) iter.next();
-		n.step();
-	}
+	for ( int i = 0; i < neurons.length; ++i )
+		neurons[ i ].step();
 }
 
 /**
@@ -200,27 +218,17 @@ public void step() {
  * with no forward outputs
  */
 public void fullyActivate() {
-	Iterator it = allNeurons.iterator();
-	while ( it.hasNext() ) {
-		Neuron n = (Neuron) it.next();
-		n.getValue();
-	}
+	for ( int i = 0; i < neurons.length; ++i )
+		neurons[ i ].getValue();
 }
 
 /**
  * clear all memory in network, including neurons and recurrent connections
  */
 public void reset() {
-	Iterator iter = allNeurons.iterator();
-	while ( iter.hasNext() ) {
-		Neuron n = (Neuron) iter.next();
-		n.reset();
-	}
-	iter = recurrentConns.iterator();
-	while ( iter.hasNext() ) {
-		CacheNeuronConnection c = (CacheNeuronConnection) iter.next();
-		c.reset();
-	}
+	for ( int i = 0; i < neurons.length; ++i )
+		neurons[ i ].reset();
+	Arrays.fill( recurrentValues, 0.0d );
 }
 
 /**
@@ -0,0 +1,170 @@
+package com.anji.nn;
+
+import java.util.Arrays;
+
+/**
+ * Activation state of one <code>CompiledNet</code> for several independent rows, e.g. one row
+ * per episode played in lockstep. Every row has its own neuron values and recurrent connection
+ * values, and gives the same results as an <code>AnjiNet</code> of its own would.
+ * <p>
+ * The state is stored slot by slot with the rows next to each other, so a connection is a
+ * plain loop over the rows: <code>sum[r] += weight * values[src * rows + r]</code>. Such loops
+ * are what the JIT turns into vector instructions.
+ */
+public class BatchNet {
+
+private CompiledNet net;
+
+private int rows;
+
+private double[] values;
+
+private double[] sums;
+
+private boolean[] reset;
+
+private boolean anyReset;
+
+private double[] rowValues;
+
+private boolean[] computed;
+
+/**
+ * @param aNet topology
+ * @param aRows number of independent rows
+ * @throws IllegalArgumentException if <code>aRows</code> is less than 1
+ */
+public BatchNet( CompiledNet aNet, int aRows ) throws IllegalArgumentException {
+	if ( aRows < 1 )
+		throw new IllegalArgumentException( "rows must be >= 1" );
+	net = aNet;
+	rows = aRows;
+	values = new double[ net.getSlotCount() * rows ];
+	sums = new double[ rows ];
+	reset = new boolean[ rows ];
+	rowValues = new double[ net.getSlotCount() ];
+	computed = new boolean[ net.getNeuronCount() ];
+	int bias = net.getBiasSlot() * rows;
+	Arrays.fill( values, bias, bias + rows, 1 );
+	reset();
+}
+
+/**
+ * @param row
+ * @param in input activation pattern of <code>row</code> for the following steps
+ * @throws IllegalArgumentException if <code>in</code> has the wrong dimension
+ */
+public void setInputs( int row, double[] in ) throws IllegalArgumentException {
+	if ( in.length != net.getInputDimension() )
+		throw new IllegalArgumentException( "can not change array dimension" );
+	int slot = net.getInputBase() * rows + row;
+	for ( int i = 0; i < in.length; ++i, slot += rows )
+		values[ slot ] = in[ i ];
+}
+
+/**
+ * Advances every row by one time step.
+ */
+public void step() {
+	// recurrent connections read the previous step
+	int[] recurrentSrc = net.getRecurrentSrc();
+	double[] recurrentWeight = net.getRecurrentWeight();
+	int dst = net.getRecurrentBase() * rows;
+	for ( int i = 0; i < recurrentSrc.length; ++i, dst += rows ) {
+		int src = recurrentSrc[ i ] * rows;
+		double w = recurrentWeight[ i ];
+		for ( int r = 0; r < rows; ++r )
+			values[ dst + r ] = CompiledNet.clamp( w * values[ src + r ] );
+	}
+	if ( anyReset ) {
+		for ( int r = 0; r < rows; ++r )
+			if ( reset[ r ] )
+				firstStep( r );
+		anyReset = false;
+	}
+
+	// neurons in topological order
+	ActivationFunction[] funcs = net.getFuncs();
+	int[] connStart = net.getConnStart();
+	int[] connSrc = net.getConnSrc();
+	double[] connWeight = net.getConnWeight();
+	for ( int n = 0; n < funcs.length; ++n ) {
+		Arrays.fill( sums, 0 );
+		for ( int k = connStart[ n ]; k < connStart[ n + 1 ]; ++k ) {
+			int src = connSrc[ k ] * rows;
+			double w = connWeight[ k ];
+			for ( int r = 0; r < rows; ++r )
+				sums[ r ] += w * values[ src + r ];
+		}
+		ActivationFunction func = funcs[ n ];
+		int base = n * rows;
+		for ( int r = 0; r < rows; ++r )
+			values[ base + r ] = CompiledNet.clamp( func.apply( sums[ r ] ) );
+	}
+}
+
+/**
+ * recurrent slots of a row that was just reset, see <code>CompiledNet.firstStep()</code>
+ */
+private void firstStep( int row ) {
+	for ( int s = net.getInputBase(); s < rowValues.length; ++s )
+		rowValues[ s ] = values[ s * rows + row ];
+	int recurrentBase = net.getRecurrentBase();
+	int recurrentEnd = net.getBiasSlot();
+	Arrays.fill( rowValues, recurrentBase, recurrentEnd, 0 );
+	net.firstStep( rowValues, computed );
+	for ( int s = recurrentBase; s < recurrentEnd; ++s )
+		values[ s * rows + row ] = rowValues[ s ];
+	reset[ row ] = false;
+}
+
+/**
+ * @param row
+ * @param out receives the output activation of <code>row</code> after the last step, at least
+ * <code>getOutputDimension()</code> long
+ */
+public void getOutputs( int row, double[] out ) {
+	int[] outputSlots = net.getOutputSlots();
+	for ( int i = 0; i < outputSlots.length; ++i )
+		out[ i ] = values[ outputSlots[ i ] * rows + row ];
+}
+
+/**
+ * clear the memory of all rows; inputs are kept
+ */
+public void reset() {
+	Arrays.fill( values, 0, net.getInputBase() * rows, 0 );
+	Arrays.fill( values, net.getRecurrentBase() * rows, net.getBiasSlot() * rows, 0 );
+	Arrays.fill( reset, true );
+	anyReset = true;
+}
+
+/**
+ * clear the memory of one row, e.g. to start a new episode in it; inputs are kept
+ *
+ * @param row
+ */
+public void reset( int row ) {
+	for ( int s = 0; s < net.getInputBase(); ++s )
+		values[ s * rows + row ] = 0;
+	for ( int s = net.getRecurrentBase(); s < net.getBiasSlot(); ++s )
+		values[ s * rows + row ] = 0;
+	reset[ row ] = true;
+	anyReset = true;
+}
+
+/**
+ * @return number of rows
+ */
+public int getRows() {
+	return rows;
+}
+
+/**
+ * @return topology
+ */
+public CompiledNet getNet() {
+	return net;
+}
+
+}
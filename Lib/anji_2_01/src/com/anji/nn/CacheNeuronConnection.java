@@ -21,13 +21,17 @@ package com.anji.nn;
 
 /**
  * A connection between neurons that caches its value from previous timestep. This is used to
- * avoid deadlock when activating neurons and connections in a loop.
+ * avoid deadlock when activating neurons and connections in a loop. The cached value is a slot
+ * of a <code>double[]</code>; <code>AnjiNet</code> points all its recurrent connections to one
+ * array, so it can clear them in one go.
  * 
  * @author Philip Tucker
  */
 public class CacheNeuronConnection extends NeuronConnection {
 
-	private double value;
+	private double[] values = new double[ 1 ];
+
+	private int idx = 0;
 
 	/**
 	 * @see NeuronConnection#NeuronConnection(Neuron)
@@ -49,14 +53,26 @@ public class CacheNeuronConnection extends NeuronConnection {
 	 * @return double cached value
 	 */
 	public double read() {
-		return value;
+		return values[ idx ];
+	}
+
+	/**
+	 * Moves the cached value to <code>someValues[ anIdx ]</code>.
+	 * 
+	 * @param someValues
+	 * @param anIdx
+	 */
+	void setValues( double[] someValues, int anIdx ) {
+		someValues[ anIdx ] = values[ idx ];
+		values = someValues;
+		idx = anIdx;
 	}
 
 	/**
 	 * update value
 	 */
 	public void step() {
-		value = Math.min(
+		values[ idx ] = Math.min(
 				Math.max( getWeight() * getIncomingNode().getValue(), -Double.MAX_VALUE ),
 				Double.MAX_VALUE );
 	}
@@ -78,7 +94,7 @@ public class CacheNeuronConnection extends NeuronConnection {
 	 * clear cached value
 	 */
 	public void reset() {
-		value = 0.0d;
+		values[ idx ] = 0.0d;
 	}
 
 	/**
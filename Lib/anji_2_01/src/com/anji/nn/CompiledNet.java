@@ -0,0 +1,359 @@
+package com.anji.nn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flat, immutable form of an <code>AnjiNet</code> topology, for engines that keep activation
+ * state in primitive arrays instead of <code>Neuron</code> objects. The net's values live in
+ * numbered slots: one per neuron in topological order of the non-recurrent connections, then
+ * one per input, one per recurrent connection and a bias slot that always holds 1. Incoming
+ * connections are stored in compressed rows: the connections of neuron <code>n</code> are
+ * <code>getConnStart()[n]</code> up to <code>getConnStart()[n + 1]</code>, each reading
+ * <code>getConnSrc()</code> times <code>getConnWeight()</code>. Inputs, recurrent connections
+ * and bias are read with weight 1, which leaves the value unchanged.
+ * <p>
+ * A step first sets every recurrent slot to its weight times the source neuron's value from
+ * the previous step, then computes the neurons in slot order, each summing its connections in
+ * the order <code>AnjiNet</code> sums them. That gives results identical to
+ * <code>AnjiNet</code>, except for the first step after a reset, where <code>AnjiNet</code>
+ * computes the sources of recurrent connections on demand while updating them; engines
+ * reproduce that step with <code>firstStep()</code>.
+ * <p>
+ * The net the layout is compiled from is not modified. Its input neurons are fed as by
+ * <code>AnjiActivator</code>, i.e. after their other incoming connections.
+ */
+public class CompiledNet {
+
+private String name;
+
+private int neuronCount;
+
+private int inputDimension;
+
+private int[] outputSlots;
+
+private ActivationFunction[] funcs;
+
+private int[] connStart;
+
+private int[] connSrc;
+
+private double[] connWeight;
+
+private int[] recurrentSrc;
+
+private double[] recurrentWeight;
+
+private double minResponse;
+
+private double maxResponse;
+
+private long cost;
+
+/**
+ * @param net network to compile
+ * @throws IllegalArgumentException if the net has a loop without a recurrent connection, a
+ * connection type other than neuron, recurrent, input and bias connections, or output neurons
+ * with different ranges
+ */
+public CompiledNet( AnjiNet net ) throws IllegalArgumentException {
+	name = net.getName();
+	inputDimension = net.getInputDimension();
+	cost = net.cost();
+
+	// number recurrent connections in the order AnjiNet steps them
+	Map recurrentIdx = new HashMap();
+	Collection recurrentConns = net.getRecurrentConns();
+	recurrentSrc = new int[ recurrentConns.size() ];
+	recurrentWeight = new double[ recurrentConns.size() ];
+
+	// topological order of the non-recurrent connections
+	List neurons = new ArrayList();
+	Map slots = new HashMap();
+	Map visiting = new HashMap();
+	Iterator it = net.getAllNeurons().iterator();
+	while ( it.hasNext() )
+		order( (Neuron) it.next(), neurons, slots, visiting );
+	neuronCount = neurons.size();
+
+	it = recurrentConns.iterator();
+	for ( int i = 0; it.hasNext(); ++i ) {
+		CacheNeuronConnection c = (CacheNeuronConnection) it.next();
+		recurrentIdx.put( c, new Integer( i ) );
+		recurrentSrc[ i ] = slot( slots, c.getIncomingNode() );
+		recurrentWeight[ i ] = c.getWeight();
+	}
+
+	Map inputIdx = new HashMap();
+	for ( int i = 0; i < inputDimension; ++i )
+		inputIdx.put( net.getInputNeuron( i ), new Integer( i ) );
+
+	int inputBase = neuronCount;
+	int recurrentBase = inputBase + inputDimension;
+	funcs = new ActivationFunction[ neuronCount ];
+	connStart = new int[ neuronCount + 1 ];
+	List src = new ArrayList();
+	List weight = new ArrayList();
+	for ( int n = 0; n < neuronCount; ++n ) {
+		Neuron neuron = (Neuron) neurons.get( n );
+		funcs[ n ] = neuron.getFunc();
+		connStart[ n ] = src.size();
+		boolean fed = false;
+		Iterator connIt = neuron.getIncomingConns().iterator();
+		while ( connIt.hasNext() ) {
+			Connection c = (Connection) connIt.next();
+			if ( c instanceof CacheNeuronConnection ) {
+				Integer idx = (Integer) recurrentIdx.get( c );
+				if ( idx == null )
+					throw new IllegalArgumentException( "recurrent connection not stepped by net: " + c );
+				src.add( new Integer( recurrentBase + idx.intValue() ) );
+				weight.add( new Double( 1 ) );
+			}
+			else if ( c instanceof NeuronConnection ) {
+				NeuronConnection nc = (NeuronConnection) c;
+				src.add( new Integer( slot( slots, nc.getIncomingNode() ) ) );
+				weight.add( new Double( nc.getWeight() ) );
+			}
+			else if ( c instanceof Pattern.PatternConnection ) {
+				src.add( new Integer( inputBase + ( (Pattern.PatternConnection) c ).getIdx() ) );
+				weight.add( new Double( 1 ) );
+				fed = true;
+			}
+			else if ( c instanceof BiasConnection ) {
+				src.add( new Integer( getBiasSlot() ) );
+				weight.add( new Double( 1 ) );
+			}
+			else
+				throw new IllegalArgumentException( "unsupported connection: " + c.getClass().getName() );
+		}
+		Integer in = (Integer) inputIdx.get( neuron );
+		if ( in != null && !fed ) {
+			src.add( new Integer( inputBase + in.intValue() ) );
+			weight.add( new Double( 1 ) );
+		}
+	}
+	connStart[ neuronCount ] = src.size();
+
+	connSrc = new int[ src.size() ];
+	connWeight = new double[ src.size() ];
+	for ( int i = 0; i < connSrc.length; ++i ) {
+		connSrc[ i ] = ( (Integer) src.get( i ) ).intValue();
+		connWeight[ i ] = ( (Double) weight.get( i ) ).doubleValue();
+	}
+
+	outputSlots = new int[ net.getOutputDimension() ];
+	for ( int i = 0; i < outputSlots.length; ++i )
+		outputSlots[ i ] = slot( slots, net.getOutputNeuron( i ) );
+	minResponse = net.getOutputNeuron( 0 ).getFunc().getMinValue();
+	maxResponse = net.getOutputNeuron( 0 ).getFunc().getMaxValue();
+	for ( int i = 1; i < net.getOutputDimension(); ++i )
+		if ( minResponse != net.getOutputNeuron( i ).getFunc().getMinValue()
+				|| maxResponse != net.getOutputNeuron( i ).getFunc().getMaxValue() )
+			throw new IllegalArgumentException( "min and max values for response nodes differ" );
+}
+
+private static void order( Neuron n, List neurons, Map slots, Map visiting ) {
+	if ( slots.containsKey( n ) )
+		return;
+	if ( visiting.containsKey( n ) )
+		throw new IllegalArgumentException( "loop without recurrent connection through neuron "
+				+ n.getId() );
+	visiting.put( n, n );
+	Iterator it = n.getIncomingConns().iterator();
+	while ( it.hasNext() ) {
+		Object c = it.next();
+		if ( c instanceof NeuronConnection && !( c instanceof CacheNeuronConnection ) )
+			order( ( (NeuronConnection) c ).getIncomingNode(), neurons, slots, visiting );
+	}
+	visiting.remove( n );
+	slots.put( n, new Integer( neurons.size() ) );
+	neurons.add( n );
+}
+
+private static int slot( Map slots, Neuron n ) {
+	Integer result = (Integer) slots.get( n );
+	if ( result == null )
+		throw new IllegalArgumentException( "connection from neuron outside net: " + n.getId() );
+	return result.intValue();
+}
+
+/**
+ * Computes the recurrent slots of the first step after a reset the way <code>AnjiNet</code>
+ * does: recurrent connections are updated in order, and the first one to need a neuron
+ * computes it from the current inputs and recurrent slots, i.e. with the recurrent
+ * connections updated so far.
+ *
+ * @param values slot values of one net; recurrent slots must be 0, neuron values are
+ * overwritten and left undefined
+ * @param computed scratch space, at least <code>getNeuronCount()</code> long
+ */
+public void firstStep( double[] values, boolean[] computed ) {
+	Arrays.fill( computed, 0, neuronCount, false );
+	int recurrentBase = getRecurrentBase();
+	for ( int i = 0; i < recurrentSrc.length; ++i )
+		values[ recurrentBase + i ] = clamp( recurrentWeight[ i ]
+				* value( recurrentSrc[ i ], values, computed ) );
+}
+
+private double value( int n, double[] values, boolean[] computed ) {
+	if ( !computed[ n ] ) {
+		double sum = 0;
+		for ( int k = connStart[ n ]; k < connStart[ n + 1 ]; ++k ) {
+			int s = connSrc[ k ];
+			sum += connWeight[ k ] * ( s < neuronCount ? value( s, values, computed ) : values[ s ] );
+		}
+		values[ n ] = clamp( funcs[ n ].apply( sum ) );
+		computed[ n ] = true;
+	}
+	return values[ n ];
+}
+
+/**
+ * @param value
+ * @return <code>value</code> limited to finite doubles, as <code>Neuron</code> and
+ * <code>CacheNeuronConnection</code> do
+ */
+public static double clamp( double value ) {
+	return Math.min( Math.max( value, -Double.MAX_VALUE ), Double.MAX_VALUE );
+}
+
+/**
+ * @return name of the compiled net
+ */
+public String getName() {
+	return name;
+}
+
+/**
+ * @return number of slots, neurons, inputs, recurrent connections and bias
+ */
+public int getSlotCount() {
+	return getBiasSlot() + 1;
+}
+
+/**
+ * @return number of neurons, which are slots 0 up to this
+ */
+public int getNeuronCount() {
+	return neuronCount;
+}
+
+/**
+ * @return first input slot
+ */
+public int getInputBase() {
+	return neuronCount;
+}
+
+/**
+ * @return first recurrent connection slot
+ */
+public int getRecurrentBase() {
+	return neuronCount + inputDimension;
+}
+
+/**
+ * @return slot holding 1
+ */
+public int getBiasSlot() {
+	return getRecurrentBase() + recurrentSrc.length;
+}
+
+/**
+ * @return number of inputs
+ */
+public int getInputDimension() {
+	return inputDimension;
+}
+
+/**
+ * @return number of outputs
+ */
+public int getOutputDimension() {
+	return outputSlots.length;
+}
+
+/**
+ * @return neuron slot of each output, do not modify
+ */
+public int[] getOutputSlots() {
+	return outputSlots;
+}
+
+/**
+ * @return activation function of each neuron, do not modify
+ */
+public ActivationFunction[] getFuncs() {
+	return funcs;
+}
+
+/**
+ * @return first connection of each neuron, and the connection count at the end, do not modify
+ */
+public int[] getConnStart() {
+	return connStart;
+}
+
+/**
+ * @return slot each connection reads, do not modify
+ */
+public int[] getConnSrc() {
+	return connSrc;
+}
+
+/**
+ * @return weight of each connection, do not modify
+ */
+public double[] getConnWeight() {
+	return connWeight;
+}
+
+/**
+ * @return source neuron slot of each recurrent connection, do not modify
+ */
+public int[] getRecurrentSrc() {
+	return recurrentSrc;
+}
+
+/**
+ * @return weight of each recurrent connection, do not modify
+ */
+public double[] getRecurrentWeight() {
+	return recurrentWeight;
+}
+
+/**
+ * @return true if the net has recurrent connections
+ */
+public boolean isRecurrent() {
+	return recurrentSrc.length > 0;
+}
+
+/**
+ * @return min response of the output neurons
+ */
+public double getMinResponse() {
+	return minResponse;
+}
+
+/**
+ * @return max response of the output neurons
+ */
+public double getMaxResponse() {
+	return maxResponse;
+}
+
+/**
+ * @return <code>AnjiNet.cost()</code> of the compiled net
+ */
+public long getCost() {
+	return cost;
+}
+
+}
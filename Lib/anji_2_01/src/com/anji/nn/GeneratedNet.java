@@ -0,0 +1,93 @@
+package com.anji.nn;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * Step code of one <code>CompiledNet</code>, generated as a class of its own with the
+ * network's slots, weights and activation functions written into the code, see
+ * <code>NetClassWriter</code>. The JIT compiles such a class like hand written code for that one
+ * network. Instances hold no activation state, so one instance can serve any number of
+ * activators, also concurrently.
+ * <p>
+ * Every generated class is defined by a class loader of its own, so it is unloaded as soon as
+ * its instances are no longer referenced.
+ */
+public abstract class GeneratedNet {
+
+private static long classCount = 0;
+
+private CompiledNet net;
+
+/**
+ * activation functions of the neurons, for generated code calling those it does not inline
+ */
+protected final ActivationFunction[] funcs;
+
+/**
+ * one class per loader
+ */
+private static class NetClassLoader extends ClassLoader {
+
+	private NetClassLoader() {
+		super( GeneratedNet.class.getClassLoader() );
+	}
+
+	private Class define( String name, byte[] bytes ) {
+		return defineClass( name, bytes, 0, bytes.length );
+	}
+}
+
+/**
+ * @param aNet net the subclass was generated from
+ */
+protected GeneratedNet( CompiledNet aNet ) {
+	net = aNet;
+	funcs = aNet.getFuncs();
+}
+
+/**
+ * @param net
+ * @return instance of a class generated for <code>net</code>
+ * @throws IllegalArgumentException if <code>net</code> is too large for a class
+ */
+public static GeneratedNet newInstance( CompiledNet net ) throws IllegalArgumentException {
+	String name = GeneratedNet.class.getName() + "$Net" + nextClassId();
+	byte[] bytes = new NetClassWriter( net, name ).toByteArray();
+	try {
+		Class c = new NetClassLoader().define( name, bytes );
+		Constructor ctor = c.getConstructor( new Class[] { CompiledNet.class } );
+		return (GeneratedNet) ctor.newInstance( new Object[] { net } );
+	}
+	catch ( Exception e ) {
+		throw new IllegalStateException( "can not load generated class " + name + ": " + e );
+	}
+}
+
+private static synchronized long nextClassId() {
+	return classCount++;
+}
+
+/**
+ * Sets every recurrent slot to its weight times the source neuron's value in
+ * <code>values</code>, like the loop over <code>getRecurrentSrc()</code> does.
+ *
+ * @param values slot values
+ */
+public abstract void stepRecurrent( double[] values );
+
+/**
+ * Computes the neurons in slot order from <code>values</code>, like the loop over
+ * <code>getConnStart()</code> does.
+ *
+ * @param values slot values
+ */
+public abstract void stepNeurons( double[] values );
+
+/**
+ * @return net the class was generated from
+ */
+public CompiledNet getNet() {
+	return net;
+}
+
+}
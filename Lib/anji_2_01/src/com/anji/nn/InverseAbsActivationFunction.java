@@ -25,7 +25,7 @@ package com.anji.nn;
  */
 public class InverseAbsActivationFunction implements ActivationFunction {
 
-	private final static double SLOPE = 0.3d;
+	final static double SLOPE = 0.3d;
 	
 	/**
 	 * identifying string
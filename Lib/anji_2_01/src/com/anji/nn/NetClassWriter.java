@@ -0,0 +1,478 @@
+package com.anji.nn;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the class file of a <code>GeneratedNet</code> subclass for one <code>CompiledNet</code>.
+ * The steps are straight-line code: every slot index and weight is a constant, weights of 1 are
+ * left out, and linear, sigmoid, tanh and inverse abs functions are written out in place with
+ * the arithmetic of their <code>apply()</code> methods, so results do not change. Other
+ * functions are called through <code>GeneratedNet.funcs</code>.
+ * <p>
+ * Code is split into methods of about <code>MAX_METHOD_SIZE</code> bytes, below the size the
+ * JIT refuses to compile. Only the class file features of Java 5 are used, so no stack map
+ * frames are needed; the code has no branches anyway.
+ */
+class NetClassWriter {
+
+private final static int MAX_METHOD_SIZE = 7000;
+
+private final static String SUPER_CLASS = "com/anji/nn/GeneratedNet";
+
+private final static String STEP_DESC = "([D)V";
+
+private final static int ACC_PUBLIC = 0x0001;
+
+private final static int ACC_PRIVATE = 0x0002;
+
+private final static int ACC_FINAL = 0x0010;
+
+private final static int ACC_SUPER = 0x0020;
+
+private final static int CLASS_VERSION = 49;
+
+// locals of the step methods
+private final static int THIS = 0;
+
+private final static int VALUES = 1;
+
+private final static int SUM = 2;
+
+private final static int MAX_LOCALS = 4;
+
+private CompiledNet net;
+
+private String className;
+
+private ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+
+private DataOutputStream pool = new DataOutputStream( poolBytes );
+
+private int poolCount = 1;
+
+private Map poolIdx = new HashMap();
+
+private List methods = new ArrayList();
+
+private int chunkCount = 0;
+
+/**
+ * one method under construction
+ */
+private class Code {
+
+	private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+	private int stack = 0;
+
+	private int maxStack = 0;
+
+	private void op( int opcode, int stackChange ) {
+		bytes.write( opcode );
+		stack += stackChange;
+		if ( stack > maxStack )
+			maxStack = stack;
+	}
+
+	private void u2( int value ) {
+		bytes.write( value >> 8 );
+		bytes.write( value );
+	}
+
+	private void aload( int local ) {
+		op( 0x2a + local, 1 );
+	}
+
+	private void dload( int local ) {
+		op( 0x26 + local, 2 );
+	}
+
+	private void dstore( int local ) {
+		op( 0x47 + local, -2 );
+	}
+
+	private void iconst( int value ) {
+		if ( value >= -1 && value <= 5 )
+			op( 0x03 + value, 1 );
+		else if ( value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE ) {
+			op( 0x10, 1 );
+			bytes.write( value );
+		}
+		else if ( value >= Short.MIN_VALUE && value <= Short.MAX_VALUE ) {
+			op( 0x11, 1 );
+			u2( value );
+		}
+		else {
+			op( 0x13, 1 );
+			u2( integerConst( value ) );
+		}
+	}
+
+	private void dconst( double value ) {
+		if ( Double.doubleToRawLongBits( value ) == 0L )
+			op( 0x0e, 2 );
+		else if ( value == 1.0d )
+			op( 0x0f, 2 );
+		else {
+			op( 0x14, 2 );
+			u2( doubleConst( value ) );
+		}
+	}
+
+	private void invokestatic( String owner, String name, String desc, int stackChange ) {
+		op( 0xb8, stackChange );
+		u2( ref( 10, owner, name, desc ) );
+	}
+
+	private int size() {
+		return bytes.size();
+	}
+}
+
+/**
+ * @param aNet net to write the steps of
+ * @param aClassName binary name of the class, with dots
+ */
+NetClassWriter( CompiledNet aNet, String aClassName ) {
+	net = aNet;
+	className = aClassName.replace( '.', '/' );
+}
+
+/**
+ * @return class file bytes
+ * @throws IllegalArgumentException if the net needs more constants than a class can hold
+ */
+byte[] toByteArray() throws IllegalArgumentException {
+	try {
+		writeConstructor();
+		writeStep( "stepRecurrent", recurrentChunks() );
+		writeStep( "stepNeurons", neuronChunks() );
+		int thisIdx = classRef( className );
+		int superIdx = classRef( SUPER_CLASS );
+		int codeIdx = utf8( "Code" );
+		if ( poolCount > 0xffff )
+			throw new IllegalArgumentException( "too many constants for one class: " + poolCount );
+		pool.flush();
+
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream( result );
+		out.writeInt( 0xcafebabe );
+		out.writeShort( 0 );
+		out.writeShort( CLASS_VERSION );
+		out.writeShort( poolCount );
+		poolBytes.writeTo( out );
+		out.writeShort( ACC_PUBLIC | ACC_FINAL | ACC_SUPER );
+		out.writeShort( thisIdx );
+		out.writeShort( superIdx );
+		out.writeShort( 0 ); // interfaces
+		out.writeShort( 0 ); // fields
+		out.writeShort( methods.size() );
+		for ( int i = 0; i < methods.size(); ++i ) {
+			Object[] m = (Object[]) methods.get( i );
+			Code code = (Code) m[ 3 ];
+			out.writeShort( ( (Integer) m[ 0 ] ).intValue() );
+			out.writeShort( ( (Integer) m[ 1 ] ).intValue() );
+			out.writeShort( ( (Integer) m[ 2 ] ).intValue() );
+			out.writeShort( 1 );
+			out.writeShort( codeIdx );
+			out.writeInt( 12 + code.size() );
+			out.writeShort( code.maxStack );
+			out.writeShort( MAX_LOCALS );
+			out.writeInt( code.size() );
+			code.bytes.writeTo( out );
+			out.writeShort( 0 ); // exceptions
+			out.writeShort( 0 ); // attributes
+		}
+		out.writeShort( 0 ); // attributes
+		out.flush();
+		return result.toByteArray();
+	}
+	catch ( IOException e ) {
+		throw new IllegalStateException( "can not write to memory: " + e.getMessage() );
+	}
+}
+
+private void addMethod( int access, String name, String desc, Code code ) {
+	methods.add( new Object[] { new Integer( access ), new Integer( utf8( name ) ),
+			new Integer( utf8( desc ) ), code } );
+}
+
+private void writeConstructor() {
+	String desc = "(Lcom/anji/nn/CompiledNet;)V";
+	Code code = new Code();
+	code.aload( THIS );
+	code.aload( 1 );
+	code.op( 0xb7, -2 ); // invokespecial
+	code.u2( ref( 10, SUPER_CLASS, "<init>", desc ) );
+	code.op( 0xb1, 0 ); // return
+	addMethod( ACC_PUBLIC, "<init>", desc, code );
+}
+
+/**
+ * public step method calling the chunks in order
+ */
+private void writeStep( String name, List chunks ) {
+	Code code = new Code();
+	for ( int i = 0; i < chunks.size(); ++i ) {
+		code.aload( THIS );
+		code.aload( VALUES );
+		code.op( 0xb7, -2 ); // invokespecial
+		code.u2( ref( 10, className, (String) chunks.get( i ), STEP_DESC ) );
+	}
+	code.op( 0xb1, 0 ); // return
+	addMethod( ACC_PUBLIC, name, STEP_DESC, code );
+}
+
+private String addChunk( Code code ) throws IllegalArgumentException {
+	code.op( 0xb1, 0 ); // return
+	if ( code.size() > 0xffff )
+		throw new IllegalArgumentException( "too many connections for one method: " + code.size() );
+	String name = "chunk" + chunkCount++;
+	addMethod( ACC_PRIVATE, name, STEP_DESC, code );
+	return name;
+}
+
+/**
+ * <code>values[base + i] = clamp(weight * values[src])</code> for each recurrent connection
+ */
+private List recurrentChunks() {
+	List result = new ArrayList();
+	int[] src = net.getRecurrentSrc();
+	double[] weight = net.getRecurrentWeight();
+	int base = net.getRecurrentBase();
+	Code code = new Code();
+	for ( int i = 0; i < src.length; ++i ) {
+		if ( code.size() > MAX_METHOD_SIZE ) {
+			result.add( addChunk( code ) );
+			code = new Code();
+		}
+		code.aload( VALUES );
+		code.iconst( base + i );
+		code.dconst( weight[ i ] );
+		code.aload( VALUES );
+		code.iconst( src[ i ] );
+		code.op( 0x31, 0 ); // daload
+		code.op( 0x6b, -2 ); // dmul
+		clamp( code );
+		code.op( 0x52, -4 ); // dastore
+	}
+	if ( code.size() > 0 )
+		result.add( addChunk( code ) );
+	return result;
+}
+
+/**
+ * <code>values[n] = clamp(f(sum of weight * values[src]))</code> for each neuron
+ */
+private List neuronChunks() {
+	List result = new ArrayList();
+	ActivationFunction[] funcs = net.getFuncs();
+	int[] connStart = net.getConnStart();
+	int[] connSrc = net.getConnSrc();
+	double[] connWeight = net.getConnWeight();
+	Code code = new Code();
+	for ( int n = 0; n < funcs.length; ++n ) {
+		if ( code.size() > MAX_METHOD_SIZE ) {
+			result.add( addChunk( code ) );
+			code = new Code();
+		}
+		code.dconst( 0 );
+		for ( int k = connStart[ n ]; k < connStart[ n + 1 ]; ++k ) {
+			if ( connWeight[ k ] != 1.0d )
+				code.dconst( connWeight[ k ] );
+			code.aload( VALUES );
+			code.iconst( connSrc[ k ] );
+			code.op( 0x31, 0 ); // daload
+			if ( connWeight[ k ] != 1.0d )
+				code.op( 0x6b, -2 ); // dmul
+			code.op( 0x63, -2 ); // dadd
+		}
+		code.dstore( SUM );
+		code.aload( VALUES );
+		code.iconst( n );
+		apply( code, funcs[ n ], n );
+		clamp( code );
+		code.op( 0x52, -4 ); // dastore
+	}
+	if ( code.size() > 0 )
+		result.add( addChunk( code ) );
+	return result;
+}
+
+/**
+ * pushes <code>func.apply(sum)</code>
+ */
+private void apply( Code code, ActivationFunction func, int n ) {
+	if ( func instanceof LinearActivationFunction )
+		code.dload( SUM );
+	else if ( func instanceof SigmoidActivationFunction ) {
+		// 1 / ( 1 + Math.exp( -( input * SLOPE ) ) )
+		code.dconst( 1 );
+		code.dconst( 1 );
+		code.dload( SUM );
+		code.dconst( SigmoidActivationFunction.SLOPE );
+		code.op( 0x6b, -2 ); // dmul
+		code.op( 0x77, 0 ); // dneg
+		code.invokestatic( "java/lang/Math", "exp", "(D)D", 0 );
+		code.op( 0x63, -2 ); // dadd
+		code.op( 0x6f, -2 ); // ddiv
+	}
+	else if ( func instanceof TanhActivationFunction ) {
+		// -1 + ( 2 / ( 1 + Math.exp( -2 * ( input ) ) ) )
+		code.dconst( -1 );
+		code.dconst( 2 );
+		code.dconst( 1 );
+		code.dconst( -2 );
+		code.dload( SUM );
+		code.op( 0x6b, -2 ); // dmul
+		code.invokestatic( "java/lang/Math", "exp", "(D)D", 0 );
+		code.op( 0x63, -2 ); // dadd
+		code.op( 0x6f, -2 ); // ddiv
+		code.op( 0x63, -2 ); // dadd
+	}
+	else if ( func instanceof InverseAbsActivationFunction ) {
+		// input / ( SLOPE + Math.abs( input ) )
+		code.dload( SUM );
+		code.dconst( InverseAbsActivationFunction.SLOPE );
+		code.dload( SUM );
+		code.invokestatic( "java/lang/Math", "abs", "(D)D", 0 );
+		code.op( 0x63, -2 ); // dadd
+		code.op( 0x6f, -2 ); // ddiv
+	}
+	else {
+		code.aload( THIS );
+		code.op( 0xb4, 0 ); // getfield
+		code.u2( ref( 9, SUPER_CLASS, "funcs", "[Lcom/anji/nn/ActivationFunction;" ) );
+		code.iconst( n );
+		code.op( 0x32, -1 ); // aaload
+		code.dload( SUM );
+		code.op( 0xb9, -1 ); // invokeinterface
+		code.u2( ref( 11, "com/anji/nn/ActivationFunction", "apply", "(D)D" ) );
+		code.bytes.write( 3 );
+		code.bytes.write( 0 );
+	}
+}
+
+private void clamp( Code code ) {
+	code.invokestatic( "com/anji/nn/CompiledNet", "clamp", "(D)D", 0 );
+}
+
+/**
+ * field, method or interface method reference
+ */
+private int ref( int tag, String owner, String name, String desc ) {
+	String key = tag + " " + owner + "." + name + desc;
+	Integer idx = (Integer) poolIdx.get( key );
+	if ( idx == null ) {
+		int ownerIdx = classRef( owner );
+		int nameAndType = nameAndType( name, desc );
+		idx = new Integer( constant( key, 1 ) );
+		write( tag, ownerIdx, nameAndType );
+	}
+	return idx.intValue();
+}
+
+private int nameAndType( String name, String desc ) {
+	String key = "nt " + name + desc;
+	Integer idx = (Integer) poolIdx.get( key );
+	if ( idx == null ) {
+		int nameIdx = utf8( name );
+		int descIdx = utf8( desc );
+		idx = new Integer( constant( key, 1 ) );
+		write( 12, nameIdx, descIdx );
+	}
+	return idx.intValue();
+}
+
+private int classRef( String name ) {
+	String key = "class " + name;
+	Integer idx = (Integer) poolIdx.get( key );
+	if ( idx == null ) {
+		int nameIdx = utf8( name );
+		idx = new Integer( constant( key, 1 ) );
+		try {
+			pool.writeByte( 7 );
+			pool.writeShort( nameIdx );
+		}
+		catch ( IOException e ) {
+			throw new IllegalStateException( "can not write to memory: " + e.getMessage() );
+		}
+	}
+	return idx.intValue();
+}
+
+private int utf8( String value ) {
+	String key = "utf8 " + value;
+	Integer idx = (Integer) poolIdx.get( key );
+	if ( idx == null ) {
+		idx = new Integer( constant( key, 1 ) );
+		try {
+			pool.writeByte( 1 );
+			pool.writeUTF( value );
+		}
+		catch ( IOException e ) {
+			throw new IllegalStateException( "can not write to memory: " + e.getMessage() );
+		}
+	}
+	return idx.intValue();
+}
+
+private int integerConst( int value ) {
+	String key = "int " + value;
+	Integer idx = (Integer) poolIdx.get( key );
+	if ( idx == null ) {
+		idx = new Integer( constant( key, 1 ) );
+		try {
+			pool.writeByte( 3 );
+			pool.writeInt( value );
+		}
+		catch ( IOException e ) {
+			throw new IllegalStateException( "can not write to memory: " + e.getMessage() );
+		}
+	}
+	return idx.intValue();
+}
+
+private int doubleConst( double value ) {
+	long bits = Double.doubleToRawLongBits( value );
+	String key = "double " + bits;
+	Integer idx = (Integer) poolIdx.get( key );
+	if ( idx == null ) {
+		// doubles take two entries
+		idx = new Integer( constant( key, 2 ) );
+		try {
+			pool.writeByte( 6 );
+			pool.writeLong( bits );
+		}
+		catch ( IOException e ) {
+			throw new IllegalStateException( "can not write to memory: " + e.getMessage() );
+		}
+	}
+	return idx.intValue();
+}
+
+private int constant( String key, int entries ) {
+	int result = poolCount;
+	poolIdx.put( key, new Integer( result ) );
+	poolCount += entries;
+	return result;
+}
+
+private void write( int tag, int first, int second ) {
+	try {
+		pool.writeByte( tag );
+		pool.writeShort( first );
+		pool.writeShort( second );
+	}
+	catch ( IOException e ) {
+		throw new IllegalStateException( "can not write to memory: " + e.getMessage() );
+	}
+}
+
+}
@@ -0,0 +1,157 @@
+package com.anji.nn;
+
+/**
+ * Piecewise linear approximation of a bounded activation function, for runs that trade a little
+ * accuracy for speed. The exact function is tabulated at evenly spaced points and interpolated
+ * linearly in between; outside the table it is taken as constant. Table range and spacing are
+ * chosen so that no response is further than a given maximum error from the exact one, checked
+ * at <code>CHECKS_PER_STEP</code> points between every two table entries.
+ */
+public class TableActivationFunction implements ActivationFunction {
+
+private final static int CHECKS_PER_STEP = 16;
+
+private final static int MAX_STEPS = 1 << 22;
+
+private final static double MAX_RANGE = 1 << 20;
+
+private String name;
+
+private ActivationFunction exact;
+
+private double maxError;
+
+private double lo;
+
+private double scale;
+
+private int steps;
+
+private double[] values;
+
+private double[] slopes;
+
+/**
+ * This class should only be accessed via ActivationFunctionFactory.
+ * 
+ * @param aName identifying string
+ * @param anExact function to approximate; it must approach its min and max values
+ * @param aMaxError max absolute difference between the responses of this function and
+ * <code>anExact</code>
+ * @throws IllegalArgumentException if <code>aMaxError</code> is not positive or can not be met
+ */
+TableActivationFunction( String aName, ActivationFunction anExact, double aMaxError )
+		throws IllegalArgumentException {
+	if ( !( aMaxError > 0 ) )
+		throw new IllegalArgumentException( "max error must be > 0: " + aMaxError );
+	name = aName;
+	exact = anExact;
+	maxError = aMaxError;
+
+	// beyond the range the function stays within half the error of its end values
+	double hi = 1;
+	while ( exact.getMaxValue() - exact.apply( hi ) > maxError / 2 )
+		hi = doubleRange( hi );
+	lo = -1;
+	while ( exact.apply( lo ) - exact.getMinValue() > maxError / 2 )
+		lo = doubleRange( lo );
+
+	// halving the spacing quarters the interpolation error
+	steps = 8;
+	do {
+		steps *= 2;
+		if ( steps > MAX_STEPS )
+			throw new IllegalArgumentException( "table for " + exact + " too large for max error "
+					+ maxError );
+		tabulate( hi );
+	} while ( tableError( hi ) > maxError / 2 );
+}
+
+private double doubleRange( double bound ) {
+	if ( Math.abs( bound ) > MAX_RANGE )
+		throw new IllegalArgumentException( exact + " does not approach its bounds" );
+	return bound * 2;
+}
+
+private void tabulate( double hi ) {
+	double step = ( hi - lo ) / steps;
+	scale = steps / ( hi - lo );
+	values = new double[ steps + 1 ];
+	slopes = new double[ steps + 1 ];
+	for ( int i = 0; i <= steps; ++i )
+		values[ i ] = exact.apply( lo + i * step );
+	for ( int i = 0; i < steps; ++i )
+		slopes[ i ] = values[ i + 1 ] - values[ i ];
+}
+
+private double tableError( double hi ) {
+	double result = 0;
+	double check = ( hi - lo ) / ( steps * CHECKS_PER_STEP );
+	for ( int i = 0; i <= steps * CHECKS_PER_STEP; ++i ) {
+		double x = lo + i * check;
+		result = Math.max( result, Math.abs( apply( x ) - exact.apply( x ) ) );
+	}
+	return result;
+}
+
+/**
+ * @see Object#toString()
+ */
+public String toString() {
+	return name;
+}
+
+/**
+ * Interpolated value of the exact function.
+ * @see com.anji.nn.ActivationFunction#apply(double)
+ */
+public double apply( double input ) {
+	double x = ( input - lo ) * scale;
+	if ( x > 0 && x < steps ) {
+		int i = (int) x;
+		return values[ i ] + ( x - i ) * slopes[ i ];
+	}
+	else if ( x <= 0 )
+		return values[ 0 ];
+	else if ( x >= steps )
+		return values[ steps ];
+	else
+		return input;
+}
+
+/**
+ * @see com.anji.nn.ActivationFunction#getMaxValue()
+ */
+public double getMaxValue() {
+	return exact.getMaxValue();
+}
+
+/**
+ * @see com.anji.nn.ActivationFunction#getMinValue()
+ */
+public double getMinValue() {
+	return exact.getMinValue();
+}
+
+/**
+ * @return max absolute difference between the responses of this function and the exact one
+ */
+public double getMaxError() {
+	return maxError;
+}
+
+/**
+ * @return function this one approximates
+ */
+public ActivationFunction getExact() {
+	return exact;
+}
+
+/**
+ * @return cost of a table lookup, about that of <code>EvSailSigmoidActivationFunction</code>
+ * @see com.anji.nn.ActivationFunction#cost()
+ */
+public long cost() {
+	return 166;
+}
+}
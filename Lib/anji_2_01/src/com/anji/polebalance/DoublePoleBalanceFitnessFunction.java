@@ -275,11 +275,13 @@ private int singleTrial( Activator activator ) {
 	DoubleBuffer oscillBuffer = DoubleBuffer.allocate( 10000 );
 	logger.debug( "state = " + Arrays.toString( state ) );
 
+	// Network activation values
+	double[] networkInput = new double[ doInputVelocities ? 7 : 4 ];
+	double[] response = new double[ activator.getOutputDimension() ];
+
 	// Run the pole-balancing simulation.
 	int currentTimestep = 0;
 	for ( currentTimestep = 0; currentTimestep < maxTimesteps; currentTimestep++ ) {
-		// Network activation values
-		double[] networkInput;
 		if ( doInputVelocities ) {
 			// Markovian (With velocity info)
 			
@@ -294,7 +296,6 @@ private int singleTrial( Activator activator ) {
 //			networkInput[ 6 ] = 1; // bias
 
 			// Colin Green's re-worked scaling
-			networkInput = new double[ 7 ];
 			networkInput[ 0 ] = state[ 0 ] / trackLengthHalfed;
 			networkInput[ 1 ] = state[ 1 ] / 0.75;
 			networkInput[ 2 ] = state[ 2 ] / poleAngleThreshold;
@@ -314,7 +315,6 @@ private int singleTrial( Activator activator ) {
 //			networkInput[ 3 ] = 0.5; // bias
 
 			// Colin's re-worked scaling
-			networkInput = new double[ 4 ];
 			networkInput[ 0 ] = state[ 0 ] / trackLengthHalfed;
 			networkInput[ 1 ] = state[ 2 ] / poleAngleThreshold;
 			networkInput[ 2 ] = state[ 4 ] / poleAngleThreshold;
@@ -326,7 +326,8 @@ private int singleTrial( Activator activator ) {
 								Math.abs(state[2]) + Math.abs(state[3]));
 		
 		// Activate the network.
-		double networkOutput = activator.next( networkInput )[ 0 ];
+		activator.next( networkInput, response );
+		double networkOutput = response[ 0 ];
 		energyUsed += networkOutput;
 		performAction( networkOutput, state );
 		if ( display != null ) {
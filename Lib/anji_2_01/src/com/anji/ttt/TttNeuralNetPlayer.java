@@ -30,12 +30,17 @@ public class TttNeuralNetPlayer implements BoardPlayer {
 
 private Activator activator = null;
 
+private double[] tttInput = new double[ 10 ];
+
+private double[] nnOutput;
+
 /**
  * Create subject whose "brains" are <code>anActivator</code>, 10 inputs and 9 outputs.
  * @param anActivator
  */
 public TttNeuralNetPlayer( Activator anActivator ) {
 	this.activator = anActivator;
+	nnOutput = new double[ anActivator.getOutputDimension() ];
 }
 
 /**
@@ -52,9 +57,7 @@ public String getPlayerId() {
  * @see BoardPlayer#move(int[])
  */
 public int move( int[] boardState ) {
-	double[] nnOutput;
 	double[] moveList = new double[ 9 ];
-	double[] tttInput = new double[ 10 ];
 	int myMove = -1;
 
 	for ( int i = 0; i < 9; i++ ) {
@@ -62,7 +65,7 @@ public int move( int[] boardState ) {
 	}
 	tttInput[ 9 ] = 1.0; //bias
 
-	nnOutput = activator.next( tttInput );
+	activator.next( tttInput, nnOutput );
 
 	for ( int i = 0; i < 9; i++ ) {
 		moveList[ i ] = nnOutput[ i ];
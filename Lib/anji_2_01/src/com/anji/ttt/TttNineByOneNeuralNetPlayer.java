@@ -30,12 +30,17 @@ public class TttNineByOneNeuralNetPlayer implements BoardPlayer {
 
 private Activator activator = null;
 
+private double[] tttInput = new double[ 10 ];
+
+private double[] nnOutput;
+
 /**
  * Create subject whose "brains" are <code>anActivator</code>, 10 inputs and 1 output.
  * @param anActivator
  */
 public TttNineByOneNeuralNetPlayer( Activator anActivator ) {
 	this.activator = anActivator;
+	nnOutput = new double[ anActivator.getOutputDimension() ];
 }
 
 /**
@@ -52,8 +57,6 @@ public String getPlayerId() {
  * @see BoardPlayer#move(int[])
  */
 public int move( int[] boardState ) {
-	double[] tttInput = new double[ 10 ];
-	double[] nnOutput;
 	double[] moveList = new double[ 9 ];
 
 	for ( int i = 0; i < 9; i++ ) {
@@ -64,7 +67,7 @@ public int move( int[] boardState ) {
 	for ( int i = 0; i < 9; i++ ) {
 		if ( boardState[ i ] == 0 ) {
 			tttInput[ i ] = 1;
-			nnOutput = activator.next( tttInput );
+			activator.next( tttInput, nnOutput );
 			moveList[ i ] = nnOutput[ 0 ];
 			tttInput[ i ] = 0;
 		}
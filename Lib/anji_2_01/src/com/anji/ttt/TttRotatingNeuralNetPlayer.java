@@ -31,12 +31,17 @@ public class TttRotatingNeuralNetPlayer implements BoardPlayer {
 
 private Activator activator = null;
 
+private double[] tttInput = new double[ 10 ];
+
+private double[] nnOutput;
+
 /**
  * Create subject whose "brains" are <code>anActivator</code>, 10 inputs and 9 outputs.
  * @param anActivator
  */
 public TttRotatingNeuralNetPlayer( Activator anActivator ) {
 	this.activator = anActivator;
+	nnOutput = new double[ anActivator.getOutputDimension() ];
 }
 
 /**
@@ -53,8 +58,6 @@ public String getPlayerId() {
  * @see BoardPlayer#move(int[])
  */
 public int move( int[] boardState ) {
-	double[] tttInput = new double[ 10 ];
-	double[] nnOutput;
 	double[] moveList = new double[ 9 ];
 
 	for ( int i = 0; i < 9; i++ ) {
@@ -62,7 +65,7 @@ public int move( int[] boardState ) {
 	}
 	tttInput[ 9 ] = 1.0; //bias
 
-	nnOutput = activator.next( tttInput );
+	activator.next( tttInput, nnOutput );
 
 	for ( int i = 0; i < 9; i++ ) {
 		moveList[ i ] = nnOutput[ i ];
@@ -85,7 +88,7 @@ public int move( int[] boardState ) {
 	}
 	tttInput[ 9 ] = 1.0; //bias
 
-	nnOutput = activator.next( tttInput );
+	activator.next( tttInput, nnOutput );
 
 	for ( int i = 0; i < 9; i++ ) {
 		moveList[ i ] += nnOutput[ i ];
@@ -106,7 +109,7 @@ public int move( int[] boardState ) {
 	}
 	tttInput[ 9 ] = 1.0; //bias
 
-	nnOutput = activator.next( tttInput );
+	activator.next( tttInput, nnOutput );
 
 	for ( int i = 0; i < 9; i++ ) {
 		moveList[ i ] += nnOutput[ i ];
@@ -127,7 +130,7 @@ public int move( int[] boardState ) {
 	}
 	tttInput[ 9 ] = 1.0; //bias
 
-	nnOutput = activator.next( tttInput );
+	activator.next( tttInput, nnOutput );
 
 	for ( int i = 0; i < 9; i++ ) {
 		moveList[ i ] += nnOutput[ i ];
@@ -251,6 +251,8 @@ public synchronized void evolve(int generation) {
 		// each of the Chromosomes.
 		// --------------------------------------------------------------
 		BulkFitnessFunction bulkFunction = m_activeConfiguration.getBulkFitnessFunction();
+		// evaluate() may spread the work over several threads, but it returns only once every
+		// chromosome has its fitness value, so selection below always sees the whole population
 		if ( bulkFunction != null )
 			bulkFunction.evaluate( m_chromosomes,generation );
 		else {
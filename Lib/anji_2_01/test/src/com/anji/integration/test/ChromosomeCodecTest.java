@@ -0,0 +1,156 @@
+package com.anji.integration.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import org.jgap.Allele;
+import org.jgap.Chromosome;
+
+import com.anji.integration.ChromosomeCodec;
+import com.anji.integration.DistributedEvaluator;
+import com.anji.integration.EvalThreadTask;
+import com.anji.neat.ConnectionAllele;
+import com.anji.neat.NeatConfiguration;
+import com.anji.neat.NeuronAllele;
+import com.anji.neat.test.TestChromosomeFactory;
+import com.anji.util.Properties;
+import com.mojang.mario.sensors.SensorSchema;
+
+/**
+ * Tests genomes and evaluation jobs survive the wire format used by distributed evaluation.
+ */
+public class ChromosomeCodecTest extends TestCase {
+
+private final static String PROP_FILE_NAME = "test.properties";
+
+private TestChromosomeFactory factory;
+
+/**
+ * ctor
+ */
+public ChromosomeCodecTest() {
+	this( ChromosomeCodecTest.class.toString() );
+}
+
+/**
+ * ctor
+ * @param name
+ */
+public ChromosomeCodecTest( String name ) {
+	super( name );
+}
+
+/**
+ * @see junit.framework.TestCase#setUp()
+ */
+protected void setUp() throws Exception {
+	Properties props = new Properties( PROP_FILE_NAME );
+	props.setProperty( NeatConfiguration.STIMULUS_SIZE_KEY, "" + 3 );
+	props.setProperty( NeatConfiguration.RESPONSE_SIZE_KEY, "" + 3 );
+	NeatConfiguration config = new NeatConfiguration( props );
+	config.load();
+	factory = new TestChromosomeFactory( config );
+}
+
+private static byte[] encode( Chromosome chrom ) throws Exception {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	ChromosomeCodec.write( chrom, new DataOutputStream( bytes ) );
+	return bytes.toByteArray();
+}
+
+/**
+ * decoded chromosome has the same id, neurons, connections and weights
+ * @throws Exception
+ */
+public void testRoundTrip() throws Exception {
+	Chromosome expected = factory.newChromosome( true );
+	Chromosome actual = ChromosomeCodec.read( new DataInputStream( new ByteArrayInputStream(
+			encode( expected ) ) ) );
+
+	assertEquals( "id", expected.getId(), actual.getId() );
+	assertEquals( "# alleles", expected.getAlleles().size(), actual.getAlleles().size() );
+	Iterator expectedIt = expected.getAlleles().iterator();
+	Iterator actualIt = actual.getAlleles().iterator();
+	while ( expectedIt.hasNext() ) {
+		Allele e = (Allele) expectedIt.next();
+		Allele a = (Allele) actualIt.next();
+		assertEquals( "innovation id", e.getInnovationId(), a.getInnovationId() );
+		assertEquals( "allele class", e.getClass(), a.getClass() );
+		if ( e instanceof NeuronAllele ) {
+			assertEquals( "neuron type", ( (NeuronAllele) e ).getType(), ( (NeuronAllele) a )
+					.getType() );
+			assertEquals( "activation", ( (NeuronAllele) e ).getActivationType(),
+					( (NeuronAllele) a ).getActivationType() );
+		}
+		else {
+			ConnectionAllele ec = (ConnectionAllele) e;
+			ConnectionAllele ac = (ConnectionAllele) a;
+			assertEquals( "src", ec.getSrcNeuronId(), ac.getSrcNeuronId() );
+			assertEquals( "dest", ec.getDestNeuronId(), ac.getDestNeuronId() );
+			assertEquals( "weight", ec.getWeight(), ac.getWeight(), 0.0d );
+		}
+	}
+	assertTrue( "re-encoding differs", Arrays.equals( encode( expected ), encode( actual ) ) );
+}
+
+/**
+ * a job read back is written identically
+ * @throws Exception
+ */
+public void testJobRoundTrip() throws Exception {
+	int[][] levels = { { 12345, 10, 0 }, { -7, 3, 1 } };
+	EvalThreadTask task = new EvalThreadTask( null, factory.newChromosome( false ), 4, levels, 9,
+			true, 6000, 240, 16.0f, true, 1234 );
+	task.setSensors( SensorSchema.parse( "enemy.x:2,nearest.enemy" ) );
+	task.setActionRepeat( 3 );
+	ByteArrayOutputStream first = new ByteArrayOutputStream();
+	task.writeJob( new DataOutputStream( first ) );
+
+	EvalThreadTask copy = EvalThreadTask.readJob( new DataInputStream( new ByteArrayInputStream(
+			first.toByteArray() ) ), null );
+	ByteArrayOutputStream second = new ByteArrayOutputStream();
+	copy.writeJob( new DataOutputStream( second ) );
+	assertTrue( "job differs", Arrays.equals( first.toByteArray(), second.toByteArray() ) );
+	assertEquals( "genome id", task.getGenotype().getId(), copy.getGenotype().getId() );
+}
+
+private static void assertInvalidLength( int length ) throws Exception {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	new DataOutputStream( bytes ).writeInt( length );
+	try {
+		DistributedEvaluator.readMessage( new DataInputStream( new ByteArrayInputStream( bytes
+				.toByteArray() ) ) );
+		fail( "length " + length + " accepted" );
+	}
+	catch ( IOException e ) {
+		// expected
+	}
+}
+
+/**
+ * negative and oversized message lengths are rejected before allocating
+ * @throws Exception
+ */
+public void testMessageLength() throws Exception {
+	assertInvalidLength( -1 );
+	assertInvalidLength( Integer.MIN_VALUE );
+	assertInvalidLength( DistributedEvaluator.MAX_MESSAGE_LENGTH + 1 );
+	assertInvalidLength( Integer.MAX_VALUE );
+
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	DataOutputStream out = new DataOutputStream( bytes );
+	out.writeInt( 3 );
+	out.write( new byte[] { 1, 2, 3 } );
+	byte[] message = DistributedEvaluator.readMessage( new DataInputStream(
+			new ByteArrayInputStream( bytes.toByteArray() ) ) );
+	assertTrue( "message differs", Arrays.equals( new byte[] { 1, 2, 3 }, message ) );
+}
+
+}
@@ -0,0 +1,251 @@
+package com.anji.integration.test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import junit.framework.TestCase;
+
+import org.jgap.Chromosome;
+
+import com.anji.integration.ActivatorTranscriber;
+import com.anji.integration.DistributedEvaluator;
+import com.anji.integration.EpisodeStats;
+import com.anji.integration.EpisodeWorker;
+import com.anji.integration.EvalThreadTask;
+import com.anji.neat.NeatChromosomeUtility;
+import com.anji.neat.NeatConfiguration;
+import com.anji.util.Properties;
+import com.mojang.mario.sensors.SensorSchema;
+
+/**
+ * Tests distributed evaluation against workers on localhost: results match a local evaluation,
+ * also when a worker drops out in the middle of a job.
+ */
+public class DistributedEvaluatorTest extends TestCase {
+
+private final static String PROP_FILE_NAME = "test.properties";
+
+private final static int NUM_GENOMES = 6;
+
+private final static int[][] LEVELS = { { 12345, 1, 0 }, { -7, 3, 1 } };
+
+private final static int MAX_TICKS = 300;
+
+private final static long CONNECT_MILLIS = 10000;
+
+private Properties props;
+
+private ActivatorTranscriber activatorFactory;
+
+private List genomes = new ArrayList();
+
+private DistributedEvaluator uut;
+
+private List workers = new ArrayList();
+
+/**
+ * counts jobs the coordinator runs itself
+ */
+private static class CountingExecutor implements Executor {
+
+private int count = 0;
+
+public synchronized void execute( Runnable task ) {
+	count++;
+	new Thread( task, "Local Episode" ).start();
+}
+
+private synchronized int getCount() {
+	return count;
+}
+}
+
+/**
+ * ctor
+ */
+public DistributedEvaluatorTest() {
+	this( DistributedEvaluatorTest.class.toString() );
+}
+
+/**
+ * ctor
+ * @param name
+ */
+public DistributedEvaluatorTest( String name ) {
+	super( name );
+}
+
+/**
+ * @see junit.framework.TestCase#setUp()
+ */
+protected void setUp() throws Exception {
+	int numInputs = SensorSchema.DEFAULT_SCHEMA.size();
+	props = new Properties( PROP_FILE_NAME );
+	props.setProperty( NeatConfiguration.STIMULUS_SIZE_KEY, "" + numInputs );
+	props.setProperty( NeatConfiguration.RESPONSE_SIZE_KEY, "" + 4 );
+	NeatConfiguration config = new NeatConfiguration( props );
+	config.load();
+	for ( int i = 0; i < NUM_GENOMES; ++i )
+		genomes.add( new Chromosome( NeatChromosomeUtility.newSampleChromosomeMaterial(
+				(short) numInputs, (short) 0, (short) 4, config, true ), config.nextChromosomeId() ) );
+	activatorFactory = (ActivatorTranscriber) props
+			.singletonObjectProperty( ActivatorTranscriber.class );
+}
+
+/**
+ * @see junit.framework.TestCase#tearDown()
+ */
+protected void tearDown() throws Exception {
+	if ( uut != null )
+		uut.close();
+	for ( int i = 0; i < workers.size(); ++i )
+		( (Thread) workers.get( i ) ).join( CONNECT_MILLIS );
+}
+
+/**
+ * @return one headless task per genome, each on a chromosome of its own
+ */
+private List newTasks() {
+	List result = new ArrayList( genomes.size() );
+	for ( int i = 0; i < genomes.size(); ++i ) {
+		Chromosome genome = (Chromosome) genomes.get( i );
+		result.add( new EvalThreadTask( activatorFactory, new Chromosome( genome.cloneMaterial(),
+				genome.getId() ), i, LEVELS, 0, true, MAX_TICKS, 0, 0, false, 0 ) );
+	}
+	return result;
+}
+
+private void startWorker() throws Exception {
+	Thread worker = new Thread( new EpisodeWorker( new Socket( "localhost", uut.getPort() ) ),
+			"Test Worker " + workers.size() );
+	workers.add( worker );
+	worker.start();
+}
+
+/**
+ * Starts a worker that takes one job and disconnects without answering.
+ *
+ * @param replace true to connect a real worker before disconnecting
+ * @return set once the job was received
+ */
+private boolean[] startDroppingWorker( final boolean replace ) throws Exception {
+	final boolean[] dropped = new boolean[ 1 ];
+	final Socket socket = new Socket( "localhost", uut.getPort() );
+	Thread worker = new Thread( new Runnable() {
+
+		public void run() {
+			try {
+				DataOutputStream out = new DataOutputStream( socket.getOutputStream() );
+				DataInputStream in = new DataInputStream( socket.getInputStream() );
+				out.writeInt( DistributedEvaluator.MAGIC );
+				out.flush();
+				DistributedEvaluator.readMessage( in );
+				if ( in.readByte() == DistributedEvaluator.JOB ) {
+					synchronized ( dropped ) {
+						dropped[ 0 ] = true;
+					}
+					if ( replace )
+						startWorker();
+				}
+				socket.close();
+			}
+			catch ( Exception e ) {
+				// test fails on the missing drop
+			}
+		}
+	}, "Test Dropping Worker" );
+	workers.add( worker );
+	worker.start();
+	return dropped;
+}
+
+private void waitForWorkers( int count ) throws Exception {
+	long deadline = System.currentTimeMillis() + CONNECT_MILLIS;
+	while ( uut.getWorkerCount() < count ) {
+		assertTrue( "workers did not connect", System.currentTimeMillis() < deadline );
+		Thread.sleep( 10 );
+	}
+}
+
+/**
+ * fitness and per level stats match those of the same tasks run locally
+ */
+private void assertSameAsLocal( List actual ) {
+	List expected = newTasks();
+	for ( int i = 0; i < expected.size(); ++i ) {
+		EvalThreadTask e = (EvalThreadTask) expected.get( i );
+		EvalThreadTask a = (EvalThreadTask) actual.get( i );
+		e.run();
+		assertEquals( "fitness " + i, e.getGenotype().getFitnessValue(), a.getGenotype()
+				.getFitnessValue() );
+		assertEquals( "# levels " + i, e.getStats().size(), a.getStats().size() );
+		for ( int j = 0; j < e.getStats().size(); ++j ) {
+			EpisodeStats es = (EpisodeStats) e.getStats().get( j );
+			EpisodeStats as = (EpisodeStats) a.getStats().get( j );
+			assertEquals( "distance " + i + "/" + j, es.distance, as.distance, 0.0f );
+			assertEquals( "ticks " + i + "/" + j, es.ticks, as.ticks );
+			assertEquals( "end reason " + i + "/" + j, es.endReason, as.endReason );
+		}
+	}
+}
+
+/**
+ * two workers evaluate the generation, none of it locally
+ * @throws Exception
+ */
+public void testWorkers() throws Exception {
+	uut = new DistributedEvaluator( props, 0, 10000, 2 );
+	startWorker();
+	startWorker();
+	waitForWorkers( 2 );
+
+	List tasks = newTasks();
+	CountingExecutor local = new CountingExecutor();
+	uut.evaluate( tasks, local );
+	assertEquals( "jobs run locally", 0, local.getCount() );
+	assertSameAsLocal( tasks );
+}
+
+/**
+ * the job of a worker lost mid-job is handed to another worker
+ * @throws Exception
+ */
+public void testLostWorkerRequeued() throws Exception {
+	uut = new DistributedEvaluator( props, 0, 10000, 2 );
+	boolean[] dropped = startDroppingWorker( true );
+	waitForWorkers( 1 );
+
+	List tasks = newTasks();
+	CountingExecutor local = new CountingExecutor();
+	uut.evaluate( tasks, local );
+	synchronized ( dropped ) {
+		assertTrue( "worker did not take a job", dropped[ 0 ] );
+	}
+	assertEquals( "jobs run locally", 0, local.getCount() );
+	assertSameAsLocal( tasks );
+}
+
+/**
+ * once out of retries, and with no worker left, jobs run locally
+ * @throws Exception
+ */
+public void testLostWorkerLocal() throws Exception {
+	uut = new DistributedEvaluator( props, 0, 1000, 0 );
+	boolean[] dropped = startDroppingWorker( false );
+	waitForWorkers( 1 );
+
+	List tasks = newTasks();
+	CountingExecutor local = new CountingExecutor();
+	uut.evaluate( tasks, local );
+	synchronized ( dropped ) {
+		assertTrue( "worker did not take a job", dropped[ 0 ] );
+	}
+	assertEquals( "jobs run locally", NUM_GENOMES, local.getCount() );
+	assertSameAsLocal( tasks );
+}
+
+}
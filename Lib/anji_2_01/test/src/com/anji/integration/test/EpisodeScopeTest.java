@@ -0,0 +1,89 @@
+package com.anji.integration.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import junit.framework.TestCase;
+
+import com.anji.integration.EpisodeScope;
+
+/**
+ * Tests <code>EpisodeScope</code> joins all episodes and cancels siblings on failure.
+ */
+public class EpisodeScopeTest extends TestCase {
+
+/**
+ * ctor
+ */
+public EpisodeScopeTest() {
+	this( EpisodeScopeTest.class.toString() );
+}
+
+/**
+ * ctor
+ * @param name
+ */
+public EpisodeScopeTest( String name ) {
+	super( name );
+}
+
+/**
+ * all forked episodes have run when join returns
+ * @throws Exception
+ */
+public void testJoinWaitsForAll() throws Exception {
+	final int[] done = new int[ 50 ];
+	EpisodeScope uut = new EpisodeScope();
+	for ( int i = 0; i < done.length; ++i ) {
+		final int idx = i;
+		uut.fork( new Runnable() {
+
+			public void run() {
+				done[ idx ] = idx + 1;
+			}
+		} );
+	}
+	uut.join();
+	for ( int i = 0; i < done.length; ++i )
+		assertEquals( "episode " + i, i + 1, done[ i ] );
+}
+
+/**
+ * a failing episode cancels a blocked sibling and is rethrown
+ * @throws Exception
+ */
+public void testFailureCancelsSiblings() throws Exception {
+	final CountDownLatch never = new CountDownLatch( 1 );
+	final boolean[] interrupted = new boolean[ 1 ];
+	final CountDownLatch siblingDone = new CountDownLatch( 1 );
+	EpisodeScope uut = new EpisodeScope();
+	uut.fork( new Runnable() {
+
+		public void run() {
+			try {
+				never.await();
+			}
+			catch ( InterruptedException e ) {
+				interrupted[ 0 ] = true;
+			}
+			siblingDone.countDown();
+		}
+	} );
+	uut.fork( new Runnable() {
+
+		public void run() {
+			throw new IllegalStateException( "fatal" );
+		}
+	} );
+	try {
+		uut.join();
+		fail( "expected failure" );
+	}
+	catch ( ExecutionException e ) {
+		assertTrue( e.getCause() instanceof IllegalStateException );
+	}
+	siblingDone.await();
+	assertTrue( "sibling interrupted", interrupted[ 0 ] );
+}
+
+}
@@ -20,17 +20,21 @@
 
 package com.anji.nn.test;
 
+import java.util.Iterator;
+
 import junit.framework.TestCase;
 
 import org.jgap.Chromosome;
 import org.jgap.ChromosomeMaterial;
 import org.jgap.test.DummyFitnessFunction;
 
+import com.anji.integration.AnjiActivator;
 import com.anji.integration.AnjiNetTranscriber;
 import com.anji.neat.NeatChromosomeUtility;
 import com.anji.neat.NeatConfiguration;
 import com.anji.nn.ActivationFunctionType;
 import com.anji.nn.AnjiNet;
+import com.anji.nn.CacheNeuronConnection;
 import com.anji.nn.RecurrencyPolicy;
 import com.anji.util.Properties;
 import com.anji.util.Reset;
@@ -105,4 +109,27 @@ public void testCalculateCost() throws Exception {
 
 	assertEquals( "wrong cost 2", 58760, net.cost() );
 }
+
+/**
+ * reset clears the recurrent connections, and the net then responds like a new one
+ */
+public void testReset() {
+	for ( int seed = 0; seed < 20; ++seed ) {
+		AnjiNet net = BatchNetTest.newRandomNet( seed );
+		AnjiActivator used = new AnjiActivator( net, 1 );
+		double[] stimuli = { 1, -0.5, 2 };
+		for ( int i = 0; i < 5; ++i )
+			used.next( stimuli );
+		used.reset();
+		Iterator it = net.getRecurrentConns().iterator();
+		while ( it.hasNext() )
+			assertEquals( "recurrent connection not cleared", 0.0d,
+					( (CacheNeuronConnection) it.next() ).read(), 0.0d );
+
+		AnjiActivator fresh = new AnjiActivator( BatchNetTest.newRandomNet( seed ), 1 );
+		for ( int i = 0; i < 5; ++i )
+			assertEquals( "seed " + seed + ", step " + i, fresh.next( stimuli )[ 0 ],
+					used.next( stimuli )[ 0 ], 0.0d );
+	}
+}
 }
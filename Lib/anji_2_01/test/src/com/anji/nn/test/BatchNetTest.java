@@ -0,0 +1,163 @@
+package com.anji.nn.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.anji.integration.AnjiActivator;
+import com.anji.integration.BatchActivator;
+import com.anji.nn.ActivationFunction;
+import com.anji.nn.ActivationFunctionFactory;
+import com.anji.nn.AnjiNet;
+import com.anji.nn.CacheNeuronConnection;
+import com.anji.nn.CompiledNet;
+import com.anji.nn.Neuron;
+import com.anji.nn.NeuronConnection;
+
+/**
+ * Compares <code>BatchActivator</code> rows with separate <code>AnjiActivator</code>s.
+ */
+public class BatchNetTest extends TestCase {
+
+private final static int ROWS = 5;
+
+private final static int STEPS = 40;
+
+/**
+ * ctor
+ */
+public BatchNetTest() {
+	this( BatchNetTest.class.toString() );
+}
+
+/**
+ * ctor
+ * @param arg0
+ */
+public BatchNetTest( String arg0 ) {
+	super( arg0 );
+}
+
+/**
+ * every row must respond bit for bit like an activator of its own, also across resets
+ */
+public void testRowsMatchSeparateActivators() {
+	for ( int seed = 0; seed < 30; ++seed ) {
+		for ( int cycles = 1; cycles <= 2; ++cycles ) {
+			BatchActivator uut = new BatchActivator( new CompiledNet( newRandomNet( seed ) ), cycles,
+					ROWS );
+			AnjiActivator[] expected = new AnjiActivator[ ROWS ];
+			for ( int r = 0; r < ROWS; ++r )
+				expected[ r ] = new AnjiActivator( newRandomNet( seed ), cycles );
+
+			Random rand = new Random( seed );
+			double[][] stimuli = new double[ ROWS ][ uut.getInputDimension() ];
+			double[][] responses = new double[ ROWS ][ uut.getOutputDimension() ];
+			for ( int step = 0; step < STEPS; ++step ) {
+				if ( step == 17 ) {
+					uut.reset( 2 );
+					expected[ 2 ].reset();
+				}
+				if ( step == 30 ) {
+					uut.reset();
+					for ( int r = 0; r < ROWS; ++r )
+						expected[ r ].reset();
+				}
+				for ( int r = 0; r < ROWS; ++r )
+					for ( int i = 0; i < stimuli[ r ].length; ++i )
+						stimuli[ r ][ i ] = rand.nextGaussian();
+				uut.next( stimuli, responses );
+				for ( int r = 0; r < ROWS; ++r ) {
+					double[] out = expected[ r ].next( stimuli[ r ] );
+					for ( int i = 0; i < out.length; ++i )
+						assertEquals( "seed " + seed + ", cycles " + cycles + ", step " + step + ", row " + r,
+								Double.doubleToLongBits( out[ i ] ), Double.doubleToLongBits( responses[ r ][ i ] ) );
+				}
+			}
+		}
+	}
+}
+
+/**
+ * a loop must contain a recurrent connection
+ */
+public void testLoopWithoutRecurrentConnection() {
+	ActivationFunction linear = ActivationFunctionFactory.getInstance().getLinear();
+	Neuron in = new Neuron( linear );
+	Neuron hid = new Neuron( linear );
+	Neuron out = new Neuron( linear );
+	hid.addIncomingConnection( new NeuronConnection( in, 1 ) );
+	hid.addIncomingConnection( new NeuronConnection( out, 1 ) );
+	out.addIncomingConnection( new NeuronConnection( hid, 1 ) );
+	List all = new ArrayList();
+	all.add( in );
+	all.add( hid );
+	all.add( out );
+	AnjiNet net = new AnjiNet( all, Collections.singletonList( in ),
+			Collections.singletonList( out ), new ArrayList(), "loop" );
+	try {
+		new CompiledNet( net );
+		fail( "loop accepted" );
+	}
+	catch ( IllegalArgumentException e ) {
+		// expected
+	}
+}
+
+/**
+ * @param seed
+ * @return random net with forward and recurrent connections; the same seed always builds the
+ * same net
+ */
+public static AnjiNet newRandomNet( long seed ) {
+	Random rand = new Random( seed );
+	ActivationFunctionFactory factory = ActivationFunctionFactory.getInstance();
+	ActivationFunction[] hiddenFuncs = { factory.getSigmoid(), factory.getTanh(),
+			factory.getLinear() };
+	int numIn = 3;
+	int numOut = 2;
+	int numHidden = rand.nextInt( 6 );
+
+	List neurons = new ArrayList();
+	List in = new ArrayList();
+	List out = new ArrayList();
+	for ( int i = 0; i < numIn; ++i ) {
+		Neuron n = new Neuron( factory.getLinear() );
+		in.add( n );
+		neurons.add( n );
+	}
+	for ( int i = 0; i < numHidden; ++i )
+		neurons.add( new Neuron( hiddenFuncs[ rand.nextInt( hiddenFuncs.length ) ] ) );
+	for ( int i = 0; i < numOut; ++i ) {
+		Neuron n = new Neuron( factory.getSigmoid() );
+		out.add( n );
+		neurons.add( n );
+	}
+
+	// connections to later neurons are forward, the others recurrent
+	List recurrent = new ArrayList();
+	for ( int dest = 0; dest < neurons.size(); ++dest ) {
+		for ( int src = 0; src < neurons.size(); ++src ) {
+			if ( rand.nextInt( 3 ) != 0 )
+				continue;
+			Neuron s = (Neuron) neurons.get( src );
+			double weight = rand.nextGaussian() * 2;
+			NeuronConnection c;
+			if ( src < dest )
+				c = new NeuronConnection( s, weight );
+			else {
+				c = new CacheNeuronConnection( s, weight );
+				recurrent.add( c );
+			}
+			( (Neuron) neurons.get( dest ) ).addIncomingConnection( c );
+		}
+	}
+	Collections.shuffle( recurrent, rand );
+	Collections.shuffle( neurons, rand );
+	return new AnjiNet( neurons, in, out, recurrent, "random " + seed );
+}
+
+}
@@ -0,0 +1,94 @@
+package com.anji.nn.test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.anji.integration.AnjiActivator;
+import com.anji.integration.CompiledActivator;
+
+/**
+ * Compares <code>CompiledActivator</code> with <code>AnjiActivator</code>.
+ */
+public class CompiledActivatorTest extends TestCase {
+
+private final static int STEPS = 40;
+
+/**
+ * ctor
+ */
+public CompiledActivatorTest() {
+	this( CompiledActivatorTest.class.toString() );
+}
+
+/**
+ * ctor
+ * @param arg0
+ */
+public CompiledActivatorTest( String arg0 ) {
+	super( arg0 );
+}
+
+/**
+ * responses must be bit for bit those of <code>AnjiActivator</code>, also across resets
+ */
+public void testMatchesAnjiActivator() {
+	for ( int seed = 0; seed < 50; ++seed ) {
+		for ( int cycles = 1; cycles <= 3; ++cycles ) {
+			CompiledActivator uut = new CompiledActivator( BatchNetTest.newRandomNet( seed ), cycles );
+			AnjiActivator expected = new AnjiActivator( BatchNetTest.newRandomNet( seed ), cycles );
+			assertEquals( "wrong recurrency", expected.isRecurrent(), uut.isRecurrent() );
+
+			Random rand = new Random( seed );
+			double[] stimuli = new double[ uut.getInputDimension() ];
+			double[] response = new double[ uut.getOutputDimension() ];
+			for ( int step = 0; step < STEPS; ++step ) {
+				if ( step % 15 == 14 ) {
+					uut.reset();
+					expected.reset();
+				}
+				for ( int i = 0; i < stimuli.length; ++i )
+					stimuli[ i ] = rand.nextGaussian();
+				uut.next( stimuli, response );
+				double[] out = expected.next( stimuli );
+				for ( int i = 0; i < out.length; ++i )
+					assertEquals( "seed " + seed + ", cycles " + cycles + ", step " + step,
+							Double.doubleToLongBits( out[ i ] ), Double.doubleToLongBits( response[ i ] ) );
+			}
+		}
+	}
+}
+
+/**
+ * <code>next()</code> shows the previous input again
+ */
+public void testNextWithoutInput() {
+	CompiledActivator uut = new CompiledActivator( BatchNetTest.newRandomNet( 3 ), 1 );
+	AnjiActivator expected = new AnjiActivator( BatchNetTest.newRandomNet( 3 ), 1 );
+	double[] stimuli = { 0.5, -1, 2 };
+	assertEquals( "wrong first response", expected.next( stimuli )[ 0 ], uut.next( stimuli )[ 0 ],
+			0.0d );
+	for ( int i = 0; i < 5; ++i )
+		assertEquals( "wrong response " + i, expected.next()[ 0 ], uut.next()[ 0 ], 0.0d );
+}
+
+/**
+ * a sequence written to caller supplied arrays is that of <code>AnjiActivator</code>
+ */
+public void testSequenceIntoBuffers() {
+	CompiledActivator uut = new CompiledActivator( BatchNetTest.newRandomNet( 5 ), 2 );
+	AnjiActivator expected = new AnjiActivator( BatchNetTest.newRandomNet( 5 ), 2 );
+	Random rand = new Random( 5 );
+	double[][] stimuli = new double[ 10 ][ uut.getInputDimension() ];
+	for ( int i = 0; i < stimuli.length; ++i )
+		for ( int j = 0; j < stimuli[ i ].length; ++j )
+			stimuli[ i ][ j ] = rand.nextGaussian();
+	double[][] responses = new double[ stimuli.length ][ uut.getOutputDimension() ];
+	uut.next( stimuli, responses );
+	double[][] out = expected.next( stimuli );
+	for ( int i = 0; i < out.length; ++i )
+		for ( int j = 0; j < out[ i ].length; ++j )
+			assertEquals( "pattern " + i + ", output " + j, out[ i ][ j ], responses[ i ][ j ], 0.0d );
+}
+
+}
@@ -0,0 +1,146 @@
+package com.anji.nn.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.anji.integration.AnjiActivator;
+import com.anji.integration.GeneratedActivator;
+import com.anji.nn.ActivationFunction;
+import com.anji.nn.ActivationFunctionFactory;
+import com.anji.nn.AnjiNet;
+import com.anji.nn.CompiledNet;
+import com.anji.nn.GeneratedNet;
+import com.anji.nn.Neuron;
+import com.anji.nn.NeuronConnection;
+
+/**
+ * Compares <code>GeneratedActivator</code> with <code>AnjiActivator</code>.
+ */
+public class GeneratedActivatorTest extends TestCase {
+
+private final static int STEPS = 40;
+
+/**
+ * ctor
+ */
+public GeneratedActivatorTest() {
+	this( GeneratedActivatorTest.class.toString() );
+}
+
+/**
+ * ctor
+ * @param arg0
+ */
+public GeneratedActivatorTest( String arg0 ) {
+	super( arg0 );
+}
+
+/**
+ * responses must be bit for bit those of <code>AnjiActivator</code>, also across resets
+ */
+public void testMatchesAnjiActivator() {
+	for ( int seed = 0; seed < 50; ++seed ) {
+		for ( int cycles = 1; cycles <= 3; ++cycles ) {
+			GeneratedActivator uut = newActivator( BatchNetTest.newRandomNet( seed ), cycles );
+			AnjiActivator expected = new AnjiActivator( BatchNetTest.newRandomNet( seed ), cycles );
+			assertEquals( "wrong recurrency", expected.isRecurrent(), uut.isRecurrent() );
+
+			Random rand = new Random( seed );
+			double[] stimuli = new double[ uut.getInputDimension() ];
+			double[] response = new double[ uut.getOutputDimension() ];
+			for ( int step = 0; step < STEPS; ++step ) {
+				if ( step % 15 == 14 ) {
+					uut.reset();
+					expected.reset();
+				}
+				for ( int i = 0; i < stimuli.length; ++i )
+					stimuli[ i ] = rand.nextGaussian();
+				uut.next( stimuli, response );
+				double[] out = expected.next( stimuli );
+				for ( int i = 0; i < out.length; ++i )
+					assertEquals( "seed " + seed + ", cycles " + cycles + ", step " + step,
+							Double.doubleToLongBits( out[ i ] ), Double.doubleToLongBits( response[ i ] ) );
+			}
+		}
+	}
+}
+
+/**
+ * <code>next()</code> shows the previous input again
+ */
+public void testNextWithoutInput() {
+	GeneratedActivator uut = newActivator( BatchNetTest.newRandomNet( 3 ), 1 );
+	AnjiActivator expected = new AnjiActivator( BatchNetTest.newRandomNet( 3 ), 1 );
+	double[] stimuli = { 0.5, -1, 2 };
+	assertEquals( "wrong first response", expected.next( stimuli )[ 0 ], uut.next( stimuli )[ 0 ],
+			0.0d );
+	for ( int i = 0; i < 5; ++i )
+		assertEquals( "wrong response " + i, expected.next()[ 0 ], uut.next()[ 0 ], 0.0d );
+}
+
+/**
+ * every activation function, inlined or not, in a net whose code is split into several methods
+ */
+public void testAllFunctions() {
+	AnjiNet net = newWideNet();
+	GeneratedActivator uut = newActivator( net, 1 );
+	AnjiActivator expected = new AnjiActivator( newWideNet(), 1 );
+	Random rand = new Random( 0 );
+	double[] stimuli = new double[ 2 ];
+	for ( int step = 0; step < STEPS; ++step ) {
+		stimuli[ 0 ] = rand.nextGaussian() * 3;
+		stimuli[ 1 ] = rand.nextGaussian() * 3;
+		double[] out = expected.next( stimuli );
+		double[] response = uut.next( stimuli );
+		for ( int i = 0; i < out.length; ++i )
+			assertEquals( "step " + step + ", output " + i, Double.doubleToLongBits( out[ i ] ),
+					Double.doubleToLongBits( response[ i ] ) );
+	}
+}
+
+private static GeneratedActivator newActivator( AnjiNet net, int cycles ) {
+	return new GeneratedActivator( net, GeneratedNet.newInstance( new CompiledNet( net ) ), cycles );
+}
+
+/**
+ * @return net with 2 inputs, 1000 hidden neurons cycling through all activation functions, and
+ * 2 outputs
+ */
+private static AnjiNet newWideNet() {
+	Random rand = new Random( 1 );
+	ActivationFunctionFactory factory = ActivationFunctionFactory.getInstance();
+	ActivationFunction[] funcs = { factory.getLinear(), factory.getSigmoid(), factory.getTanh(),
+			factory.getInverseAbs(), factory.getTanhCubic(), factory.getEvSailSigmoid(),
+			factory.getStep(), factory.getSignedStep(), factory.getClampedLinear(),
+			factory.getSignedClampedLinear() };
+	List neurons = new ArrayList();
+	List in = new ArrayList();
+	List out = new ArrayList();
+	for ( int i = 0; i < 2; ++i ) {
+		Neuron n = new Neuron( factory.getLinear() );
+		in.add( n );
+		neurons.add( n );
+	}
+	for ( int i = 0; i < 2; ++i ) {
+		Neuron n = new Neuron( factory.getLinear() );
+		out.add( n );
+		neurons.add( n );
+	}
+	for ( int i = 0; i < 1000; ++i ) {
+		Neuron hidden = new Neuron( funcs[ i % funcs.length ] );
+		for ( int j = 0; j < in.size(); ++j )
+			hidden.addIncomingConnection( new NeuronConnection( (Neuron) in.get( j ), rand
+					.nextGaussian() ) );
+		for ( int j = 0; j < out.size(); ++j )
+			( (Neuron) out.get( j ) ).addIncomingConnection( new NeuronConnection( hidden, rand
+					.nextGaussian() ) );
+		neurons.add( hidden );
+	}
+	return new AnjiNet( neurons, in, out, Collections.EMPTY_LIST, "wide" );
+}
+
+}
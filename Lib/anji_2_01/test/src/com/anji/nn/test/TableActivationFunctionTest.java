@@ -0,0 +1,95 @@
+package com.anji.nn.test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.anji.nn.ActivationFunction;
+import com.anji.nn.ActivationFunctionFactory;
+import com.anji.nn.ActivationFunctionType;
+
+/**
+ * Compares the table approximations with the exact functions.
+ */
+public class TableActivationFunctionTest extends TestCase {
+
+/**
+ * ctor
+ */
+public TableActivationFunctionTest() {
+	this( TableActivationFunctionTest.class.toString() );
+}
+
+/**
+ * ctor
+ * @param arg0
+ */
+public TableActivationFunctionTest( String arg0 ) {
+	super( arg0 );
+}
+
+/**
+ * @see junit.framework.TestCase#tearDown()
+ */
+protected void tearDown() throws Exception {
+	ActivationFunctionFactory.getInstance().setFastMaxError(
+			ActivationFunctionFactory.DEFAULT_FAST_MAX_ERROR );
+}
+
+/**
+ * responses stay within the configured error, also far outside the table
+ */
+public void testMaxError() {
+	ActivationFunctionFactory factory = ActivationFunctionFactory.getInstance();
+	double[] maxErrors = { 0.01d, 0.0001d, 0.000001d };
+	for ( int e = 0; e < maxErrors.length; ++e ) {
+		factory.setFastMaxError( maxErrors[ e ] );
+		assertMaxError( factory.getSigmoid(), factory.getFastSigmoid(), maxErrors[ e ] );
+		assertMaxError( factory.getTanh(), factory.getFastTanh(), maxErrors[ e ] );
+	}
+}
+
+private static void assertMaxError( ActivationFunction exact, ActivationFunction uut,
+		double maxError ) {
+	Random rand = new Random( 0 );
+	for ( int i = 0; i < 100000; ++i ) {
+		double x = rand.nextGaussian() * ( i % 2 == 0 ? 1 : 100 );
+		assertEquals( uut + " at " + x, exact.apply( x ), uut.apply( x ), maxError );
+	}
+	assertEquals( uut + " at max", exact.apply( Double.MAX_VALUE ), uut.apply( Double.MAX_VALUE ),
+			maxError );
+	assertEquals( uut + " at min", exact.apply( -Double.MAX_VALUE ),
+			uut.apply( -Double.MAX_VALUE ), maxError );
+	assertTrue( uut + " at NaN", Double.isNaN( uut.apply( Double.NaN ) ) );
+}
+
+/**
+ * approximations are found by type name, keep the exact ranges and are cheaper
+ */
+public void testRegistration() {
+	ActivationFunctionFactory factory = ActivationFunctionFactory.getInstance();
+	ActivationFunction uut = factory.get( ActivationFunctionType.valueOf( "fast-sigmoid" )
+			.toString() );
+	assertSame( "wrong function", factory.getFastSigmoid(), uut );
+	assertEquals( "wrong min", factory.getSigmoid().getMinValue(), uut.getMinValue(), 0.0d );
+	assertEquals( "wrong max", factory.getSigmoid().getMaxValue(), uut.getMaxValue(), 0.0d );
+	assertTrue( "not cheaper", uut.cost() < factory.getSigmoid().cost() );
+	uut = factory.get( ActivationFunctionType.valueOf( "fast-tanh" ).toString() );
+	assertSame( "wrong function", factory.getFastTanh(), uut );
+	assertTrue( "not cheaper", uut.cost() < factory.getTanh().cost() );
+}
+
+/**
+ * max error must be positive
+ */
+public void testInvalidMaxError() {
+	try {
+		ActivationFunctionFactory.getInstance().setFastMaxError( 0 );
+		fail( "max error 0 accepted" );
+	}
+	catch ( IllegalArgumentException e ) {
+		// expected
+	}
+}
+
+}
@@ -1,4 +1,6 @@
 package com.superneatmario;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -13,15 +15,19 @@ import org.jgap.Chromosome;
 import com.anji.integration.Activator;
 import com.anji.integration.ActivatorTranscriber;
 import com.anji.integration.EvalThreadTask;
+import com.anji.integration.TargetFitnessFunction;
 import com.anji.integration.TranscriberException;
 import com.anji.neat.Evolver;
 import com.anji.util.Properties;
+import com.mojang.mario.ObservationRecorder;
+import com.mojang.mario.sensors.SensorSchema;
 
 
 
 public class HelloWorld {
 
 	private static final String MARIO_PROPS = "mario.properties";
+	private static final String RECORD_FILE_KEY = "mario.record.file";
 	
     public static void main(String[] args) throws Exception {
         System.out.println("Hello, World");
@@ -55,6 +61,12 @@ public class HelloWorld {
     	double totalKills = 0.0; 
     	double totalMode = 0.0; 
     	int seed = 17564; 
+    	SensorSchema sensors = SensorSchema.parse(props.getProperty(TargetFitnessFunction.SENSORS_KEY, SensorSchema.DEFAULT));
+    	// mario.record.file streams every decision of the champion to a file for offline training
+    	String recordFile = props.getProperty(RECORD_FILE_KEY, null);
+    	ObservationRecorder recorder = null;
+    	if (recordFile != null)
+    		recorder = new ObservationRecorder(new BufferedOutputStream(new FileOutputStream(recordFile)), sensors);
     	for(int difficulty = 0; difficulty < 41; difficulty ++)
     	{	
     		
@@ -64,6 +76,8 @@ public class HelloWorld {
     		{
     			Activator activator = activatorFactory.newActivator(genotype);
     			SimANJI sa = new SimANJI(activator, seed, difficulty);
+    			sa.setSensors(sensors);
+    			sa.setRecorder(recorder);
     			boolean isDone = sa.start();
     			
     			double [][] responses = null;
@@ -99,6 +113,8 @@ public class HelloWorld {
     			genotype.setFitnessValue( 1 );
     		}
     	}
+    	if (recorder != null)
+    		recorder.close();
     }
 	/**
      * This method "jumpstarts" Anji with Xor.Properties file in its Property Folder.
@@ -14,6 +14,7 @@ import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -22,18 +23,25 @@ import java.util.Random;
 import javax.swing.JFrame;
 
 import com.anji.integration.Activator;
+import com.anji.integration.BatchActivator;
 import com.mojang.mario.Art;
 import com.mojang.mario.LevelScene;
 import com.mojang.mario.MarioComponent;
+import com.mojang.mario.MarioController;
+import com.mojang.mario.MarioEnvironment;
+import com.mojang.mario.ObservationRecorder;
+import com.mojang.mario.level.LevelGenerator;
+import com.mojang.mario.sensors.SensorSchema;
 import com.mojang.mario.sprites.Mario;
 
-public class SimANJI implements Runnable{
+public class SimANJI implements Runnable, MarioController{
 
 	private boolean running = false;
 	private int generation = 0; 
 	Activator activator;
-	double[] responses; 
+	double[] responses = new double[0]; 
 	double maxResponse; 
+	private double pressThreshold;
 	int maxResponseNode; 
 	int seed; 
 	private boolean isManual = false;
@@ -46,6 +54,24 @@ public class SimANJI implements Runnable{
 	private int marioMode;
 	private int enemyKills;
 	private int difficulty; 
+	private int type = LevelGenerator.TYPE_OVERGROUND;
+	private boolean headless = false;
+	private int maxTicks = 0;
+	private int watchdogWindow = 0;
+	private float watchdogBand = 0;
+	private float maxDistance;
+	private int maxTimeLeft;
+	private int ticks;
+	private int endReason;
+	private MarioEnvironment environment;
+	private SensorSchema sensors = SensorSchema.DEFAULT_SCHEMA;
+	private int actionRepeat = 1;
+	private ObservationRecorder recorder;
+	
+	/**
+	 * Mario keys driven by network outputs 0..3: right, left, speed (run/fire) and jump.
+	 */
+	private static final int[] KEYS = { Mario.KEY_RIGHT, Mario.KEY_LEFT, Mario.KEY_SPEED, Mario.KEY_JUMP };
 	
 	public SimANJI(Activator activator, int seed, int difficulty ) {
 		this.genomeNum = genomeNum; 
@@ -55,6 +81,7 @@ public class SimANJI implements Runnable{
 		this.difficulty = difficulty; 
 		//sets time to always be 200 for testing
 		this.generation = 180; 
+		initResponses();
 	}
 	
 	public SimANJI(Activator activator, int seed, int genomeNum, int generation, int threadNum) {
@@ -65,6 +92,7 @@ public class SimANJI implements Runnable{
 		this.randomThreadNum = threadNum;
 		//static for training
 		this.difficulty = 10; 
+		initResponses();
 	}
 
 	/*public void start(int i )
@@ -87,10 +115,120 @@ public class SimANJI implements Runnable{
 	
 	public boolean start()
 	{
-		run();
+		if (headless)
+			runHeadless();
+		else
+			run();
 		return true;
 	}
 	
+	/**
+	 * Prepares this simulation for another genome, so an evaluation worker can keep one
+	 * instance and its environment for the whole run.
+	 */
+	public void reset(Activator activator, int seed, int genomeNum, int generation)
+	{
+		this.activator = activator; 
+		this.seed = seed; 
+		this.genomeNum = genomeNum; 
+		this.generation = generation;
+		initResponses();
+		coins = 0;
+		distance = 0;
+		timeLeft = 0;
+		didWin = 0;
+		marioMode = 0;
+		enemyKills = 0;
+		ticks = 0;
+		endReason = 0;
+		maxDistance = 0;
+		maxTimeLeft = 0;
+	}
+	
+	/**
+	 * Sizes the response array and sets the key press threshold for the current activator.
+	 * A simulation built without an activator is set up by {@link #reset} instead.
+	 */
+	private void initResponses()
+	{
+		if (activator != null)
+			initResponses(activator.getOutputDimension(), activator.getMaxResponse());
+	}
+	
+	private void initResponses(int outputDimension, double maxResponse)
+	{
+		if (responses.length != outputDimension)
+			responses = new double[outputDimension];
+		else
+			Arrays.fill(responses, 0);
+		pressThreshold = maxResponse - 0.1;
+	}
+	
+	/**
+	 * @param difficulty level difficulty
+	 * @param type one of the <code>LevelGenerator.TYPE_*</code> constants
+	 */
+	public void setLevel(int difficulty, int type)
+	{
+		this.difficulty = difficulty;
+		this.type = type;
+	}
+	
+	/**
+	 * @param headless true to evaluate without opening a window, see {@link LevelScene#isHeadless()}
+	 */
+	public void setHeadless(boolean headless)
+	{
+		this.headless = headless;
+	}
+	
+	/**
+	 * @param maxTicks episode length limit for headless runs, 0 leaves it to the level timer
+	 */
+	public void setMaxTicks(int maxTicks)
+	{
+		this.maxTicks = maxTicks;
+	}
+	
+	/**
+	 * Ends headless runs early when Mario stops making progress, see
+	 * {@link com.mojang.mario.ProgressWatchdog}.
+	 * @param window ticks in the sliding window, 0 never ends early
+	 * @param band pixels Mario must cover within a window, 0 skips the oscillation check
+	 */
+	public void setWatchdog(int window, float band)
+	{
+		this.watchdogWindow = window;
+		this.watchdogBand = band;
+	}
+	
+	/**
+	 * @param sensors observation fed to the activator each tick, its size must match the
+	 * activator's input count
+	 */
+	public void setSensors(SensorSchema sensors)
+	{
+		this.sensors = sensors;
+	}
+	
+	/**
+	 * @param actionRepeat ticks the pressed keys are held before the activator is asked again,
+	 * see {@link MarioEnvironment#setActionRepeat(int)}
+	 */
+	public void setActionRepeat(int actionRepeat)
+	{
+		this.actionRepeat = actionRepeat;
+	}
+	
+	/**
+	 * @param recorder records every decision of the following runs, null to stop recording;
+	 * the caller closes it
+	 */
+	public void setRecorder(ObservationRecorder recorder)
+	{
+		this.recorder = recorder;
+	}
+	
 	public void run() 
 	{
 		
@@ -119,6 +257,11 @@ public class SimANJI implements Runnable{
         
         marioComponent.setFocusCycleRoot(true);
         
+        marioComponent.type = type;
+        marioComponent.sensors = sensors;
+        marioComponent.actionRepeat = actionRepeat;
+        marioComponent.recorder = recorder;
+        marioComponent.setController(this);
         marioComponent.start();
         //marioComponent.run(); 
         //marioComponent.keyPressed();
@@ -126,231 +269,146 @@ public class SimANJI implements Runnable{
         frame.addFocusListener(marioComponent);
         
         
-        try {
-            Thread.sleep(2000);
-        } catch(InterruptedException ex) {
-            //Thread.currentThread().interrupt();
-        	System.out.println("Wat"); 
-        }
-
+        //Continue until ded or win, the game thread steps this controller once per tick
+        marioComponent.join();
         
-        //Continue until ded or win
-        Random rand = new Random();
-
-        int display = 0; 
-        for (int loop = 0; ; loop++)
-        {        	
-        	if(marioComponent.scene == null)
-        		continue; 
-        	LevelScene curScene = (LevelScene)marioComponent.scene;          
-			if (curScene == null)
+        LevelScene curScene = (LevelScene)marioComponent.scene; 
+        if (curScene.isWon)
+        	didWin = 1; 
+        setResults(curScene);
+        marioComponent.removeAll();				
+        marioComponent.stop();
+        frame.removeKeyListener(marioComponent);
+        frame.removeFocusListener(marioComponent);
+        frame.removeAll(); 
+        frame.setVisible(false); //disappear
+        frame.dispose(); //Destroy the JFrame object
+        marioComponent = null; 
+        //return true; 
+	}
+	
+	/**
+	 * Runs the level without a window in a fixed-step loop, one activation per tick, until
+	 * Mario wins, dies or runs out of time. The tick count, not wall time, bounds the episode.
+	 */
+	private void runHeadless()
+	{
+		beginHeadless();
+		environment.run(this);
+		endHeadless();
+	}
+	
+	/**
+	 * Plays the levels of several simulations headless in lockstep, <code>sims[r]</code> driven
+	 * by row <code>r</code> of <code>batch</code>, so one genome's network is activated once per
+	 * decision tick for all its levels. Each simulation must be set up as for {@link #start()},
+	 * with the same action repeat; their activators are not used. Every level ends with the same
+	 * results as if played on its own.
+	 */
+	public static void runHeadless(SimANJI[] sims, BatchActivator batch)
+	{
+		if (sims.length != batch.getRows())
+			throw new IllegalArgumentException(sims.length + " simulations for " + batch.getRows() + " rows");
+		for (int r = 1; r < sims.length; r++)
+			if (sims[r].actionRepeat != sims[0].actionRepeat)
+				throw new IllegalArgumentException("simulations must share the action repeat");
+		double[][] stimuli = new double[sims.length][];
+		double[][] outputs = new double[sims.length][];
+		int running = sims.length;
+		batch.reset();
+		for (int r = 0; r < sims.length; r++)
+		{
+			sims[r].initResponses(batch.getOutputDimension(), batch.getMaxResponse());
+			sims[r].beginHeadless();
+		}
+		while (running > 0 && !Thread.currentThread().isInterrupted())
+		{
+			boolean decide = false;
+			for (int r = 0; r < sims.length; r++)
 			{
-				continue;
+				MarioEnvironment env = sims[r].environment;
+				boolean decides = !env.isDone() && env.isDecisionTick();
+				stimuli[r] = decides ? env.observe().observation : null;
+				outputs[r] = decides ? sims[r].responses : null;
+				decide |= decides;
 			}
-        	//System.out.println("Win or loss? " + marioComponent.isLossed + "  " +  marioComponent.isWon); 
-        	if(curScene.isLose || curScene.isWon)
+			if (decide)
+				batch.next(stimuli, outputs);
+			for (int r = 0; r < sims.length; r++)
 			{
-        		if (curScene.isWon)
-        			didWin = 1; 
-				//System.out.println("Mario won or loss"); 
-				curScene = (LevelScene)marioComponent.scene; 
-				//System.out.println("Mario distance = " + curScene.mario.x);
-				//System.out.println("Mario coins = " + curScene.mario.coins);   
-				setDistance(curScene.mario.x) ;
-				setCoins(curScene.mario.coins) ;
-				setTimeLeft(curScene.timeLeft); 
-				setMarioMode(curScene.mario); 
-				setEnemyKillCount(curScene.enemyKillCount); 
-				curScene.mario.resetStatic();
-				marioComponent.removeAll();				
-				marioComponent.stop();
-				frame.removeKeyListener(marioComponent);
-		        frame.removeFocusListener(marioComponent);
-		        //marioComponent = null; 
-		        frame.removeAll(); 
-				frame.setVisible(false); //disappear
-				frame.dispose(); //Destroy the JFrame object
-				//Thread.dumpStack();				
-				marioComponent = null; 
-				System.gc(); 
-				//System.out.println("This is a test" ); 
-				//convertImg_to_vid();
-				//System.out.println("Thread count " + Thread.activeCount()); 
-				break;
-			}
-			else
-			{	//NOTE: creates a pseudo sync w/ mario component
-				//stimuli were broke w/o this
-				if(marioComponent.endofNewTick == false)
-	        		continue; 
-	        	
-				try{
-					
-					
-					 /* reduce dim w/o including good items atm or how low holes are*/
-				double[] stimuli = {
-						curScene.enemyD1LeftRight , 
-						curScene.enemyD2LeftRight , 
-						curScene.enemyD3LeftRight , 
-						curScene.enemyD4LeftRight , 
-//						curScene.enemyD5LeftRight , 
-//						curScene.goodItemD1LeftRight ,
-//				        curScene.goodItemD2LeftRight ,
-//				        curScene.goodItemD3LeftRight ,
-//				        curScene.goodItemD4LeftRight ,
-//				        curScene.goodItemD5LeftRight ,
-				        curScene.holeD1LeftRight , 
-				        curScene.holeD2LeftRight , 
-//				        curScene.holeD3LeftRight , 
-//				        curScene.holeD4LeftRight , 
-//				        curScene.holeD5LeftRight ,
-				        curScene.obstacleD1LeftRight , 
-				        curScene.obstacleD2LeftRight , 
-//				        curScene.obstacleD3LeftRight , 
-//				        curScene.obstacleD4LeftRight , 
-//				        curScene.obstacleD5LeftRight,
-				        curScene.enemyD1UpDown , 
-						curScene.enemyD2UpDown , 
-						curScene.enemyD3UpDown , 
-						curScene.enemyD4UpDown , 
-//						curScene.enemyD5UpDown , 
-//						curScene.goodItemD1UpDown ,
-//				        curScene.goodItemD2UpDown ,
-//				        curScene.goodItemD3UpDown ,
-//				        curScene.goodItemD4UpDown ,
-//				        curScene.goodItemD5UpDown ,
-				        curScene.holeD1UpDown , 
-				        curScene.holeD2UpDown , 
-//				        curScene.holeD3UpDown , 
-//				        curScene.holeD4UpDown , 
-//				        curScene.holeD5UpDown , 
-				        curScene.obstacleD1UpDown , 
-				        curScene.obstacleD2UpDown , 
-				        curScene.obstacleD3UpDown , 
-				        curScene.obstacleD4UpDown , 
-//				        curScene.obstacleD5UpDown, 
-				        curScene.mario.onGround?1.0:0, 				        		
-				        (double)Math.round(curScene.mario.xa * 1000) / 1000, 
-				        (double)Math.round(curScene.mario.ya * 1000) / 1000, 
-				        curScene.numEmptySpace, 
-				        curScene.yBlockSensor}; 
-				
-				
-				//System.out.println("0) Red Koopa Count " + curScene.distToRedKoopa.size()); 
-				//System.out.println("Enemy Count " + curScene.enemyD1LeftRight);			
-				 			
-				//System.out.println("Enemy Count " + curScene.enemyD1LeftRight);
-				//System.out.println("Good Item Count " + curScene.goodItemD1LeftRight);
-				//System.out.println("Obsticle Count " + curScene.obstacleD1LeftRight);
-				//System.out.println("Hole Count " + curScene.holeD1LeftRight);
-				
-				responses = activator.next( stimuli );
-				
-//				if(display%48 == 0)
-//				{
-//					System.out.println("Stimuli "); 
-//					for(int idx = 0; idx< stimuli.length; idx++)
-//					{
-//						System.out.print(stimuli[idx] + ", "); 
-//					}
-//					System.out.println(); 
-//				}
-				display++; 
-				
-				maxResponse = 0; 
-				maxResponseNode = 0; 
-				for(int i = 0; i < responses.length; i ++)
+				MarioEnvironment env = sims[r].environment;
+				if (env.isDone())
+					continue;
+				if (outputs[r] != null)
 				{
-					//System.out.println("response "+i + "  " + responses[i]);
-					/*if(responses[i] > maxResponse)
-					{
-						maxResponse = responses[i]; 
-						maxResponseNode = i; 
-					}*/
-				
-					
-					//System.out.println("Max Response " + activator.getMaxResponse());
-					//System.out.println("Max output dim " + activator.getOutputDimension());
-					
-					int keyCode = KeyEvent.VK_RIGHT; 
-					if(!isManual)
-					{
-		            	int r = i; 
-		            	
-		                if (r==0)
-		                {
-		                	keyCode = KeyEvent.VK_RIGHT;
-		                }
-//		                if (r==1)
-//		                {
-//		                //down crouches when big
-//		                // else nothing
-//		                	//keyCode = KeyEvent.VK_DOWN;
-//		                	keyCode = KeyEvent.VK_RIGHT;
-//		                }
-		                if (r==1)
-		                {
-		                	keyCode = KeyEvent.VK_LEFT;
-		                	//keyCode = KeyEvent.VK_RIGHT;
-		                }
-		                if (r==2)
-		                {
-		                //hold a runs 
-		                // tap a fires fireball
-		                	keyCode = KeyEvent.VK_A;
-		                }
-		                //attempt to manage triggers speed freq of button mashing
-		                /**/
-		                if (r==3)
-		                {
-		                //s jump
-		                	keyCode = KeyEvent.VK_S;
-		                	
-		                }
-		                
-		                if(responses[i]>activator.getMaxResponse()-0.1)
-						{    
-		                	//System.out.println("response "+i + "  " + responses[i]);
-		                	/*switch(r)
-		                	{
-		                	case 0: 
-		                		System.out.println("Right"); 
-		                		break;
-		                	case 1: 
-		                		System.out.println("Down"); 
-		                		break;
-		                	case 2: 
-		                		System.out.println("Left"); 
-		                		break;
-		                	case 3: 
-		                		System.out.println("A"); 
-		                		break;
-		                	case 4: 
-		                		System.out.println("Jump"); 
-		                		break;
-		                	}*/
-		                	marioComponent.toggleKey(keyCode, true);	
-
-
-						}
-						else
-						{
-							
-							marioComponent.toggleKey(keyCode, false);
-							
-						}
-					}
-				}				
-				
+					sims[r].press(env.observe().keys);
+					if (sims[r].recorder != null)
+						sims[r].recorder.record(env.observe(), env.getTicks());
 				}
-				catch(Exception e)
+				env.tick();
+				if (env.isDone())
 				{
-					
+					sims[r].endHeadless();
+					running--;
 				}
-	        }
-	    }
-        //return true; 
+			}
+		}
+		// interrupted, like run() the levels still left end without an end reason
+		for (int r = 0; r < sims.length && running > 0; r++)
+			if (!sims[r].environment.isDone())
+				sims[r].endHeadless();
+	}
+	
+	private void beginHeadless()
+	{
+		if (environment == null)
+			environment = new MarioEnvironment();
+		environment.setWatchdog(watchdogWindow, watchdogBand);
+		environment.setSensors(sensors);
+		environment.setActionRepeat(actionRepeat);
+		environment.setRecorder(recorder);
+		environment.reset(seed, difficulty, type, generation, genomeNum, maxTicks);
+		maxDistance = environment.getScene().level.width * 16;
+		maxTimeLeft = environment.getScene().timeLeft;
+	}
+	
+	private void endHeadless()
+	{
+		ticks = environment.getTicks();
+		endReason = environment.getEndReason();
+		LevelScene curScene = environment.getScene();
+		if (curScene.isWon)
+			didWin = 1;
+		setResults(curScene);
 	}
+	
+	/**
+	 * Activates the network on the scene's observation and presses every key whose output is
+	 * within 0.1 of the maximum response. Reuses the response array, so a tick allocates nothing.
+	 */
+	public void step(LevelScene curScene, boolean[] keys)
+	{
+		activator.next( curScene.observation, responses );
+		press(keys);
+	}
+	
+	private void press(boolean[] keys)
+	{
+		for (int i = 0; i < responses.length && i < KEYS.length; i++)
+		{
+			keys[KEYS[i]] = responses[i] > pressThreshold;
+		}
+	}
+	
+	private void setResults(LevelScene curScene)
+	{
+		setDistance(curScene.mario.x) ;
+		setCoins(curScene.mario.coins) ;
+		setTimeLeft(curScene.timeLeft); 
+		setMarioMode(curScene.mario); 
+		setEnemyKillCount(curScene.enemyKillCount); 
+	}
+
 	private void setEnemyKillCount(int enemyKillCount) {
 		enemyKills = enemyKillCount; 
 	}
@@ -413,6 +471,34 @@ public class SimANJI implements Runnable{
 	{
 		return didWin; 
 	}
+	/**
+	 * @return farthest Mario could have gone in the last headless run, 0 if unknown
+	 */
+	public float getMaxDistance()
+	{
+		return maxDistance;
+	}
+	/**
+	 * @return time left at the start of the last headless run, 0 if unknown
+	 */
+	public int getMaxTimeLeft()
+	{
+		return maxTimeLeft;
+	}
+	/**
+	 * @return ticks simulated by the last headless run
+	 */
+	public int getTicks()
+	{
+		return ticks;
+	}
+	/**
+	 * @return one of the <code>MarioEnvironment.END_*</code> constants for the last headless run
+	 */
+	public int getEndReason()
+	{
+		return endReason;
+	}
 	//For rendering
 	void convertImg_to_vid()
     {
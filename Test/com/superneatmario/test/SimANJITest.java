@@ -0,0 +1,291 @@
+package com.superneatmario.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.anji.integration.AnjiActivator;
+import com.anji.integration.BatchActivator;
+import com.anji.nn.ActivationFunction;
+import com.anji.nn.ActivationFunctionFactory;
+import com.anji.nn.AnjiNet;
+import com.anji.nn.CompiledNet;
+import com.anji.nn.Neuron;
+import com.anji.nn.NeuronConnection;
+import com.mojang.mario.LevelScene;
+import com.mojang.mario.Scene;
+import com.mojang.mario.sprites.Mario;
+import com.superneatmario.SimANJI;
+
+/**
+ * Checks that a <code>SimANJI</code> can decide on keys without being reset first, and that an
+ * episode depends on nothing but its seed, whether played alone, next to another one or in
+ * lockstep with others.
+ */
+public class SimANJITest extends TestCase
+{
+
+	private static final int SEED = 4242;
+
+	private static final int MAX_TICKS = 1000;
+
+	/**
+	 * Hashes every observation it is fed, in order.
+	 */
+	private static class HashingActivator extends AnjiActivator
+	{
+		private long hash = 17;
+
+		private HashingActivator( AnjiNet net )
+		{
+			super( net, 1 );
+		}
+
+		public void next( double[] stimuli, double[] result )
+		{
+			for ( int i = 0; i < stimuli.length; ++i )
+				hash = 31 * hash + Double.doubleToLongBits( stimuli[ i ] );
+			super.next( stimuli, result );
+		}
+
+		private long getHash()
+		{
+			return hash;
+		}
+	}
+
+	/**
+	 * ctor
+	 */
+	public SimANJITest()
+	{
+		this( SimANJITest.class.toString() );
+	}
+
+	/**
+	 * ctor
+	 * @param arg0
+	 */
+	public SimANJITest( String arg0 )
+	{
+		super( arg0 );
+	}
+
+	/**
+	 * @param numInputs
+	 * @return activator whose outputs, right, left, speed and jump, are driven by the first input
+	 * with weights 10, -10, 10 and -10
+	 */
+	private static AnjiActivator newActivator( int numInputs )
+	{
+		ActivationFunction linear = ActivationFunctionFactory.getInstance().getLinear();
+		ActivationFunction sigmoid = ActivationFunctionFactory.getInstance().getSigmoid();
+		List nodes = new ArrayList();
+		List inNodes = new ArrayList();
+		List outNodes = new ArrayList();
+		for ( int i = 0; i < numInputs; ++i )
+		{
+			Neuron in = new Neuron( linear );
+			inNodes.add( in );
+			nodes.add( in );
+		}
+		for ( int i = 0; i < 4; ++i )
+		{
+			Neuron out = new Neuron( sigmoid );
+			out.addIncomingConnection( new NeuronConnection( (Neuron) inNodes.get( 0 ),
+					( i % 2 == 0 ) ? 10 : -10 ) );
+			outNodes.add( out );
+			nodes.add( out );
+		}
+		AnjiNet net = new AnjiNet( nodes, inNodes, outNodes, new ArrayList(), "test" );
+		return new AnjiActivator( net, 1 );
+	}
+
+	/**
+	 * @param numInputs
+	 * @param seed
+	 * @return net with every input connected to the four outputs by weights drawn from
+	 * <code>seed</code>
+	 */
+	private static AnjiNet newRandomNet( int numInputs, long seed )
+	{
+		Random random = new Random( seed );
+		ActivationFunction linear = ActivationFunctionFactory.getInstance().getLinear();
+		ActivationFunction sigmoid = ActivationFunctionFactory.getInstance().getSigmoid();
+		List nodes = new ArrayList();
+		List inNodes = new ArrayList();
+		List outNodes = new ArrayList();
+		for ( int i = 0; i < numInputs; ++i )
+		{
+			Neuron in = new Neuron( linear );
+			inNodes.add( in );
+			nodes.add( in );
+		}
+		for ( int i = 0; i < 4; ++i )
+		{
+			Neuron out = new Neuron( sigmoid );
+			for ( int j = 0; j < numInputs; ++j )
+				out.addIncomingConnection( new NeuronConnection( (Neuron) inNodes.get( j ), random
+						.nextGaussian() * 3 ) );
+			outNodes.add( out );
+			nodes.add( out );
+		}
+		return new AnjiNet( nodes, inNodes, outNodes, new ArrayList(), "test" );
+	}
+
+	/**
+	 * Plays <code>SEED</code> headless on a fresh simulation.
+	 * @return distance bits, ticks and observation hash of the episode
+	 */
+	private static long[] play()
+	{
+		LevelScene scene = new LevelScene( 0, 1, 0, 0, 0 );
+		HashingActivator activator = new HashingActivator( newRandomNet( scene.observation.length,
+				SEED ) );
+		SimANJI sim = new SimANJI( activator, SEED, 0, 0, 0 );
+		sim.setHeadless( true );
+		sim.setMaxTicks( MAX_TICKS );
+		sim.start();
+		return new long[] { Float.floatToIntBits( sim.getDistance() ), sim.getTicks(),
+				activator.getHash() };
+	}
+
+	private static void assertSameEpisode( String msg, long[] expected, long[] actual )
+	{
+		assertEquals( msg + " distance", Float.intBitsToFloat( (int) expected[ 0 ] ), Float
+				.intBitsToFloat( (int) actual[ 0 ] ), 0.0f );
+		assertEquals( msg + " ticks", expected[ 1 ], actual[ 1 ] );
+		assertEquals( msg + " observations", expected[ 2 ], actual[ 2 ] );
+	}
+
+	/**
+	 * @param sim
+	 * @return keys pressed in one step on a scene whose first sensor is 1
+	 */
+	private static boolean[] stepOnce( SimANJI sim )
+	{
+		LevelScene scene = new LevelScene( 0, 1, 0, 0, 0 );
+		scene.observation[ 0 ] = 1;
+		boolean[] keys = new boolean[ Scene.KEY_COUNT ];
+		sim.step( scene, keys );
+		assertEquals( "responses", 4, sim.getResponses().length );
+		return keys;
+	}
+
+	private static void assertKeys( boolean[] keys )
+	{
+		assertTrue( "right", keys[ Mario.KEY_RIGHT ] );
+		assertFalse( "left", keys[ Mario.KEY_LEFT ] );
+		assertTrue( "speed", keys[ Mario.KEY_SPEED ] );
+		assertFalse( "jump", keys[ Mario.KEY_JUMP ] );
+	}
+
+	/**
+	 * test constructor used for a single game
+	 */
+	public void testGameCtor()
+	{
+		LevelScene scene = new LevelScene( 0, 1, 0, 0, 0 );
+		SimANJI sim = new SimANJI( newActivator( scene.observation.length ), 0, 1 );
+		assertKeys( stepOnce( sim ) );
+	}
+
+	/**
+	 * test constructor used for training
+	 */
+	public void testTrainingCtor()
+	{
+		LevelScene scene = new LevelScene( 0, 1, 0, 0, 0 );
+		SimANJI sim = new SimANJI( newActivator( scene.observation.length ), 0, 0, 0, 0 );
+		assertKeys( stepOnce( sim ) );
+	}
+
+	/**
+	 * test simulation built without an activator, as evaluation workers keep one
+	 */
+	public void testReset()
+	{
+		LevelScene scene = new LevelScene( 0, 1, 0, 0, 0 );
+		SimANJI sim = new SimANJI( null, 0, 0, 0, 0 );
+		sim.reset( newActivator( scene.observation.length ), 0, 0, 0 );
+		assertKeys( stepOnce( sim ) );
+	}
+
+	/**
+	 * test a seed plays the same alone and on two threads at once, so no episode reads
+	 * <code>Math.random()</code> or state shared with another
+	 * @throws Exception
+	 */
+	public void testSerialMatchesConcurrent() throws Exception
+	{
+		long[] serial = play();
+		assertTrue( "Mario did not move", Float.intBitsToFloat( (int) serial[ 0 ] ) > 0 );
+
+		final long[][] concurrent = new long[ 2 ][];
+		final Throwable[] failures = new Throwable[ concurrent.length ];
+		Thread[] threads = new Thread[ concurrent.length ];
+		for ( int i = 0; i < threads.length; ++i )
+		{
+			final int idx = i;
+			threads[ i ] = new Thread( new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						concurrent[ idx ] = play();
+					}
+					catch ( Throwable th )
+					{
+						failures[ idx ] = th;
+					}
+				}
+			}, "Test Episode " + i );
+		}
+		for ( int i = 0; i < threads.length; ++i )
+			threads[ i ].start();
+		for ( int i = 0; i < threads.length; ++i )
+		{
+			threads[ i ].join();
+			if ( failures[ i ] != null )
+				throw new RuntimeException( "thread " + i, failures[ i ] );
+			assertSameEpisode( "thread " + i, serial, concurrent[ i ] );
+		}
+	}
+
+	/**
+	 * test levels played in lockstep end as when played one after another
+	 */
+	public void testLockstepMatchesSequential()
+	{
+		int[] seeds = { 11, 4242, -3 };
+		int numInputs = new LevelScene( 0, 1, 0, 0, 0 ).observation.length;
+		SimANJI[] sims = new SimANJI[ seeds.length ];
+		for ( int i = 0; i < seeds.length; ++i )
+		{
+			sims[ i ] = new SimANJI( null, seeds[ i ], 0, 0, 0 );
+			sims[ i ].setHeadless( true );
+			sims[ i ].setMaxTicks( MAX_TICKS );
+			sims[ i ].setActionRepeat( 2 );
+		}
+		SimANJI.runHeadless( sims, new BatchActivator( new CompiledNet( newRandomNet( numInputs,
+				SEED ) ), 1, seeds.length ) );
+
+		for ( int i = 0; i < seeds.length; ++i )
+		{
+			SimANJI sim = new SimANJI( new AnjiActivator( newRandomNet( numInputs, SEED ), 1 ),
+					seeds[ i ], 0, 0, 0 );
+			sim.setHeadless( true );
+			sim.setMaxTicks( MAX_TICKS );
+			sim.setActionRepeat( 2 );
+			sim.start();
+			assertEquals( "distance " + i, sim.getDistance(), sims[ i ].getDistance(), 0.0f );
+			assertEquals( "ticks " + i, sim.getTicks(), sims[ i ].getTicks() );
+			assertEquals( "end reason " + i, sim.getEndReason(), sims[ i ].getEndReason() );
+			assertEquals( "win " + i, sim.didMarioWin(), sims[ i ].didMarioWin() );
+		}
+	}
+
+}